@@ -0,0 +1,152 @@
+package org.folio.okapi.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Size bounded cache that evicts the least recently used entry. Entries may
+ * also expire a given time after they were put; an expired entry is removed
+ * when it is looked up, or evicted as any other entry. All methods
+ * are synchronized, so that the cache may be shared between event loops.
+ * Counts hits, misses, evictions and expirations for metrics.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+  private static class Item<V> {
+    private final V value;
+    private final long expires;
+
+    Item(V value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+
+  private final int maxSize;
+  private final long ttl;
+  private final Map<K, Item<V>> map;
+  private LongSupplier clock = System::currentTimeMillis;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+
+  /**
+   * Create cache where entries do not expire.
+   * @param maxSize maximum number of entries; 0 for a cache that holds nothing
+   */
+  public LruCache(int maxSize) {
+    this(maxSize, 0);
+  }
+
+  /**
+   * Create cache.
+   * @param maxSize maximum number of entries; 0 for a cache that holds nothing
+   * @param ttl time to live for an entry in milliseconds; 0 for no expiry
+   */
+  public LruCache(int maxSize, long ttl) {
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+    this.map = new LinkedHashMap<K, Item<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Item<V>> eldest) {
+        if (size() > LruCache.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Get value.
+   * @param key key
+   * @return value; null if not found
+   */
+  public synchronized V get(K key) {
+    Item<V> item = map.get(key);
+    if (item == null) {
+      misses++;
+      return null;
+    }
+    if (ttl > 0 && clock.getAsLong() >= item.expires) {
+      map.remove(key);
+      expirations++;
+      misses++;
+      return null;
+    }
+    hits++;
+    return item.value;
+  }
+
+  /**
+   * Put value. May evict the least recently used entry.
+   * @param key key
+   * @param value value (non-null)
+   */
+  public synchronized void put(K key, V value) {
+    if (maxSize > 0) {
+      map.put(key, new Item<>(value, ttl > 0 ? clock.getAsLong() + ttl : 0));
+    }
+  }
+
+  /**
+   * Remove entry.
+   * @param key key
+   * @return removed value; null if not found
+   */
+  public synchronized V remove(K key) {
+    Item<V> item = map.remove(key);
+    return item == null ? null : item.value;
+  }
+
+  /**
+   * Remove entries with keys matching a predicate.
+   * @param filter predicate on key
+   */
+  public synchronized void removeIf(Predicate<K> filter) {
+    map.keySet().removeIf(filter);
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  synchronized void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getExpirations() {
+    return expirations;
+  }
+}
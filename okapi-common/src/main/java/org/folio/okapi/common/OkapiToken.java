@@ -2,6 +2,9 @@ package org.folio.okapi.common;
 
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 
 /**
@@ -12,6 +15,7 @@ import java.util.Base64;
  * tenant-id, or some other piece of information.
  */
 public class OkapiToken {
+  private static volatile LruCache<String, JsonObject> payloadCache = new LruCache<>(0);
   private String token;
 
   /**
@@ -22,7 +26,52 @@ public class OkapiToken {
     this.token = token;
   }
 
+  /**
+   * Cache decoded payloads, so that a token that is seen again is not decoded
+   * and parsed again. Only successfully decoded payloads are cached, keyed by
+   * a digest of the token, so that the cache does not hold the tokens. The
+   * cache is shared by all OkapiToken instances in the JVM, so it should be
+   * set up once, at startup. It is disabled by default.
+   * @param maxSize maximum number of tokens; 0 disables the cache
+   * @param ttl time in milliseconds that a payload is cached; 0 for no expiry
+   */
+  public static void setPayloadCache(int maxSize, long ttl) {
+    payloadCache = new LruCache<>(maxSize, ttl);
+  }
+
+  /**
+   * Get the payload cache, for metrics.
+   * @return cache
+   */
+  public static LruCache<String, JsonObject> getPayloadCache() {
+    return payloadCache;
+  }
+
   private JsonObject getPayloadWithoutValidation() {
+    LruCache<String, JsonObject> cache = payloadCache;
+    if (cache.getMaxSize() == 0) {
+      return decodePayload();
+    }
+    String key = digest(token);
+    JsonObject payload = cache.get(key);
+    if (payload == null) {
+      payload = decodePayload();
+      cache.put(key, payload);
+    }
+    return payload;
+  }
+
+  private static String digest(String value) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(
+          md.digest(value.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private JsonObject decodePayload() {
     int idx1 = token.indexOf('.');
     if (idx1 == -1) {
       throw new IllegalArgumentException("Missing . separator for token");
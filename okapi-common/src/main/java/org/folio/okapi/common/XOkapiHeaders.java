@@ -187,6 +187,13 @@ public class XOkapiHeaders {
    */
   public static final String HANDLER_HEADERS = "X-Okapi-Handler-Headers";
 
+  /**
+   * X-Okapi-Deadline. Time, in milliseconds since the epoch, by which the
+   * request should be done. Passed to modules, and honored by Okapi when
+   * given by the client or by a module calling back to Okapi.
+   */
+  public static final String DEADLINE = "X-Okapi-Deadline";
+
   /**
    * The id of the always-present super tenant.
    */
@@ -0,0 +1,72 @@
+package org.folio.okapi.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LruCacheTest {
+
+  @Test
+  public void testEviction() {
+    LruCache<String, Integer> cache = new LruCache<>(2);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a")); // a now most recent
+    cache.put("c", 3);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+    Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+    Assert.assertEquals(3, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+    Assert.assertEquals(1, cache.getEvictions());
+  }
+
+  @Test
+  public void testRemove() {
+    LruCache<String, Integer> cache = new LruCache<>(10);
+    cache.put("t1 a", 1);
+    cache.put("t1 b", 2);
+    cache.put("t2 a", 3);
+    Assert.assertEquals(Integer.valueOf(3), cache.remove("t2 a"));
+    Assert.assertNull(cache.remove("t2 a"));
+    cache.put("t2 a", 3);
+    cache.removeIf(k -> k.startsWith("t1 "));
+    Assert.assertEquals(1, cache.size());
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(10, cache.getMaxSize());
+  }
+
+  @Test
+  public void testDisabled() {
+    LruCache<String, Integer> cache = new LruCache<>(0);
+    cache.put("a", 1);
+    Assert.assertNull(cache.get("a"));
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.getEvictions());
+  }
+
+  @Test
+  public void testExpiry() {
+    long[] now = {1000};
+    LruCache<String, Integer> cache = new LruCache<>(10, 100);
+    cache.setClock(() -> now[0]);
+    Assert.assertEquals(100, cache.getTtl());
+    cache.put("a", 1);
+    now[0] += 50;
+    cache.put("b", 2);
+    now[0] += 49;
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+    now[0] += 1;
+    Assert.assertNull(cache.get("a"));
+    Assert.assertEquals(Integer.valueOf(2), cache.get("b"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(1, cache.getExpirations());
+    Assert.assertEquals(1, cache.getMisses());
+    cache.put("a", 3); // new expiry
+    now[0] += 99;
+    Assert.assertEquals(Integer.valueOf(3), cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals(2, cache.getExpirations());
+  }
+}
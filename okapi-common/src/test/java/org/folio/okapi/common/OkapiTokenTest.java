@@ -65,4 +65,24 @@ public class OkapiTokenTest {
   public void endOfInputException() {
     Assert.assertTrue(exceptionMessage("a.ewo=.c").contains("Unexpected end-of-input"));
   }
+
+  @Test
+  public void testPayloadCache() {
+    OkapiToken.setPayloadCache(10, 60000);
+    try {
+      LruCache<String, JsonObject> cache = OkapiToken.getPayloadCache();
+      String tokenStr = "a." + Base64.getEncoder().encodeToString(
+          new JsonObject().put("tenant", "test-lib").encode().getBytes()) + ".c";
+      Assert.assertEquals("test-lib", new OkapiToken(tokenStr).getTenant());
+      Assert.assertEquals("test-lib", new OkapiToken(tokenStr).getTenant());
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(1, cache.getMisses());
+      Assert.assertEquals(1, cache.size());
+      Assert.assertNull(cache.get(tokenStr)); // keyed by digest
+      exceptionMessage("a.b.c");
+      Assert.assertEquals(1, cache.size());
+    } finally {
+      OkapiToken.setPayloadCache(0, 0);
+    }
+  }
 }
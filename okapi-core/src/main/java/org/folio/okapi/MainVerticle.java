@@ -5,15 +5,10 @@ import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
-import io.vertx.core.http.HttpHeaders;
-import io.vertx.core.http.HttpMethod;
-import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.handler.CorsHandler;
-import java.lang.management.ManagementFactory;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +22,7 @@ import org.folio.okapi.common.ModuleId;
 import org.folio.okapi.common.ModuleVersionReporter;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.OkapiStringUtil;
+import org.folio.okapi.common.OkapiToken;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.managers.DeploymentManager;
 import org.folio.okapi.managers.DiscoveryManager;
@@ -41,6 +37,8 @@ import org.folio.okapi.service.TenantStore;
 import org.folio.okapi.service.impl.Storage;
 import org.folio.okapi.service.impl.Storage.InitMode;
 import org.folio.okapi.service.impl.TenantStoreNull;
+import org.folio.okapi.util.CompList;
+import org.folio.okapi.util.DropwizardHelper;
 import org.folio.okapi.util.LogHelper;
 
 @java.lang.SuppressWarnings({"squid:S1192"})
@@ -58,6 +56,7 @@ public class MainVerticle extends AbstractVerticle {
   private Storage storage;
   private Storage.InitMode initMode = InitMode.NORMAL;
   private int port;
+  private int proxyInstances;
   private String okapiVersion = null;
   private final Messages messages = Messages.getInstance();
   boolean enableProxy = false;
@@ -80,6 +79,7 @@ public class MainVerticle extends AbstractVerticle {
 
     JsonObject config = context.config();
     port = Integer.parseInt(Config.getSysConf("port", "9130", config));
+    proxyInstances = Integer.parseInt(Config.getSysConf("proxyInstances", "1", config));
     String okapiVersion2 = Config.getSysConf("okapiVersion", null, config);
     if (okapiVersion2 != null) {
       okapiVersion = okapiVersion2;
@@ -104,6 +104,7 @@ public class MainVerticle extends AbstractVerticle {
         LogHelper.setRootLogLevel(lev);
       }
     }
+    configureTokenCache(config);
     String mode = config.getString("mode", "cluster");
     switch (mode) {
       case "deployment":
@@ -129,7 +130,7 @@ public class MainVerticle extends AbstractVerticle {
     storage = new Storage(vertx, storageType, config);
 
     envManager = new EnvManager(storage.getEnvStore());
-    discoveryManager = new DiscoveryManager(storage.getDeploymentStore());
+    discoveryManager = new DiscoveryManager(storage.getDeploymentStore(), config);
     if (clusterManager != null) {
       discoveryManager.setClusterManager(clusterManager);
     }
@@ -186,6 +187,27 @@ public class MainVerticle extends AbstractVerticle {
     }
   }
 
+  /**
+   * Set up the payload cache of OkapiToken. The cache is shared by the JVM,
+   * so it is configured here, once, and not by each ProxyService.
+   * @param config Okapi configuration
+   */
+  private static void configureTokenCache(JsonObject config) {
+    OkapiToken.setPayloadCache(
+        Integer.parseInt(Config.getSysConf("tokenCacheSize", "10000", config)),
+        Long.parseLong(Config.getSysConf("tokenCacheTtl", "60000", config)));
+    DropwizardHelper.registerGauge("proxy.tokenCache.size",
+        () -> OkapiToken.getPayloadCache().size());
+    DropwizardHelper.registerGauge("proxy.tokenCache.hits",
+        () -> OkapiToken.getPayloadCache().getHits());
+    DropwizardHelper.registerGauge("proxy.tokenCache.misses",
+        () -> OkapiToken.getPayloadCache().getMisses());
+    DropwizardHelper.registerGauge("proxy.tokenCache.evictions",
+        () -> OkapiToken.getPayloadCache().getEvictions());
+    DropwizardHelper.registerGauge("proxy.tokenCache.expirations",
+        () -> OkapiToken.getPayloadCache().getExpirations());
+  }
+
   @Override
   public void start(Promise<Void> promise) {
     Future<Void> fut = startDatabases();
@@ -350,60 +372,28 @@ public class MainVerticle extends AbstractVerticle {
   }
 
   private Future<Void> startListening() {
-    Router router = Router.router(vertx);
-    logger.debug("Setting up routes");
-    //handle CORS
-    router.route().handler(CorsHandler.create("*")
-        .allowedMethod(HttpMethod.PUT)
-        .allowedMethod(HttpMethod.DELETE)
-        .allowedMethod(HttpMethod.GET)
-        .allowedMethod(HttpMethod.POST)
-        //allow request headers
-        .allowedHeader(HttpHeaders.CONTENT_TYPE.toString())
-        .allowedHeader(XOkapiHeaders.TENANT)
-        .allowedHeader(XOkapiHeaders.TOKEN)
-        .allowedHeader(XOkapiHeaders.AUTHORIZATION)
-        .allowedHeader(XOkapiHeaders.REQUEST_ID) //expose response headers
-        .allowedHeader(XOkapiHeaders.MODULE_ID)
-        .exposedHeader(HttpHeaders.LOCATION.toString())
-        .exposedHeader(XOkapiHeaders.TRACE)
-        .exposedHeader(XOkapiHeaders.TOKEN)
-        .exposedHeader(XOkapiHeaders.AUTHORIZATION)
-        .exposedHeader(XOkapiHeaders.REQUEST_ID)
-        .exposedHeader(XOkapiHeaders.MODULE_ID)
-    );
-
-    if (proxyService != null) {
-      router.routeWithRegex("^/_/invoke/tenant/[^/ ]+/.*")
-          .handler(proxyService::redirectProxy);
-      // Note: This can not go into the InternalModule, it reads the req body,
-      // and then we can not ctx.reroute(). Unless we do something trickier,
-      // like a new HTTP request.
+    Router router = ProxyVerticle.createRouter(vertx, proxyService);
+    Future<Void> fut = ProxyVerticle.listen(vertx, router, port);
+    if (proxyService == null || proxyInstances <= 1) {
+      return fut;
     }
+    return fut.compose(x -> startProxyInstances());
+  }
 
-    // everything else gets proxified to modules
-    // Even internal functions, they are in the InternalModule
-    if (proxyService != null) {
-      router.route("/*").handler(proxyService::proxy);
+  /**
+   * Deploy the additional proxy instances. Each of them listens on the Okapi
+   * port in its own verticle, thus on its own event loop.
+   */
+  private Future<Void> startProxyInstances() {
+    logger.info("Starting {} additional proxy instances", proxyInstances - 1);
+    CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+    for (int i = 1; i < proxyInstances; i++) {
+      Promise<String> promise = Promise.promise();
+      vertx.deployVerticle(new ProxyVerticle(proxyService, port), promise::handle);
+      futures.add(promise);
     }
-
     Promise<Void> promise = Promise.promise();
-    logger.debug("About to start HTTP server");
-    HttpServerOptions so = new HttpServerOptions()
-        .setHandle100ContinueAutomatically(true);
-    vertx.createHttpServer(so)
-        .requestHandler(router)
-        .listen(port,
-            result -> {
-              if (result.succeeded()) {
-                logger.info("API Gateway started PID {}. Listening on port {}",
-                    ManagementFactory.getRuntimeMXBean().getName(), port);
-              } else {
-                logger.fatal("createHttpServer failed for port {}", port, result.cause());
-              }
-              promise.handle(result.mapEmpty());
-            }
-        );
+    futures.all(res -> promise.handle(res.mapEmpty()));
     return promise.future();
   }
 
@@ -0,0 +1,120 @@
+package org.folio.okapi;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.CorsHandler;
+import java.lang.management.ManagementFactory;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.okapi.managers.ProxyService;
+
+/**
+ * HTTP serving verticle for the proxy. MainVerticle owns the managers and
+ * listens on the Okapi port itself. When configured with more than one proxy
+ * instance, additional ProxyVerticles are deployed that listen on the same
+ * port, so that Vert.x distributes incoming connections over several event
+ * loops. All instances share the same ProxyService (and managers).
+ */
+public class ProxyVerticle extends AbstractVerticle {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  private final ProxyService proxyService;
+  private final int port;
+
+  /**
+   * Construct proxy verticle.
+   * @param proxyService proxy service shared with MainVerticle
+   * @param port port to listen on
+   */
+  public ProxyVerticle(ProxyService proxyService, int port) {
+    this.proxyService = proxyService;
+    this.port = port;
+  }
+
+  @Override
+  public void start(Promise<Void> promise) {
+    listen(vertx, createRouter(vertx, proxyService), port).setHandler(promise);
+  }
+
+  /**
+   * Create the router that handles all requests for Okapi.
+   * @param vertx Vert.x handle
+   * @param proxyService proxy service; if null, no routes are set up
+   * @return router
+   */
+  static Router createRouter(Vertx vertx, ProxyService proxyService) {
+    Router router = Router.router(vertx);
+    logger.debug("Setting up routes");
+    //handle CORS
+    router.route().handler(CorsHandler.create("*")
+        .allowedMethod(HttpMethod.PUT)
+        .allowedMethod(HttpMethod.DELETE)
+        .allowedMethod(HttpMethod.GET)
+        .allowedMethod(HttpMethod.POST)
+        //allow request headers
+        .allowedHeader(HttpHeaders.CONTENT_TYPE.toString())
+        .allowedHeader(XOkapiHeaders.TENANT)
+        .allowedHeader(XOkapiHeaders.TOKEN)
+        .allowedHeader(XOkapiHeaders.AUTHORIZATION)
+        .allowedHeader(XOkapiHeaders.REQUEST_ID) //expose response headers
+        .allowedHeader(XOkapiHeaders.MODULE_ID)
+        .exposedHeader(HttpHeaders.LOCATION.toString())
+        .exposedHeader(XOkapiHeaders.TRACE)
+        .exposedHeader(XOkapiHeaders.TOKEN)
+        .exposedHeader(XOkapiHeaders.AUTHORIZATION)
+        .exposedHeader(XOkapiHeaders.REQUEST_ID)
+        .exposedHeader(XOkapiHeaders.MODULE_ID)
+    );
+
+    if (proxyService != null) {
+      router.routeWithRegex("^/_/invoke/tenant/[^/ ]+/.*")
+          .handler(proxyService::redirectProxy);
+      // Note: This can not go into the InternalModule, it reads the req body,
+      // and then we can not ctx.reroute(). Unless we do something trickier,
+      // like a new HTTP request.
+    }
+
+    // everything else gets proxified to modules
+    // Even internal functions, they are in the InternalModule
+    if (proxyService != null) {
+      router.route("/*").handler(proxyService::proxy);
+    }
+    return router;
+  }
+
+  /**
+   * Start HTTP server for router.
+   * @param vertx Vert.x handle
+   * @param router router serving requests
+   * @param port port to listen on
+   * @return async result
+   */
+  static Future<Void> listen(Vertx vertx, Router router, int port) {
+    Promise<Void> promise = Promise.promise();
+    logger.debug("About to start HTTP server");
+    HttpServerOptions so = new HttpServerOptions()
+        .setHandle100ContinueAutomatically(true);
+    vertx.createHttpServer(so)
+        .requestHandler(router)
+        .listen(port,
+            result -> {
+              if (result.succeeded()) {
+                logger.info("API Gateway started PID {}. Listening on port {}",
+                    ManagementFactory.getRuntimeMXBean().getName(), port);
+              } else {
+                logger.fatal("createHttpServer failed for port {}", port, result.cause());
+              }
+              promise.handle(result.mapEmpty());
+            }
+        );
+    return promise.future();
+  }
+}
@@ -0,0 +1,53 @@
+package org.folio.okapi.bean;
+
+/**
+ * State of the circuit breaker for one module, as seen by this Okapi node.
+ */
+public class CircuitBreakerDescriptor {
+
+  private String srvcId;
+  private String state;
+  private int calls;
+  private int failureRate;
+  private int slowCallRate;
+
+  public String getSrvcId() {
+    return srvcId;
+  }
+
+  public void setSrvcId(String srvcId) {
+    this.srvcId = srvcId;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public void setState(String state) {
+    this.state = state;
+  }
+
+  public int getCalls() {
+    return calls;
+  }
+
+  public void setCalls(int calls) {
+    this.calls = calls;
+  }
+
+  public int getFailureRate() {
+    return failureRate;
+  }
+
+  public void setFailureRate(int failureRate) {
+    this.failureRate = failureRate;
+  }
+
+  public int getSlowCallRate() {
+    return slowCallRate;
+  }
+
+  public void setSlowCallRate(int slowCallRate) {
+    this.slowCallRate = slowCallRate;
+  }
+}
@@ -27,6 +27,12 @@ public class RoutingEntry {
   private String unit;
   private String delay;
   private long factor;
+  private Integer timeout;
+  private Long maxBodySize;
+  private Boolean responseCache;
+  private Boolean coalesce;
+  private Boolean retry;
+  private Boolean hedge;
   private String[] permissionsRequired;
   private String[] permissionsDesired;
   private String[] modulePermissions;
@@ -168,6 +174,81 @@ public class RoutingEntry {
     }
   }
 
+  public Integer getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Set timeout for calls to this entry.
+   * @param timeout timeout in milliseconds; null for module or global timeout
+   */
+  public void setTimeout(Integer timeout) {
+    this.timeout = timeout;
+  }
+
+  public Long getMaxBodySize() {
+    return maxBodySize;
+  }
+
+  /**
+   * Set maximum size of request bodies for this entry.
+   * @param maxBodySize size in bytes; null for no limit for this entry
+   */
+  public void setMaxBodySize(Long maxBodySize) {
+    this.maxBodySize = maxBodySize;
+  }
+
+  public Boolean getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Set whether the proxy may cache GET responses of this entry.
+   * @param responseCache true to cache as allowed by Cache-Control
+   */
+  public void setResponseCache(Boolean responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  public Boolean getCoalesce() {
+    return coalesce;
+  }
+
+  /**
+   * Set whether the proxy may serve identical concurrent GET requests of this
+   * entry with one call.
+   * @param coalesce true to coalesce
+   */
+  public void setCoalesce(Boolean coalesce) {
+    this.coalesce = coalesce;
+  }
+
+  public Boolean getRetry() {
+    return retry;
+  }
+
+  /**
+   * Set whether PUT and DELETE requests of this entry may be retried on
+   * another instance. GET, HEAD and OPTIONS requests may always be retried.
+   * @param retry true if PUT and DELETE are idempotent
+   */
+  public void setRetry(Boolean retry) {
+    this.retry = retry;
+  }
+
+  public Boolean getHedge() {
+    return hedge;
+  }
+
+  /**
+   * Set whether the proxy may send a duplicate GET request of this entry to
+   * another instance when the first instance is slow to respond.
+   * @param hedge true to hedge
+   */
+  public void setHedge(Boolean hedge) {
+    this.hedge = hedge;
+  }
+
   public String getLevel() {
     return level;
   }
@@ -269,7 +350,12 @@ public class RoutingEntry {
     }
   }
 
-  static int cutUri(String uri) {
+  /**
+   * Return length of the path part of an URI; that is without query and fragment.
+   * @param uri URI
+   * @return length
+   */
+  public static int cutUri(String uri) {
     int len = uri.indexOf('?');
     if (len == -1) {
       len = uri.length();
@@ -2,6 +2,7 @@ package org.folio.okapi.bean;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import java.util.Map;
 
 /**
  * Description of a Tenant. This is what gets POSTed to "/_/proxy/tenants" to
@@ -16,6 +17,9 @@ public class TenantDescriptor {
   private String id;
   private String name;
   private String description;
+  private Long maxBodySize;
+  private TenantLimits limits;
+  private Map<String, TenantLimits> moduleLimits;
 
   public void setName(String name) {
     this.name = name;
@@ -33,6 +37,42 @@ public class TenantDescriptor {
     return description;
   }
 
+  public Long getMaxBodySize() {
+    return maxBodySize;
+  }
+
+  /**
+   * Set maximum size of request bodies for the tenant.
+   * @param maxBodySize size in bytes; null for no tenant limit
+   */
+  public void setMaxBodySize(Long maxBodySize) {
+    this.maxBodySize = maxBodySize;
+  }
+
+  public TenantLimits getLimits() {
+    return limits;
+  }
+
+  /**
+   * Set proxy traffic limits for the tenant.
+   * @param limits limits; null for none
+   */
+  public void setLimits(TenantLimits limits) {
+    this.limits = limits;
+  }
+
+  public Map<String, TenantLimits> getModuleLimits() {
+    return moduleLimits;
+  }
+
+  /**
+   * Set proxy traffic limits for the tenant per module.
+   * @param moduleLimits limits by module ID or product; null for none
+   */
+  public void setModuleLimits(Map<String, TenantLimits> moduleLimits) {
+    this.moduleLimits = moduleLimits;
+  }
+
   public String getId() {
     return id;
   }
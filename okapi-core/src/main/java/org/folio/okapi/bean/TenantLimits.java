@@ -0,0 +1,49 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Limits of proxy traffic for a tenant, or for a tenant and module.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TenantLimits {
+  private Double rateLimit;
+  private Integer rateBurst;
+  private Integer maxInFlight;
+
+  public Double getRateLimit() {
+    return rateLimit;
+  }
+
+  /**
+   * Set sustained request rate.
+   * @param rateLimit requests per second; null for no rate limit
+   */
+  public void setRateLimit(Double rateLimit) {
+    this.rateLimit = rateLimit;
+  }
+
+  public Integer getRateBurst() {
+    return rateBurst;
+  }
+
+  /**
+   * Set number of requests that may exceed the rate in a burst.
+   * @param rateBurst requests; null for the rate rounded up (one second)
+   */
+  public void setRateBurst(Integer rateBurst) {
+    this.rateBurst = rateBurst;
+  }
+
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * Set maximum number of concurrent requests.
+   * @param maxInFlight requests; null for no limit
+   */
+  public void setMaxInFlight(Integer maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+}
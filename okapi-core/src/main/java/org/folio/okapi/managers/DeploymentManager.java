@@ -7,7 +7,7 @@ import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -41,7 +41,9 @@ import org.folio.okapi.util.DropwizardHelper;
 public class DeploymentManager {
 
   private final Logger logger = OkapiLogger.get();
-  private final LinkedHashMap<String, DeploymentDescriptor> list = new LinkedHashMap<>();
+  // may be accessed from several proxy instances (event loops)
+  private final Map<String, DeploymentDescriptor> list
+      = Collections.synchronizedMap(new LinkedHashMap<>());
   private final Vertx vertx;
   private final Ports ports;
   private final String host;
@@ -120,7 +122,10 @@ public class DeploymentManager {
   public void shutdown(Handler<ExtendedAsyncResult<Void>> fut) {
     logger.info("fast shutdown");
     CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
-    Collection<DeploymentDescriptor> col = list.values();
+    List<DeploymentDescriptor> col;
+    synchronized (list) {
+      col = new LinkedList<>(list.values());
+    }
     for (DeploymentDescriptor dd : col) {
       ModuleHandle mh = dd.getModuleHandle();
       Promise<Void> promise = Promise.promise();
@@ -251,8 +256,10 @@ public class DeploymentManager {
 
   void list(Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut) {
     List<DeploymentDescriptor> ml = new LinkedList<>();
-    for (Map.Entry<String, DeploymentDescriptor> entry : list.entrySet()) {
-      ml.add(entry.getValue());
+    synchronized (list) {
+      for (Map.Entry<String, DeploymentDescriptor> entry : list.entrySet()) {
+        ml.add(entry.getValue());
+      }
     }
     fut.handle(new Success<>(ml));
   }
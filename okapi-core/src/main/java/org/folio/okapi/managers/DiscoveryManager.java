@@ -8,19 +8,29 @@ import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.core.spi.cluster.NodeListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.HealthDescriptor;
 import org.folio.okapi.bean.LaunchDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.NodeDescriptor;
+import org.folio.okapi.common.Config;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
@@ -29,6 +39,7 @@ import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.service.DeploymentStore;
+import org.folio.okapi.util.CircuitBreakers;
 import org.folio.okapi.util.CompList;
 import org.folio.okapi.util.LockedTypedMap1;
 import org.folio.okapi.util.LockedTypedMap2;
@@ -54,6 +65,19 @@ public class DiscoveryManager implements NodeListener {
   private final DeploymentStore deploymentStore;
   private final Messages messages = Messages.getInstance();
   private DeliveryOptions deliveryOptions;
+  private static final String EVENT_NAME = "discoveryUpdate";
+  // live instances by srvcId; replaced as a whole on refresh
+  private volatile Map<String, List<DeploymentDescriptor>> liveInstances
+      = Collections.emptyMap();
+  private long snapshotVersion = 0;
+  private long snapshotStarted = 0;
+  private final long healthCheckInterval;
+  private final long healthCheckTimeout;
+  private final int healthCheckConcurrency;
+  private final CircuitBreakers circuitBreakers;
+  // latest health by instId; only used with background health checking
+  private final Map<String, HealthDescriptor> healthCache = new ConcurrentHashMap<>();
+  private boolean healthCheckRunning = false;
 
   /**
    * Initialize discovery manager.
@@ -64,6 +88,8 @@ public class DiscoveryManager implements NodeListener {
     this.vertx = vertx;
     this.httpClient = vertx.createHttpClient();
     deliveryOptions = new DeliveryOptions().setSendTimeout(300000); // 5 minutes
+    deployments.enableNearCache();
+    nodes.enableNearCache();
     deployments.init(vertx, "discoveryList", res1 -> {
       if (res1.failed()) {
         fut.handle(new Failure<>(res1.getType(), res1.cause()));
@@ -72,7 +98,15 @@ public class DiscoveryManager implements NodeListener {
           if (res2.failed()) {
             fut.handle(new Failure<>(res2.getType(), res2.cause()));
           } else {
-            fut.handle(new Success<>());
+            vertx.eventBus().consumer(EVENT_NAME, msg -> refreshSnapshot(res -> {
+              if (res.failed()) {
+                logger.warn("refresh of discovery snapshot failed: {}", res.cause().getMessage());
+              }
+            }));
+            if (healthCheckInterval > 0) {
+              vertx.setPeriodic(healthCheckInterval, id -> checkHealth(res -> { }));
+            }
+            refreshSnapshot(fut);
           }
         });
       }
@@ -100,7 +134,35 @@ public class DiscoveryManager implements NodeListener {
   }
 
   public DiscoveryManager(DeploymentStore ds) {
+    this(ds, new JsonObject());
+  }
+
+  /**
+   * Construct discovery manager.
+   * @param ds deployment storage
+   * @param config configuration; for background health checking
+   */
+  public DiscoveryManager(DeploymentStore ds, JsonObject config) {
     deploymentStore = ds;
+    healthCheckInterval = Long.parseLong(Config.getSysConf("healthCheckInterval", "0", config));
+    healthCheckTimeout = Long.parseLong(Config.getSysConf("healthCheckTimeout", "5000", config));
+    healthCheckConcurrency = Integer.parseInt(
+        Config.getSysConf("healthCheckConcurrency", "10", config));
+    circuitBreakers = new CircuitBreakers(
+        Integer.parseInt(Config.getSysConf("circuitBreakerWindow", "0", config)),
+        Integer.parseInt(Config.getSysConf("circuitBreakerFailureRate", "50", config)),
+        Long.parseLong(Config.getSysConf("circuitBreakerSlowCallMs", "0", config)),
+        Integer.parseInt(Config.getSysConf("circuitBreakerSlowCallRate", "100", config)),
+        Long.parseLong(Config.getSysConf("circuitBreakerOpenMs", "30000", config)),
+        Integer.parseInt(Config.getSysConf("circuitBreakerHalfOpenCalls", "3", config)));
+  }
+
+  /**
+   * Get the circuit breakers of modules, for calls from this node.
+   * @return circuit breakers
+   */
+  public CircuitBreakers getCircuitBreakers() {
+    return circuitBreakers;
   }
 
   public void setClusterManager(ClusterManager mgr) {
@@ -135,7 +197,8 @@ public class DiscoveryManager implements NodeListener {
           fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("10809", md.getInstId())));
           return;
         }
-        deployments.add(md.getSrvcId(), md.getInstId(), md, fut);
+        circuitBreakers.reset(md.getSrvcId());
+        deployments.add(md.getSrvcId(), md.getInstId(), md, res3 -> changed(res3, fut));
       });
     });
   }
@@ -352,7 +415,7 @@ public class DiscoveryManager implements NodeListener {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
       } else {
-        fut.handle(new Success<>());
+        changed(new Success<>(), fut);
       }
     });
   }
@@ -568,6 +631,22 @@ public class DiscoveryManager implements NodeListener {
   private void health(DeploymentDescriptor md,
                       Handler<ExtendedAsyncResult<HealthDescriptor>> fut) {
 
+    HealthDescriptor cached = healthCache.get(md.getInstId());
+    if (cached != null) {
+      fut.handle(new Success<>(cached));
+      return;
+    }
+    probeHealth(md, res -> {
+      if (healthCheckInterval > 0) {
+        healthCache.put(md.getInstId(), res.result());
+      }
+      fut.handle(res);
+    });
+  }
+
+  private void probeHealth(DeploymentDescriptor md,
+                           Handler<ExtendedAsyncResult<HealthDescriptor>> fut) {
+
     HealthDescriptor hd = new HealthDescriptor();
     String url = md.getUrl();
     hd.setInstId(md.getInstId());
@@ -596,11 +675,110 @@ public class DiscoveryManager implements NodeListener {
           fut.handle(new Success<>(hd));
         });
       });
+      if (healthCheckTimeout > 0) {
+        req.setTimeout(healthCheckTimeout);
+      }
       req.end();
     }
   }
 
+  /**
+   * Probe all live instances, at most healthCheckConcurrency at a time, and
+   * update the health cache. Instances that are no longer live are dropped
+   * from the cache. Skipped if the previous round is still running.
+   * @param fut called when the round is done
+   */
+  void checkHealth(Handler<ExtendedAsyncResult<Void>> fut) {
+    if (healthCheckRunning) {
+      fut.handle(new Success<>());
+      return;
+    }
+    healthCheckRunning = true;
+    Deque<DeploymentDescriptor> queue = new ArrayDeque<>();
+    Set<String> instIds = new HashSet<>();
+    for (List<DeploymentDescriptor> l : liveInstances.values()) {
+      for (DeploymentDescriptor dd : l) {
+        queue.add(dd);
+        instIds.add(dd.getInstId());
+      }
+    }
+    healthCache.keySet().retainAll(instIds);
+    CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+    for (int i = 0; i < healthCheckConcurrency && i < instIds.size(); i++) {
+      Promise<Void> promise = Promise.promise();
+      checkHealthNext(queue, promise);
+      futures.add(promise);
+    }
+    futures.all(res -> {
+      healthCheckRunning = false;
+      fut.handle(res);
+    });
+  }
+
+  /**
+   * Get latest result of background health checking.
+   * @param instId instance ID
+   * @return health; null if not checked
+   */
+  HealthDescriptor getCachedHealth(String instId) {
+    return healthCache.get(instId);
+  }
+
+  private void checkHealthNext(Deque<DeploymentDescriptor> queue, Promise<Void> promise) {
+    DeploymentDescriptor dd = queue.poll();
+    if (dd == null) {
+      promise.complete();
+      return;
+    }
+    boolean[] done = new boolean[1];
+    probeHealth(dd, res -> {
+      if (done[0]) {
+        return; // both exception and end handler may fire
+      }
+      done[0] = true;
+      HealthDescriptor hd = res.result();
+      HealthDescriptor old = healthCache.put(dd.getInstId(), hd);
+      if (!hd.isHealthStatus() && (old == null || old.isHealthStatus())) {
+        logger.warn("Instance {} of {} is unhealthy: {}",
+            dd.getInstId(), dd.getSrvcId(), hd.getHealthMessage());
+      }
+      checkHealthNext(queue, promise);
+    });
+  }
+
+  /**
+   * Get the instances that are not known to be unhealthy. Only background
+   * health checking marks instances unhealthy.
+   * @param instances instances of a module
+   * @return instances not known to be unhealthy; all instances if all are
+   *     unhealthy
+   */
+  public List<DeploymentDescriptor> filterHealthy(List<DeploymentDescriptor> instances) {
+    if (healthCache.isEmpty()) {
+      return instances;
+    }
+    List<DeploymentDescriptor> l = new ArrayList<>(instances.size());
+    for (DeploymentDescriptor dd : instances) {
+      HealthDescriptor hd = healthCache.get(dd.getInstId());
+      if (hd == null || hd.isHealthStatus()) {
+        l.add(dd);
+      }
+    }
+    return l.isEmpty() ? instances : l;
+  }
+
+  // With background health checking, the health of live instances is served
+  // from the snapshot and the health cache, without reading the deployments.
+
   void health(Handler<ExtendedAsyncResult<List<HealthDescriptor>>> fut) {
+    if (healthCheckInterval > 0) {
+      List<DeploymentDescriptor> all = new ArrayList<>();
+      for (List<DeploymentDescriptor> l : liveInstances.values()) {
+        all.addAll(l);
+      }
+      healthList(all, fut);
+      return;
+    }
     DiscoveryManager.this.get(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -611,6 +789,14 @@ public class DiscoveryManager implements NodeListener {
   }
 
   void health(String srvcId, String instId, Handler<ExtendedAsyncResult<HealthDescriptor>> fut) {
+    if (healthCheckInterval > 0) {
+      for (DeploymentDescriptor dd : getLiveInstances(srvcId)) {
+        if (dd.getInstId().equals(instId)) {
+          health(dd, fut);
+          return;
+        }
+      }
+    }
     DiscoveryManager.this.get(srvcId, instId, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -621,6 +807,11 @@ public class DiscoveryManager implements NodeListener {
   }
 
   void health(String srvcId, Handler<ExtendedAsyncResult<List<HealthDescriptor>>> fut) {
+    List<DeploymentDescriptor> live = getLiveInstances(srvcId);
+    if (healthCheckInterval > 0 && !live.isEmpty()) {
+      healthList(live, fut);
+      return;
+    }
     getNonEmpty(srvcId, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -634,7 +825,7 @@ public class DiscoveryManager implements NodeListener {
     if (clusterManager != null) {
       nd.setNodeId(clusterManager.getNodeID());
     }
-    nodes.put(nd.getNodeId(), nd, fut);
+    nodes.put(nd.getNodeId(), nd, res -> changed(res, fut));
   }
 
   /**
@@ -708,13 +899,13 @@ public class DiscoveryManager implements NodeListener {
           fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("10808", nodeId)));
           return;
         }
-        nodes.put(nodeId, nd, pres -> {
-          if (pres.failed()) {
-            fut.handle(new Failure<>(pres.getType(), pres.cause()));
+        nodes.put(nodeId, nd, pres -> changed(pres, cres -> {
+          if (cres.failed()) {
+            fut.handle(new Failure<>(cres.getType(), cres.cause()));
           } else {
             fut.handle(new Success<>(nd));
           }
-        });
+        }));
       }
     });
   }
@@ -749,13 +940,120 @@ public class DiscoveryManager implements NodeListener {
   @Override
   public void nodeAdded(String nodeID) {
     logger.info("node.add {}", nodeID);
+    // the new node announces itself when it has registered in nodes
   }
 
   @Override
   public void nodeLeft(String nodeID) {
-    nodes.remove(nodeID, res
-        -> logger.info("node.remove {} result={}", nodeID, res.result())
-    );
+    nodes.remove(nodeID, res -> {
+      logger.info("node.remove {} result={}", nodeID, res.result());
+      changed(res, x -> { });
+    });
+  }
+
+  /**
+   * Called when deployments or nodes were modified by this node. Refreshes
+   * the local snapshot before returning, so that the change is visible to
+   * the caller, and notifies all nodes (including this one).
+   * @param res result of modification; if failed, nothing is refreshed
+   * @param fut result of the modification, after refresh
+   */
+  private <T> void changed(ExtendedAsyncResult<T> res, Handler<ExtendedAsyncResult<T>> fut) {
+    if (res.failed()) {
+      fut.handle(res);
+      return;
+    }
+    refreshSnapshot(rres -> {
+      vertx.eventBus().publish(EVENT_NAME, "");
+      if (rres.failed()) {
+        fut.handle(new Failure<>(rres.getType(), rres.cause()));
+      } else {
+        fut.handle(res);
+      }
+    });
+  }
+
+  /**
+   * Rebuild the snapshot of live instances from the shared maps. A refresh
+   * that completes after a later started refresh is discarded.
+   * @param fut async result
+   */
+  private void refreshSnapshot(Handler<ExtendedAsyncResult<Void>> fut) {
+    final long version;
+    synchronized (this) {
+      version = ++snapshotStarted;
+    }
+    deployments.getKeys(kres -> {
+      if (kres.failed()) {
+        fut.handle(new Failure<>(kres.getType(), kres.cause()));
+        return;
+      }
+      Map<String, List<DeploymentDescriptor>> all = new HashMap<>();
+      CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+      for (String srvcId : kres.result()) {
+        Promise<List<DeploymentDescriptor>> promise = Promise.promise();
+        deployments.get(srvcId, res -> {
+          if (res.succeeded()) {
+            all.put(srvcId, res.result());
+            promise.complete(res.result());
+          } else if (res.getType() == ErrorType.NOT_FOUND) {
+            promise.complete(); // removed since getKeys
+          } else {
+            promise.fail(res.cause());
+          }
+        });
+        futures.add(promise);
+      }
+      futures.all(res1 -> {
+        if (res1.failed()) {
+          fut.handle(new Failure<>(res1.getType(), res1.cause()));
+          return;
+        }
+        nodes.getAll(nres -> {
+          if (nres.failed()) {
+            fut.handle(new Failure<>(nres.getType(), nres.cause()));
+            return;
+          }
+          Collection<NodeDescriptor> nodesCollection = nres.result().values();
+          Map<String, List<DeploymentDescriptor>> live = new HashMap<>();
+          for (Map.Entry<String, List<DeploymentDescriptor>> e : all.entrySet()) {
+            List<DeploymentDescriptor> l = new ArrayList<>();
+            for (DeploymentDescriptor dd : e.getValue()) {
+              if (isAlive(dd, nodesCollection)) {
+                l.add(dd);
+              }
+            }
+            live.put(e.getKey(), Collections.unmodifiableList(l));
+          }
+          synchronized (this) {
+            if (version > snapshotVersion) {
+              snapshotVersion = version;
+              liveInstances = Collections.unmodifiableMap(live);
+            }
+          }
+          fut.handle(new Success<>());
+        });
+      });
+    });
+  }
+
+  /**
+   * Get live instances of a service from the local snapshot. The snapshot is
+   * updated when deployments or nodes are modified, on this or other nodes
+   * of the cluster.
+   * @param srvcId service ID (module ID)
+   * @return instances; empty list if none (never null). The list is read-only
+   */
+  public List<DeploymentDescriptor> getLiveInstances(String srvcId) {
+    return liveInstances.getOrDefault(srvcId, Collections.emptyList());
+  }
+
+  /**
+   * Get version of the snapshot of live instances. Increases whenever the
+   * snapshot is replaced.
+   */
+  public synchronized long getSnapshotVersion() {
+    return snapshotVersion;
   }
 
   /**
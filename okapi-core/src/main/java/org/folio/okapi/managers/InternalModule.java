@@ -191,6 +191,17 @@ public class InternalModule {
         + "    \"permissionsRequired\" : [ \"okapi.discovery.health.get\" ], "
         + "    \"type\" : \"internal\" "
         + "   }, "
+        + "   {" // discovery, breakers
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/discovery/breakers\","
+        + "    \"permissionsRequired\" : [ \"okapi.discovery.health.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/discovery/breakers/{serviceId}\","
+        + "    \"permissionsRequired\" : [ \"okapi.discovery.health.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, "
         + "   {" // discovery, nodes
         + "    \"methods\" :  [ \"GET\" ],"
         + "    \"pathPattern\" : \"/_/discovery/nodes\","
@@ -1151,6 +1162,16 @@ public class InternalModule {
     });
   }
 
+  private void discoveryBreakers(Handler<ExtendedAsyncResult<String>> fut) {
+    final String s = Json.encodePrettily(discoveryManager.getCircuitBreakers().list());
+    fut.handle(new Success<>(s));
+  }
+
+  private void discoveryBreaker(String srvcId, Handler<ExtendedAsyncResult<String>> fut) {
+    final String s = Json.encodePrettily(discoveryManager.getCircuitBreakers().get(srvcId));
+    fut.handle(new Success<>(s));
+  }
+
   private void listEnv(Handler<ExtendedAsyncResult<String>> fut) {
     envManager.get(res -> {
       if (res.failed()) {
@@ -1468,6 +1489,16 @@ public class InternalModule {
         discoveryHealthOne(decodedSegs[4], decodedSegs[5], fut);
         return;
       }
+      // /_/discovery/breakers
+      if (n == 4 && segments[3].equals("breakers") && m.equals(HttpMethod.GET)) {
+        discoveryBreakers(fut);
+        return;
+      }
+      // /_/discovery/breakers/:srvcId
+      if (n == 5 && segments[3].equals("breakers") && m.equals(HttpMethod.GET)) {
+        discoveryBreaker(decodedSegs[4], fut);
+        return;
+      }
     } // discovery
 
     if (n >= 2 && p.startsWith("/_/env")
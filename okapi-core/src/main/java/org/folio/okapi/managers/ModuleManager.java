@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.Tenant;
@@ -37,10 +38,11 @@ public class ModuleManager {
   private final Logger logger = OkapiLogger.get();
   private TenantManager tenantManager = null;
   private String mapName = "modules";
-  private static final String EVENT_NAME = "moduleUpdate";
+  static final String EVENT_NAME = "moduleUpdate"; // also consumed by ProxyService
   private final LockedTypedMap1<ModuleDescriptor> modules
       = new LockedTypedMap1<>(ModuleDescriptor.class);
-  private final Map<String,ModuleDescriptor> enabledModulesCache = new HashMap<>();
+  // shared by all proxy instances (event loops)
+  private final Map<String,ModuleDescriptor> enabledModulesCache = new ConcurrentHashMap<>();
   private final ModuleStore moduleStore;
   private Vertx vertx;
   private final Messages messages = Messages.getInstance();
@@ -402,8 +404,9 @@ public class ModuleManager {
     List<ModuleDescriptor> mdl = new LinkedList<>();
     CompList<List<ModuleDescriptor>> futures = new CompList<>(ErrorType.INTERNAL);
     for (String id : ten.getEnabled().keySet()) {
-      if (enabledModulesCache.containsKey(id)) {
-        mdl.add(enabledModulesCache.get(id));
+      ModuleDescriptor md = enabledModulesCache.get(id);
+      if (md != null) {
+        mdl.add(md);
       } else {
         Promise<ModuleDescriptor> promise = Promise.promise();
         modules.get(id, res -> {
@@ -6,8 +6,6 @@ import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.HttpClient;
-import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpMethod;
@@ -18,16 +16,15 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.RoutingContext;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
@@ -35,17 +32,41 @@ import org.folio.okapi.bean.ModuleInstance;
 import org.folio.okapi.bean.RoutingEntry;
 import org.folio.okapi.bean.RoutingEntry.ProxyType;
 import org.folio.okapi.bean.Tenant;
+import org.folio.okapi.bean.TenantLimits;
+import org.folio.okapi.common.Config;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
 import org.folio.okapi.common.Messages;
+import org.folio.okapi.common.ModuleId;
 import org.folio.okapi.common.OkapiClient;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.OkapiToken;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.okapi.util.AdmissionLimiter;
+import org.folio.okapi.util.AuthCache;
+import org.folio.okapi.util.AuthHeaders;
+import org.folio.okapi.util.CircuitBreakers;
 import org.folio.okapi.util.DropwizardHelper;
+import org.folio.okapi.util.FanOut;
+import org.folio.okapi.util.HttpClientPools;
+import org.folio.okapi.util.HedgedCall;
+import org.folio.okapi.util.InstanceStats;
+import org.folio.okapi.util.LatencyPercentiles;
+import org.folio.okapi.util.LimitedReadStream;
+import org.folio.okapi.util.LoadBalancer;
+import org.folio.okapi.util.LoadBalancers;
+import org.folio.okapi.util.OutlierDetector;
+import org.folio.okapi.util.PipelineCache;
+import org.folio.okapi.util.ProxyBody;
 import org.folio.okapi.util.ProxyContext;
+import org.folio.okapi.util.ProxyMetrics;
+import org.folio.okapi.util.ResponseCache;
+import org.folio.okapi.util.RetryBudget;
+import org.folio.okapi.util.RoutingTable;
+import org.folio.okapi.util.SingleFlight;
+import org.folio.okapi.util.TenantLimiter;
 
 
 /**
@@ -54,8 +75,7 @@ import org.folio.okapi.util.ProxyContext;
  */
 // S1168: Empty arrays and collections should be returned instead of null
 // S1192: String literals should not be duplicated
-// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
-@java.lang.SuppressWarnings({"squid:S1168", "squid:S1192", "squid:S2245"})
+@java.lang.SuppressWarnings({"squid:S1168", "squid:S1192"})
 public class ProxyService {
 
   private static final Logger logger = OkapiLogger.get();
@@ -66,12 +86,35 @@ public class ProxyService {
   private final InternalModule internalModule;
   private final String okapiUrl;
   private final Vertx vertx;
-  private final HttpClient httpClient;
-  // for load balancing, so security is not an issue
-  private static final Random random = new Random();
+  private final HttpClientPools clientPools;
   private final int waitMs;
   private static final String REDIRECTQUERY = "redirect-query"; // See redirectProxy below
   private final Messages messages = Messages.getInstance();
+  private final Map<String, RoutingTable> routingTables = new ConcurrentHashMap<>();
+  private final PipelineCache pipelineCache;
+  private final AuthCache authCache;
+  private final ResponseCache responseCache;
+  private final SingleFlight singleFlight;
+  private final InstanceStats instanceStats;
+  private final String loadBalancing;
+  private final JsonObject loadBalancingModules;
+  private final Map<String, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+  private final OutlierDetector outlierDetector;
+  private final long proxyTimeout;
+  private final JsonObject proxyTimeoutModules;
+  private final long proxyDeadline;
+  private final long proxyBodyMemoryLimit;
+  private final FanOut.Mode requestLogMode;
+  private final long proxyMaxBodySize;
+  private final int requestLogQueueSize;
+  private final ProxyMetrics proxyMetrics;
+  private final TenantLimiter tenantLimiter;
+  private final AdmissionLimiter admissionLimiter;
+  private final int proxyRetries;
+  private final RetryBudget retryBudget;
+  private final LatencyPercentiles hedgeLatencies;
+  private final long hedgeMinDelay;
+  private final RetryBudget hedgeBudget;
 
   /**
    * Construct Proxy service.
@@ -92,9 +135,69 @@ public class ProxyService {
     this.discoveryManager = dm;
     this.okapiUrl = okapiUrl;
     this.waitMs = config.getInteger("logWaitMs", 0);
-    HttpClientOptions opt = new HttpClientOptions();
-    opt.setMaxPoolSize(1000);
-    httpClient = vertx.createHttpClient(opt);
+    this.pipelineCache = new PipelineCache(
+        Integer.parseInt(Config.getSysConf("pipelineCacheSize", "1000", config)));
+    this.authCache = new AuthCache(
+        Integer.parseInt(Config.getSysConf("authCacheSize", "0", config)),
+        Long.parseLong(Config.getSysConf("authCacheTtl", "10000", config)));
+    this.singleFlight = new SingleFlight(
+        Integer.parseInt(Config.getSysConf("coalesceMaxWaiters", "100", config)),
+        Integer.parseInt(Config.getSysConf("coalesceMaxBodySize", "1048576", config)));
+    DropwizardHelper.registerGauge("proxy.coalesce.inFlight", singleFlight::size);
+    this.responseCache = new ResponseCache(
+        Integer.parseInt(Config.getSysConf("responseCacheSize", "0", config)),
+        Integer.parseInt(Config.getSysConf("responseCacheMaxEntrySize", "65536", config)));
+    this.proxyMetrics = new ProxyMetrics(
+        Integer.parseInt(Config.getSysConf("proxyMetricsLimit", "10000", config)));
+    vertx.eventBus().consumer(ModuleManager.EVENT_NAME, res -> {
+      pipelineCache.clear();
+      proxyMetrics.clearRoutingEntries();
+      authCache.clear();
+      responseCache.clear();
+    });
+    this.instanceStats = new InstanceStats(
+        Long.parseLong(Config.getSysConf("loadBalancingFailurePenalty", "1000", config)));
+    this.loadBalancing = Config.getSysConf("loadBalancing", LoadBalancers.RANDOM, config);
+    this.loadBalancingModules = config.getJsonObject("loadBalancingModules", new JsonObject());
+    this.outlierDetector = new OutlierDetector(
+        Integer.parseInt(Config.getSysConf("outlierConsecutiveFailures", "5", config)),
+        Long.parseLong(Config.getSysConf("outlierBaseEjectionMs", "30000", config)),
+        Long.parseLong(Config.getSysConf("outlierMaxEjectionMs", "300000", config)));
+    // fail early on unknown strategies
+    LoadBalancers.create(loadBalancing, instanceStats);
+    for (String id : loadBalancingModules.fieldNames()) {
+      LoadBalancers.create(loadBalancingModules.getString(id), instanceStats);
+    }
+    this.proxyTimeout = Long.parseLong(Config.getSysConf("proxyTimeout", "0", config));
+    this.proxyTimeoutModules = config.getJsonObject("proxyTimeoutModules", new JsonObject());
+    this.proxyDeadline = Long.parseLong(Config.getSysConf("proxyDeadline", "0", config));
+    this.proxyBodyMemoryLimit = Long.parseLong(
+        Config.getSysConf("proxyBodyMemoryLimit", "1048576", config));
+    this.proxyMaxBodySize = Long.parseLong(Config.getSysConf("proxyMaxBodySize", "0", config));
+    this.requestLogMode = FanOut.mode(Config.getSysConf("requestLogMode", "blocking", config));
+    this.requestLogQueueSize = Integer.parseInt(
+        Config.getSysConf("requestLogQueueSize", "65536", config));
+    this.tenantLimiter = new TenantLimiter(
+        Long.parseLong(Config.getSysConf("rateLimitRetryAfter", "1", config)));
+    this.admissionLimiter = new AdmissionLimiter(
+        Integer.parseInt(Config.getSysConf("admissionMinLimit", "10", config)),
+        Integer.parseInt(Config.getSysConf("admissionMaxLimit", "0", config)),
+        Integer.parseInt(Config.getSysConf("admissionReserved", "10", config)),
+        Long.parseLong(Config.getSysConf("admissionLatency", "1000", config)));
+    this.proxyRetries = Integer.parseInt(Config.getSysConf("proxyRetries", "0", config));
+    this.retryBudget = new RetryBudget(
+        Integer.parseInt(Config.getSysConf("retryBudgetPercent", "10", config)));
+    DropwizardHelper.registerGauge("proxy.retry.retries", retryBudget::getRetries);
+    DropwizardHelper.registerGauge("proxy.retry.exhausted", retryBudget::getExhausted);
+    this.hedgeLatencies = new LatencyPercentiles(
+        Integer.parseInt(Config.getSysConf("hedgePercentile", "95", config)), 100, 20);
+    this.hedgeMinDelay = Long.parseLong(Config.getSysConf("hedgeMinDelay", "10", config));
+    this.hedgeBudget = new RetryBudget(
+        Integer.parseInt(Config.getSysConf("hedgeMaxPercent", "5", config)));
+    DropwizardHelper.registerGauge("proxy.hedge.sent", hedgeBudget::getRetries);
+    DropwizardHelper.registerGauge("proxy.hedge.exhausted", hedgeBudget::getExhausted);
+    clientPools = new HttpClientPools(vertx, config.getJsonObject("httpClient"),
+        config.getJsonObject("httpClientModules"));
   }
 
   /**
@@ -111,56 +214,57 @@ public class ProxyService {
     String url = makeUrl(mi, ctx);
     pc.addTraceHeaderLine(ctx.request().method() + " "
         + mi.getModuleDescriptor().getId() + " "
-        + url.replaceFirst("[?#].*$", "..") // remove params
+        + removeParams(url)
         + " : " + statusCode + " " + pc.timeDiff());
     pc.logResponse(mi.getModuleDescriptor().getId(), url, statusCode);
   }
 
-  private boolean match(RoutingEntry e, HttpServerRequest req) {
-    return e.match(req.uri(), req.method().name());
+  private static String removeParams(String url) {
+    for (int i = 0; i < url.length(); i++) {
+      char c = url.charAt(i);
+      if (c == '?' || c == '#') {
+        return url.substring(0, i) + "..";
+      }
+    }
+    return url;
   }
 
   private boolean resolveRedirects(ProxyContext pc,
-                                   List<ModuleInstance> mods, RoutingEntry re,
-                                   List<ModuleDescriptor> enabledModules,
+                                   List<PipelineCache.Step> steps, RoutingEntry re,
+                                   RoutingTable routingTable, List<RoutingEntry> redirects,
                                    final String loop, final String uri) {
 
     RoutingContext ctx = pc.getCtx();
     if (re.getProxyType() == ProxyType.REDIRECT) { // resolve redirects
       boolean found = false;
       final String redirectPath = re.getRedirectPath();
-      for (ModuleDescriptor trymod : enabledModules) {
-        for (RoutingEntry tryre : trymod.getFilterRoutingEntries()) {
-          if (tryre.match(redirectPath, ctx.request().method().name())) {
-            final String newUri = re.getRedirectUri(uri);
-            found = true;
-            pc.debug("resolveRedirects: "
-                + ctx.request().method() + " " + uri
-                + " => " + trymod + " " + newUri);
-            if (loop.contains(redirectPath + " ")) {
-              pc.responseError(500, messages.getMessage("10100", loop, redirectPath));
-              return false;
-            }
-            ModuleInstance mi = new ModuleInstance(trymod, tryre, newUri,
-                ctx.request().method(), false);
-            mods.add(mi);
-            if (!resolveRedirects(pc, mods, tryre, enabledModules,
-                loop + " -> " + redirectPath, newUri)) {
-              return false;
-            }
-          }
+      List<RoutingTable.Entry> entries = routingTable.lookup(redirectPath,
+          ctx.request().method().name(), null);
+      // for each module: filters first, then handlers
+      entries.sort(Comparator.comparingInt(RoutingTable.Entry::getModuleNo)
+          .thenComparing(RoutingTable.Entry::isHandler));
+      List<RoutingEntry> newRedirects = new ArrayList<>(redirects);
+      newRedirects.add(re);
+      for (RoutingTable.Entry entry : entries) {
+        ModuleDescriptor trymod = entry.getModuleDescriptor();
+        RoutingEntry tryre = entry.getRoutingEntry();
+        final String newUri = re.getRedirectUri(uri);
+        found = true;
+        pc.debug("resolveRedirects: "
+            + ctx.request().method() + " " + uri
+            + " => " + trymod + " " + newUri);
+        if (entry.isHandler()) {
+          steps.add(new PipelineCache.Step(trymod, tryre, true, newRedirects));
+          continue;
         }
-        for (RoutingEntry tryre : trymod.getProxyRoutingEntries()) {
-          if (tryre.match(redirectPath, ctx.request().method().name())) {
-            final String newUri = re.getRedirectUri(uri);
-            found = true;
-            pc.debug("resolveRedirects: "
-                + ctx.request().method() + " " + uri
-                + " => " + trymod + " " + newUri);
-            ModuleInstance mi = new ModuleInstance(trymod, tryre,
-                newUri, ctx.request().method(), true);
-            mods.add(mi);
-          }
+        if (loop.contains(redirectPath + " ")) {
+          pc.responseError(500, messages.getMessage("10100", loop, redirectPath));
+          return false;
+        }
+        steps.add(new PipelineCache.Step(trymod, tryre, false, newRedirects));
+        if (!resolveRedirects(pc, steps, tryre, routingTable, newRedirects,
+            loop + " -> " + redirectPath, newUri)) {
+          return false;
         }
       }
       if (!found) {
@@ -171,73 +275,144 @@ public class ProxyService {
     return true;
   }
 
+  /**
+   * Get the compiled routing table for a tenant. The table is rebuilt, and
+   * replaced, when the list of enabled modules changes. That happens when
+   * modules are enabled or disabled for the tenant, or when ModuleManager
+   * drops a module from its cache (moduleUpdate).
+   *
+   * @param tenantId tenant
+   * @param enabledModules modules enabled for the tenant
+   * @return routing table
+   */
+  private RoutingTable getRoutingTable(String tenantId, List<ModuleDescriptor> enabledModules) {
+    RoutingTable table = routingTables.get(tenantId);
+    if (table == null || !table.isFor(enabledModules)) {
+      table = new RoutingTable(enabledModules);
+      routingTables.put(tenantId, table);
+    }
+    return table;
+  }
+
+  /**
+   * Forget the routing table, cached pipelines, auth filter responses and
+   * handler responses for a tenant. Called when modules are enabled or
+   * disabled for the tenant, and when the tenant is deleted.
+   * @param tenantId tenant
+   */
+  public void invalidatePipelines(String tenantId) {
+    routingTables.remove(tenantId);
+    pipelineCache.removeTenant(tenantId);
+    authCache.removeTenant(tenantId);
+    responseCache.removeTenant(tenantId);
+  }
+
+  /**
+   * Count request for the routing entry of the handler.
+   * @param tenantId tenant
+   * @param method request method
+   * @param l pipeline
+   */
+  private void markRequest(String tenantId, HttpMethod method, List<ModuleInstance> l) {
+    for (ModuleInstance mi : l) {
+      if (mi.isHandler()) {
+        proxyMetrics.requestMeter(tenantId, method, mi.getRoutingEntry()).mark();
+        return;
+      }
+    }
+  }
+
   /**
    * Builds the pipeline of modules to be invoked for a request. Sets the
    * default authToken for each ModuleInstance. Later, these can be overwritten
    * by the ModuleTokens from the auth, if needed.
    *
+   * <p>The resolved pipeline is cached by the matching routing entries, so
+   * that redirects only have to be resolved, and the pipeline sorted, for the
+   * first request that matches them.
+   *
    * @param pc ProxyContext
-   * @param enabledModules modules enabled for the current tenant
+   * @param tenantId tenant
+   * @param routingTable routing table for modules enabled for the current tenant
    * @return a list of ModuleInstances. In case of error, sets up ctx and returns null.
    */
-  private List<ModuleInstance> getModulesForRequest(ProxyContext pc,
-                                                    List<ModuleDescriptor> enabledModules) {
+  private List<ModuleInstance> getModulesForRequest(ProxyContext pc, String tenantId,
+                                                    RoutingTable routingTable) {
 
-    List<ModuleInstance> mods = new ArrayList<>();
     HttpServerRequest req = pc.getCtx().request();
     final String id = req.getHeader(XOkapiHeaders.MODULE_ID);
+    final List<RoutingTable.Entry> entries = routingTable.lookup(req.uri(),
+        req.method().name(), id);
+    final String key = PipelineCache.key(tenantId, req.method().name(), entries, id);
+    PipelineCache.Pipeline pipeline = pipelineCache.get(key, routingTable);
+    if (pipeline == null) {
+      List<PipelineCache.Step> newSteps = getPipeline(pc, routingTable, entries);
+      if (newSteps == null) {
+        return null;
+      }
+      pipeline = pipelineCache.put(key, routingTable, newSteps);
+    }
+    pc.setPermissionHeaders(pipeline.getAuthHeaders());
+    List<PipelineCache.Step> steps = pipeline.getSteps();
+    List<ModuleInstance> mods = new ArrayList<>(steps.size());
+    for (PipelineCache.Step step : steps) {
+      ModuleInstance mi = step.instance(req.uri(), req.method());
+      if (!step.isRedirected()) {
+        mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
+      }
+      mods.add(mi);
+    }
+    return mods;
+  }
+
+  /**
+   * Resolve the pipeline for a request: match routing entries, follow
+   * redirects and sort by phase and level.
+   *
+   * @param pc ProxyContext
+   * @param routingTable routing table for modules enabled for the current tenant
+   * @param entries routing entries that match the request
+   * @return sorted pipeline. In case of error, sets up ctx and returns null.
+   */
+  private List<PipelineCache.Step> getPipeline(ProxyContext pc, RoutingTable routingTable,
+                                               List<RoutingTable.Entry> entries) {
+
+    List<PipelineCache.Step> steps = new ArrayList<>();
+    HttpServerRequest req = pc.getCtx().request();
     pc.debug("getMods: Matching " + req.method() + " " + req.uri());
 
-    for (ModuleDescriptor md : enabledModules) {
-      pc.debug("getMods:  looking at " + md.getId());
-      List<RoutingEntry> rr = null;
-      if (id == null) {
-        rr = md.getProxyRoutingEntries();
-      } else if (id.equals(md.getId())) {
-        rr = md.getMultiRoutingEntries();
-      }
-      if (rr != null) {
-        for (RoutingEntry re : rr) {
-          if (match(re, req)) {
-            ModuleInstance mi = new ModuleInstance(md, re, req.uri(), req.method(), true);
-            mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
-            mods.add(mi);
-            pc.debug("getMods:   Added " + md.getId() + " "
-                + re.getPathPattern() + " " + re.getPath() + " "
-                + re.getPhase() + "/" + re.getLevel());
-            break;
-          }
+    ModuleDescriptor handlerModule = null;
+    for (RoutingTable.Entry entry : entries) {
+      ModuleDescriptor md = entry.getModuleDescriptor();
+      RoutingEntry re = entry.getRoutingEntry();
+      if (entry.isHandler()) {
+        if (md == handlerModule) {
+          continue; // only first matching handler of a module
         }
+        handlerModule = md;
       }
-      rr = md.getFilterRoutingEntries();
-      for (RoutingEntry re : rr) {
-        if (match(re, req)) {
-          ModuleInstance mi = new ModuleInstance(md, re, req.uri(), req.method(), false);
-          mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
-          mods.add(mi);
-          if (!resolveRedirects(pc, mods, re, enabledModules, "", req.uri())) {
-            return null;
-          }
-          pc.debug("getMods:   Added " + md.getId() + " "
-              + re.getPathPattern() + " " + re.getPath() + " "
-              + re.getPhase() + "/" + re.getLevel());
-        }
+      steps.add(new PipelineCache.Step(md, re, entry.isHandler(), Collections.emptyList()));
+      if (!entry.isHandler()
+          && !resolveRedirects(pc, steps, re, routingTable, Collections.emptyList(),
+          "", req.uri())) {
+        return null;
       }
+      pc.debug("getMods:   Added " + md.getId() + " "
+          + re.getPathPattern() + " " + re.getPath() + " "
+          + re.getPhase() + "/" + re.getLevel());
     }
-    Comparator<ModuleInstance> cmp = (ModuleInstance a, ModuleInstance b)
-        -> a.getRoutingEntry().getPhaseLevel().compareTo(b.getRoutingEntry().getPhaseLevel());
-    mods.sort(cmp);
+    steps.sort(Comparator.comparing(step -> step.getRoutingEntry().getPhaseLevel()));
 
     // Check that our pipeline has a real module in it, not just filters,
     // so that we can return a proper 404 for requests that only hit auth
     pc.debug("Checking filters for " + req.uri());
     boolean found = false;
-    for (ModuleInstance inst : mods) {
-      pc.debug("getMods: Checking " + inst.getRoutingEntry().getPathPattern() + " "
-          + "'" + inst.getRoutingEntry().getPhase() + "' "
-          + "'" + inst.getRoutingEntry().getLevel() + "' "
+    for (PipelineCache.Step step : steps) {
+      pc.debug("getMods: Checking " + step.getRoutingEntry().getPathPattern() + " "
+          + "'" + step.getRoutingEntry().getPhase() + "' "
+          + "'" + step.getRoutingEntry().getLevel() + "' "
       );
-      if (inst.isHandler()) {
+      if (step.isHandler()) {
         found = true;
       }
     }
@@ -245,7 +420,7 @@ public class ProxyService {
       pc.responseError(404, messages.getMessage("10103", req.path(), pc.getTenant()));
       return null;
     }
-    return mods;
+    return steps;
   }
 
   /**
@@ -304,85 +479,62 @@ public class ProxyService {
   /**
    * Set up special auth headers. Get the auth bits from the module list into
    * X-Okapi-Permissions-Required and X-Okapi-Permissions-Desired headers. Also
-   * X-Okapi-Module-Permissions for each module that has such.
+   * X-Okapi-Module-Permissions for each module that has such. The values are
+   * computed once per cached pipeline.
    */
   private void authHeaders(List<ModuleInstance> modlist,
                            MultiMap requestHeaders, ProxyContext pc) {
     // Sanitize important headers from the incoming request
     sanitizeAuthHeaders(requestHeaders);
-    Set<String> req = new HashSet<>();
-    Set<String> want = new HashSet<>();
-    Set<String> extraperms = new HashSet<>();
-
-    Map<String, String[]> modperms = new HashMap<>(modlist.size()); //!!
-
-    for (ModuleInstance mod : modlist) {
-      RoutingEntry re = mod.getRoutingEntry();
-      String[] reqp = re.getPermissionsRequired();
-      if (reqp != null) {
-        req.addAll(Arrays.asList(reqp));
-      }
-      String[] wap = re.getPermissionsDesired();
-      if (wap != null) {
-        want.addAll(Arrays.asList(wap));
-      }
-      String[] modp = re.getModulePermissions();
-      if (modp != null) {
-        if (re.getProxyType() == ProxyType.REDIRECT) {
-          extraperms.addAll(Arrays.asList(modp));
-        } else {
-          modperms.put(mod.getModuleDescriptor().getId(), modp);
-        }
-      }
-    } // mod loop
-    if (!req.isEmpty()) {
-      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_REQUIRED + " " + String.join(",", req));
-      requestHeaders.add(XOkapiHeaders.PERMISSIONS_REQUIRED, String.join(",", req));
+    AuthHeaders ah = pc.getPermissionHeaders();
+    if (ah == null) {
+      ah = AuthHeaders.of(modlist);
     }
-    if (!want.isEmpty()) {
-      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_DESIRED + " " + String.join(",", want));
-      requestHeaders.add(XOkapiHeaders.PERMISSIONS_DESIRED, String.join(",", want));
+    String req = ah.getPermissionsRequired();
+    if (req != null) {
+      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_REQUIRED + " " + req);
+      requestHeaders.add(XOkapiHeaders.PERMISSIONS_REQUIRED, req);
+    }
+    String want = ah.getPermissionsDesired();
+    if (want != null) {
+      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_DESIRED + " " + want);
+      requestHeaders.add(XOkapiHeaders.PERMISSIONS_DESIRED, want);
     }
     // Add the X-Okapi-Module-Permissions even if empty. That causes auth to return
     // an empty X-Okapi-Module-Token, which will tell us that we have done the mod
     // perms, and no other module should be allowed to do the same.
-    String mpj = Json.encode(modperms);
+    String mpj = ah.getModulePermissions();
     pc.debug("authHeaders: " + XOkapiHeaders.MODULE_PERMISSIONS + " " + mpj);
     requestHeaders.add(XOkapiHeaders.MODULE_PERMISSIONS, mpj);
-    if (!extraperms.isEmpty()) {
-      String epj = Json.encode(extraperms);
+    String epj = ah.getExtraPermissions();
+    if (epj != null) {
       pc.debug("authHeaders: " + XOkapiHeaders.EXTRA_PERMISSIONS + " " + epj);
       requestHeaders.add(XOkapiHeaders.EXTRA_PERMISSIONS, epj);
     }
   }
 
-  private void resolveUrls(Iterator<ModuleInstance> it,
-                           Handler<ExtendedAsyncResult<Void>> fut) {
-    if (!it.hasNext()) {
-      fut.handle(new Success<>());
-    } else {
-      ModuleInstance mi = it.next();
+  /**
+   * Set the URL of each module instance to that of a live instance of the
+   * module. Uses the discovery snapshot, so this does not block.
+   * @param mods module instances of pipeline
+   * @return null if all were resolved; otherwise error message
+   */
+  private String resolveUrls(List<ModuleInstance> mods) {
+    for (ModuleInstance mi : mods) {
       if (mi.getRoutingEntry().getProxyType() == ProxyType.INTERNAL) {
         mi.setUrl("");
-        resolveUrls(it, fut);
-        return;
+        continue;
       }
-      discoveryManager.get(mi.getModuleDescriptor().getId(), res -> {
-        if (res.failed()) {
-          fut.handle(new Failure<>(res.getType(), res.cause()));
-        } else {
-          DeploymentDescriptor instance = pickInstance(res.result());
-          if (instance == null) {
-            fut.handle(new Failure<>(ErrorType.NOT_FOUND,
-                "No running module instance found for "
-                    + mi.getModuleDescriptor().getId()));
-            return;
-          }
-          mi.setUrl(instance.getUrl());
-          resolveUrls(it, fut);
-        }
-      });
+      final String srvcId = mi.getModuleDescriptor().getId();
+      DeploymentDescriptor instance = pickInstance(srvcId,
+          discoveryManager.getLiveInstances(srvcId));
+      if (instance == null) {
+        return "No running module instance found for "
+            + mi.getModuleDescriptor().getId();
+      }
+      mi.setUrl(instance.getUrl());
     }
+    return null;
   }
 
   private void relayToResponse(HttpServerResponse hres,
@@ -411,8 +563,8 @@ public class ProxyService {
    * Process the auth module response. Set tokens for those modules that
    * received one.
    */
-  private void authResponse(HttpClientResponse res, ProxyContext pc) {
-    String modTok = res.headers().get(XOkapiHeaders.MODULE_TOKENS);
+  private void authResponse(MultiMap resHeaders, ProxyContext pc) {
+    String modTok = resHeaders.get(XOkapiHeaders.MODULE_TOKENS);
     if (modTok != null && !modTok.isEmpty()) {
       JsonObject jo = new JsonObject(modTok);
       for (ModuleInstance mi : pc.getModList()) {
@@ -450,18 +602,24 @@ public class ProxyService {
    */
   private void relayToRequest(HttpClientResponse res, ProxyContext pc,
                               ModuleInstance mi) {
+    relayToRequest(res.headers(), pc, mi);
+  }
+
+  private void relayToRequest(MultiMap resHeaders, ProxyContext pc, ModuleInstance mi) {
     if (XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase())
-        && res.headers().contains(XOkapiHeaders.MODULE_TOKENS)) {
-      authResponse(res, pc);
+        && resHeaders.contains(XOkapiHeaders.MODULE_TOKENS)) {
+      authResponse(resHeaders, pc);
     }
     // Sanitize both request headers (to remove the auth stuff we may have added)
     // and response headers (to remove stuff the auth module may have added)
-    sanitizeAuthHeaders(res.headers());
+    sanitizeAuthHeaders(resHeaders);
     sanitizeAuthHeaders(pc.getCtx().request().headers());
-    for (String s : res.headers().names()) {
+    MultiMap reqHeaders = pc.getCtx().request().headers();
+    for (Map.Entry<String, String> e : resHeaders) {
+      String s = e.getKey();
       if (s.startsWith("X-") || s.startsWith("x-")) {
-        final String v = res.headers().get(s);
-        pc.getCtx().request().headers().set(s, v);
+        // first value, if repeated
+        reqHeaders.set(s, resHeaders.get(s));
       }
     }
   }
@@ -498,6 +656,10 @@ public class ProxyService {
     // it will get read into a buffer somewhere.
 
     ProxyContext pc = new ProxyContext(ctx, waitMs);
+    if (!admit(pc)) {
+      stream.resume();
+      return;
+    }
 
     // It would be nice to pass the request-id to the client, so it knows what
     // to look for in Okapi logs. But that breaks the schemas, and RMB-based
@@ -517,6 +679,10 @@ public class ProxyService {
         return;
       }
       Tenant tenant = gres.result();
+      if (!acquireLimit(pc, tenantId, null, tenant.getDescriptor().getLimits())) {
+        stream.resume();
+        return;
+      }
       moduleManager.getEnabledModules(tenant, mres -> {
         if (mres.failed()) {
           stream.resume();
@@ -525,16 +691,22 @@ public class ProxyService {
         }
         List<ModuleDescriptor> enabledModules = mres.result();
 
-        String metricKey = "proxy." + tenantId + "."
-            + ctx.request().method() + "." + ctx.normalisedPath();
-        DropwizardHelper.markEvent(metricKey);
-
-        List<ModuleInstance> l = getModulesForRequest(pc, enabledModules);
+        List<ModuleInstance> l = getModulesForRequest(pc, tenantId,
+            getRoutingTable(tenantId, enabledModules));
         if (l == null) {
+          proxyMetrics.otherMeter().mark(); // no handler, such as 404
           stream.resume();
           return; // ctx already set up
         }
         pc.setModList(l);
+        markRequest(tenantId, ctx.request().method(), l);
+        if (proxyRetries > 0) {
+          retryBudget.request();
+        }
+        if (!acquireModuleLimits(pc, tenant, l)) {
+          stream.resume();
+          return;
+        }
 
         pc.logRequest(ctx, tenantId);
 
@@ -543,55 +715,145 @@ public class ProxyService {
         headers.set(XOkapiHeaders.REQUEST_IP, ctx.request().remoteAddress().host());
         headers.set(XOkapiHeaders.REQUEST_TIMESTAMP, "" + System.currentTimeMillis());
         headers.set(XOkapiHeaders.REQUEST_METHOD, ctx.request().rawMethod());
+        setDeadline(pc);
 
-        resolveUrls(l.iterator(), res -> {
-          if (res.failed()) {
+        String err = resolveUrls(l);
+        if (err != null) {
+          stream.resume();
+          pc.responseError(ErrorType.httpCode(ErrorType.NOT_FOUND), err);
+          return;
+        }
+        ReadStream<Buffer> body = stream;
+        long maxBodySize = getMaxBodySize(tenant, l);
+        if (maxBodySize > 0) {
+          String tooLarge = messages.getMessage("10113", Long.toString(maxBodySize));
+          if (getContentLength(headers) > maxBodySize) {
             stream.resume();
-            pc.responseError(res.getType(), res.cause());
-          } else {
-            List<HttpClientRequest> clientRequest = new LinkedList<>();
-            proxyR(l.iterator(), pc, stream, null, clientRequest);
+            pc.responseError(413, tooLarge);
+            return;
           }
-        });
+          body = new LimitedReadStream(stream, maxBodySize, v -> {
+            // close once the 413 has been written, rather than read the rest
+            pc.addDoneHandler(ended -> ctx.request().connection().close());
+            pc.responseError(413, tooLarge);
+          });
+        }
+        List<HttpClientRequest> clientRequest = new LinkedList<>();
+        proxyR(l.iterator(), pc, body, null, clientRequest);
       });
 
     });
   }
 
-  private void proxyResponseImmediate(ProxyContext pc, ReadStream<Buffer> res,
-                                      Buffer bcontent, List<HttpClientRequest> clientRequestList) {
+  private void proxyResponseImmediate(ProxyContext pc, ReadStream<Buffer> res, ProxyBody bcontent,
+                                      List<HttpClientRequest> clientRequestList) {
+    proxyResponseImmediate(pc, res, bcontent, clientRequestList, null, null);
+  }
+
+  /**
+   * Send response to client.
+   * @param dataHandler called for each chunk of a streamed response; may be null
+   * @param endHandler called with true at the end of a streamed response, and
+   *     with false if it fails or is replaced; may be null
+   */
+  private void proxyResponseImmediate(ProxyContext pc, ReadStream<Buffer> res, ProxyBody bcontent,
+                                      List<HttpClientRequest> clientRequestList,
+                                      Handler<Buffer> dataHandler, Handler<Boolean> endHandler) {
 
     RoutingContext ctx = pc.getCtx();
     if (pc.getAuthRes() != 0 && (pc.getAuthRes() < 200 || pc.getAuthRes() >= 300)) {
       if (bcontent == null) {
         res.resume();
       }
-      bcontent = pc.getAuthResBody();
+      bcontent = ProxyBody.of(pc.getAuthResBody());
     }
     if (bcontent != null) {
+      if (endHandler != null) {
+        endHandler.handle(false);
+      }
       pc.closeTimer();
       for (HttpClientRequest r : clientRequestList) {
-        r.end(bcontent);
+        bcontent.end(r);
       }
-      ctx.response().end(bcontent);
+      bcontent.end(ctx.response());
     } else {
-      res.handler(data -> {
+      res.exceptionHandler(e -> {
+        pc.warn("proxyRequestImmediate res exception ", e);
         for (HttpClientRequest r : clientRequestList) {
-          r.write(data);
+          pc.requestLogDropped(r);
+          r.reset();
         }
-        ctx.response().write(data);
-      });
-      res.endHandler(v -> {
-        pc.closeTimer();
-        for (HttpClientRequest r : clientRequestList) {
-          r.end();
+        if (endHandler != null) {
+          endHandler.handle(false);
         }
-        ctx.response().end();
       });
-      res.exceptionHandler(e
-          -> pc.warn("proxyRequestImmediate res exception ", e));
-      res.resume();
+      FanOut fanOut = new FanOut(res, ctx.response(), clientRequestList, requestLogMode,
+          requestLogQueueSize);
+      pc.setRequestLogFanOut(fanOut);
+      fanOut.dataHandler(dataHandler)
+          .dropHandler(pc::requestLogDropped)
+          .endHandler(v -> {
+            pc.closeTimer();
+            if (endHandler != null) {
+              endHandler.handle(true);
+            }
+          })
+          .start();
+    }
+  }
+
+  /**
+   * Pick another instance of the module for a call that failed without a
+   * response, if the call may be retried: the request is idempotent, the
+   * failure is not a timeout, another instance is available and the retry
+   * budget allows it. The caller must be able to send the request body
+   * again.
+   * @param pc proxy context
+   * @param mi module instance; gets the URL of the other instance
+   * @param res outcome of the call
+   * @return true if the call should be made again
+   */
+  private boolean retryOtherInstance(ProxyContext pc, ModuleInstance mi,
+                                     AsyncResult<HttpClientResponse> res) {
+    if (res.succeeded() || res.cause() instanceof TimeoutException
+        || pc.getRetries() >= proxyRetries || pc.remainingMs() <= 0
+        || !isIdempotent(pc.getCtx().request().method(), mi.getRoutingEntry())) {
+      return false;
+    }
+    String srvcId = mi.getModuleDescriptor().getId();
+    DeploymentDescriptor instance = otherInstance(srvcId, mi.getUrl());
+    if (instance == null || !circuitBreakers().isClosed(srvcId) || !retryBudget.tryRetry()) {
+      return false;
+    }
+    pc.warn("proxyRequestHttpClient failure: " + mi.getUrl() + ": "
+        + res.cause().getMessage() + "; retrying " + instance.getUrl());
+    pc.incRetries();
+    mi.setUrl(instance.getUrl());
+    return true;
+  }
+
+  /**
+   * Pick a live instance of a module, other than the one at a URL.
+   * @param srvcId module ID
+   * @param url URL of the instance to avoid
+   * @return instance; null if there is none
+   */
+  private DeploymentDescriptor otherInstance(String srvcId, String url) {
+    List<DeploymentDescriptor> others = new ArrayList<>();
+    for (DeploymentDescriptor dd : discoveryManager.getLiveInstances(srvcId)) {
+      if (dd.getUrl() != null && !dd.getUrl().equals(url)) {
+        others.add(dd);
+      }
     }
+    return others.isEmpty() ? null : pickInstance(srvcId, others);
+  }
+
+  private static boolean isIdempotent(HttpMethod method, RoutingEntry re) {
+    if (method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS) {
+      return true;
+    }
+    return (method == HttpMethod.PUT || method == HttpMethod.DELETE)
+        && Boolean.TRUE.equals(re.getRetry());
   }
 
   private boolean proxyHttpFail(ProxyContext pc, ModuleInstance mi,
@@ -602,6 +864,11 @@ public class ProxyService {
     }
     String e = res.cause().getMessage();
     pc.warn("proxyRequestHttpClient failure: " + mi.getUrl() + ": " + e);
+    if (res.cause() instanceof TimeoutException) {
+      pc.responseError(504, messages.getMessage("10112",
+          mi.getModuleDescriptor().getId(), mi.getUrl()));
+      return true;
+    }
     pc.responseError(500, messages.getMessage("10107",
         mi.getModuleDescriptor().getId(), mi.getUrl(), e));
     return true;
@@ -609,13 +876,19 @@ public class ProxyService {
 
   private void proxyRequestHttpClient(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, Buffer bcontent, List<HttpClientRequest> clientRequestList,
+      ProxyContext pc, ProxyBody bcontent, List<HttpClientRequest> clientRequestList,
       ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
     String url = makeUrl(mi, ctx);
     HttpMethod meth = ctx.request().method();
-    HttpClientRequest clientRequest = httpClient.requestAbs(meth, url, res1 -> {
+    InstanceStats.Call call = instanceStats.start(mi.getUrl());
+    HttpClientRequest clientRequest = clientPool(mi).requestAbs(meth, url, res1 -> {
+      instanceDone(call, mi, res1);
+      if (clientRequestList.isEmpty() && retryOtherInstance(pc, mi, res1)) {
+        proxyRequestHttpClient(it, pc, bcontent, clientRequestList, mi);
+        return;
+      }
       if (proxyHttpFail(pc, mi, res1)) {
         return;
       }
@@ -635,24 +908,36 @@ public class ProxyService {
       }
     });
     copyHeaders(clientRequest, ctx, mi);
+    setTimeout(clientRequest, pc, mi);
     pc.trace("ProxyRequestHttpClient request buf '"
         + bcontent + "'");
     for (HttpClientRequest r : clientRequestList) {
-      r.end(bcontent);
+      bcontent.end(r);
     }
-    clientRequest.end(bcontent);
+    bcontent.end(clientRequest);
     log(pc, clientRequest);
   }
 
   private void proxyRequestLog(Iterator<ModuleInstance> it,
-                               ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                               ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                                List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
-    HttpClientRequest clientRequest = httpClient.requestAbs(ctx.request().method(),
-        makeUrl(mi, ctx), res -> logger.debug("proxyRequestLog 2"));
+    InstanceStats.Call call = instanceStats.start(mi.getUrl());
+    HttpClientRequest[] self = new HttpClientRequest[1];
+    HttpClientRequest clientRequest = clientPool(mi).requestAbs(ctx.request().method(),
+        makeUrl(mi, ctx), res -> {
+          // a request dropped by the proxy is not a failure of the filter
+          if (pc.requestLogDone(self[0], res.failed())) {
+            instanceDone(call, mi, res);
+          }
+          logger.debug("proxyRequestLog 2");
+        });
+    self[0] = clientRequest;
+    pc.addRequestLog(clientRequest, call::cancel);
     clientRequestList.add(clientRequest);
     clientRequest.setChunked(true);
+    setTimeout(clientRequest, pc, mi);
     if (!it.hasNext()) {
       relayToResponse(ctx.response(), null, pc);
       copyHeaders(clientRequest, ctx, mi);
@@ -664,58 +949,70 @@ public class ProxyService {
     log(pc, clientRequest);
   }
 
-  private void proxyStreamToBuffer(ReadStream<Buffer> stream, Buffer bcontent,
-                                   Handler<Buffer> handle) {
+  private void proxyStreamToBuffer(ProxyContext pc, ReadStream<Buffer> stream,
+                                   ProxyBody bcontent, Handler<ProxyBody> handle) {
     if (bcontent != null) {
       handle.handle(bcontent);
     } else {
-      final Buffer incoming = Buffer.buffer();
-      stream.handler(incoming::appendBuffer);
-      stream.endHandler(v -> handle.handle(incoming));
-      stream.resume();
+      ProxyBody.spool(vertx, stream, proxyBodyMemoryLimit, res -> {
+        if (res.failed()) {
+          pc.responseError(ErrorType.INTERNAL, res.cause());
+          return;
+        }
+        ProxyBody body = res.result();
+        if (body.isSpooled()) {
+          pc.addDoneHandler(ended -> body.delete());
+        }
+        handle.handle(body);
+      });
     }
   }
 
   private void proxyRequestOnly(Iterator<ModuleInstance> it,
-                                ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                                ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                                 List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
+    proxyStreamToBuffer(pc, stream, bcontent, res
         -> proxyRequestHttpClient(it, pc, res, clientRequestList, mi)
     );
   }
 
   private void proxyRequestResponse10(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+      ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
       List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
+    proxyStreamToBuffer(pc, stream, bcontent, res
         -> proxyRequestResponse(it, pc, null, res, clientRequestList, mi)
     );
   }
 
+  /**
+   * Copy request headers to module request, in one pass. Skips
+   * Content-Length, and X-Okapi-Additional-Token except for the auth filter.
+   */
   private void copyHeaders(HttpClientRequest clientRequest, RoutingContext ctx, ModuleInstance mi) {
     int sz = 0;
     int limit = 2000; // all headers dumped
-    for (String name : ctx.request().headers().names()) {
-      List<String> values = ctx.request().headers().getAll(name);
-      if (values.size() > 1) {
-        logger.warn("dup HTTP header {}: {}", name, values);
+    final boolean auth = XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase());
+    MultiMap headers = ctx.request().headers();
+    MultiMap out = clientRequest.headers();
+    out.clear();
+    for (Map.Entry<String, String> e : headers) {
+      String name = e.getKey();
+      String value = e.getValue();
+      sz += name.length() + 4 + value.length(); // 4 for colon blank cr lf
+      if (out.contains(name)) {
+        logger.warn("dup HTTP header {}: {}", name, headers.getAll(name));
       }
-      for (String value : values) {
-        sz += name.length() + 4 + value.length(); // 4 for colon blank cr lf
+      if (!"Content-Length".equalsIgnoreCase(name)
+          && (auth || !XOkapiHeaders.ADDITIONAL_TOKEN.equalsIgnoreCase(name))) {
+        out.add(name, value);
       }
     }
     if (sz > limit && logger.isInfoEnabled()) {
       logger.info("Request headers size={}", sz);
-      dumpHeaders(ctx.request().headers());
-    }
-    clientRequest.headers().setAll(ctx.request().headers());
-    clientRequest.headers().remove("Content-Length");
-    final String phase = mi.getRoutingEntry().getPhase();
-    if (!XOkapiHeaders.FILTER_AUTH.equals(phase)) {
-      clientRequest.headers().remove(XOkapiHeaders.ADDITIONAL_TOKEN);
+      dumpHeaders(headers);
     }
   }
 
@@ -742,19 +1039,84 @@ public class ProxyService {
   }
 
   private void proxyRequestResponse(Iterator<ModuleInstance> it,
-                                    ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                                    ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                                     List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
+    proxyRequestResponse(it, pc, stream, bcontent, clientRequestList, mi, true);
+  }
+
+  private void proxyRequestResponse(Iterator<ModuleInstance> it,
+                                    ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
+                                    List<HttpClientRequest> clientRequestList, ModuleInstance mi,
+                                    boolean coalesce) {
 
     RoutingContext ctx = pc.getCtx();
-    HttpClientRequest clientRequest = httpClient.requestAbs(ctx.request().method(),
-        makeUrl(mi, ctx), res1 -> {
+    final String cacheKey = responseCacheKey(it, pc, clientRequestList, mi);
+    final ResponseCache.Entry cached = cacheKey == null ? null
+        : responseCache.get(cacheKey, ctx.request().headers());
+    if (cached != null && cached.isFresh()) {
+      if (bcontent == null) {
+        stream.resume();
+      }
+      proxyResponseCached(pc, mi, cached);
+      return;
+    }
+    final String flightKey = coalesce ? coalesceKey(it, pc, clientRequestList, mi) : null;
+    final SingleFlight.Flight flight = flightKey == null ? null
+        : singleFlight.start(flightKey, shared -> {
+          if (shared == null) {
+            proxyRequestResponse(it, pc, stream, bcontent, clientRequestList, mi, false);
+            return;
+          }
+          if (bcontent == null) {
+            stream.resume();
+          }
+          pc.debug("proxyRequestResponse: shared response of "
+              + mi.getModuleDescriptor().getId());
+          proxyResponseBuffered(pc, mi, shared.getStatus(), shared.getHeaders(),
+              shared.getBody());
+        });
+    if (flightKey != null && flight == null) {
+      return; // waiting for identical request
+    }
+    final boolean revalidate = cached != null && cached.getEtag() != null;
+    // request body streamed to the module: none, if it ended without data
+    final boolean[] streamed = {false, false}; // data seen, ended
+    final boolean hedge = Boolean.TRUE.equals(mi.getRoutingEntry().getHedge())
+        && isDirectGet(it, pc, clientRequestList, mi);
+    HttpClientRequest clientRequest = requestModule(pc, mi, hedge, bcontent, streamed,
+        res1 -> {
+          if (clientRequestList.isEmpty() && (bcontent != null || !streamed[0] && streamed[1])
+              && retryOtherInstance(pc, mi, res1)) {
+            if (flight != null) {
+              flight.fail();
+            }
+            proxyRequestResponse(it, pc, stream,
+                bcontent != null ? bcontent : ProxyBody.of(Buffer.buffer()),
+                clientRequestList, mi, false);
+            return;
+          }
           if (proxyHttpFail(pc, mi, res1)) {
+            if (flight != null) {
+              flight.fail();
+            }
             return;
           }
           HttpClientResponse res = res1.result();
           fixupXOkapiToken(mi.getModuleDescriptor(), ctx.request().headers(), res.headers());
+          invalidateResponses(pc, mi, res.statusCode());
+          if (revalidate && res.statusCode() == 304) {
+            if (flight != null) {
+              flight.fail(); // waiters find the revalidated response in the cache
+            }
+            proxyResponseCached(pc, mi, responseCache.revalidated(cacheKey, cached,
+                res.headers(), ctx.request().headers()));
+            return;
+          }
           Iterator<ModuleInstance> newIt = getNewIterator(it, mi, res.statusCode());
           if (res.getHeader(XOkapiHeaders.STOP) == null && newIt.hasNext()) {
+            if (flight != null) {
+              flight.fail();
+            }
             makeTraceHeader(mi, res.statusCode(), pc);
             relayToRequest(res, pc, mi);
             final String ct = res.getHeader("Content-Type");
@@ -765,63 +1127,301 @@ public class ProxyService {
             res.pause();
             proxyR(newIt, pc, res, null, new LinkedList<>());
           } else {
+            ResponseCache.Store store = cacheKey == null ? null
+                : responseCache.store(cacheKey, res.statusCode(), res.headers(),
+                ctx.request().headers());
+            Handler<Buffer> onData = null;
+            Handler<Boolean> onEnd = null;
+            if (store != null || flight != null) {
+              if (flight != null) {
+                flight.response(res.statusCode(), res.headers());
+              }
+              onData = data -> {
+                if (store != null) {
+                  store.append(data);
+                }
+                if (flight != null) {
+                  flight.append(data);
+                }
+              };
+              onEnd = complete -> {
+                if (store != null && complete) {
+                  store.end();
+                }
+                if (flight != null) {
+                  if (complete) {
+                    flight.end();
+                  } else {
+                    flight.fail();
+                  }
+                }
+              };
+            }
             relayToResponse(ctx.response(), res, pc);
             makeTraceHeader(mi, res.statusCode(), pc);
-            proxyResponseImmediate(pc, res, null, new LinkedList<>());
+            proxyResponseImmediate(pc, res, null, new LinkedList<>(), onData, onEnd);
           }
         });
     copyHeaders(clientRequest, ctx, mi);
+    if (revalidate) {
+      clientRequest.headers().set("If-None-Match", cached.getEtag());
+    }
+    setTimeout(clientRequest, pc, mi);
     if (bcontent != null) {
       pc.trace("proxyRequestResponse request buf '" + bcontent + "'");
       for (HttpClientRequest r : clientRequestList) {
-        r.end(bcontent);
+        bcontent.end(r);
       }
-      clientRequest.end(bcontent);
+      bcontent.end(clientRequest);
     } else {
       clientRequest.setChunked(true);
       for (HttpClientRequest r : clientRequestList) {
         r.setChunked(true);
       }
-      stream.handler(data -> {
-        pc.trace("proxyRequestResponse request chunk '"
-            + data.toString() + "'");
-        clientRequest.write(data);
+      stream.exceptionHandler(e -> {
+        pc.warn("proxyRequestResponse: content exception ", e);
+        clientRequest.reset();
         for (HttpClientRequest r : clientRequestList) {
-          r.write(data);
+          pc.requestLogDropped(r);
+          r.reset();
         }
       });
-      stream.endHandler(v -> {
-        pc.trace("proxyRequestResponse request complete");
-        for (HttpClientRequest r : clientRequestList) {
-          r.end();
+      FanOut fanOut = new FanOut(stream, clientRequest, clientRequestList, requestLogMode,
+          requestLogQueueSize);
+      pc.setRequestLogFanOut(fanOut);
+      fanOut.dropHandler(pc::requestLogDropped)
+          .dataHandler(data -> {
+            streamed[0] = true;
+            pc.trace("proxyRequestResponse request chunk '" + data.toString() + "'");
+          })
+          .endHandler(v -> {
+            streamed[1] = true;
+            pc.trace("proxyRequestResponse request complete");
+          })
+          .start();
+    }
+    log(pc, clientRequest);
+  }
+
+  /**
+   * Make a request to a module instance, and record its outcome. A hedged
+   * request is also sent to another instance if the first instance has not
+   * responded within the usual latency of the module (a percentile); the
+   * first response wins, and the other request is reset. The hedge is only
+   * sent if the request body can be sent again, and the hedge budget allows.
+   * @param pc proxy context
+   * @param mi module instance; gets the URL of the other instance if its
+   *     response wins
+   * @param hedge whether the request may be hedged
+   * @param bcontent request body; null if streamed
+   * @param streamed whether data was seen, and the end, of a streamed body
+   * @param handler called with the winning response
+   * @return request to the first instance; to be sent by the caller
+   */
+  private HttpClientRequest requestModule(ProxyContext pc, ModuleInstance mi, boolean hedge,
+                                          ProxyBody bcontent, boolean[] streamed,
+                                          Handler<AsyncResult<HttpClientResponse>> handler) {
+    RoutingContext ctx = pc.getCtx();
+    final String srvcId = mi.getModuleDescriptor().getId();
+    final String url = mi.getUrl();
+    InstanceStats.Call call = instanceStats.start(url);
+    long delay = -1;
+    if (hedge) {
+      hedgeBudget.request();
+      delay = hedgeLatencies.get(srvcId);
+    }
+    if (delay < 0) {
+      return clientPool(mi).requestAbs(ctx.request().method(), makeUrl(mi, ctx), res -> {
+        instanceDone(call, mi, url, res);
+        if (hedge && res.succeeded()) {
+          hedgeLatencies.record(srvcId, call.elapsedMillis());
         }
-        clientRequest.end();
+        handler.handle(res);
       });
-      stream.exceptionHandler(e
-          -> pc.warn("proxyRequestResponse: content exception ", e));
-      stream.resume();
     }
-    log(pc, clientRequest);
+    final String[] hedgeUrl = {null};
+    HedgedCall<HttpClientResponse> hedged = new HedgedCall<>(handler, res -> {
+      DropwizardHelper.markEvent("proxy.hedge.won");
+      mi.setUrl(hedgeUrl[0]);
+      handler.handle(res);
+    });
+    HttpClientRequest clientRequest = clientPool(mi).requestAbs(ctx.request().method(),
+        makeUrl(mi, ctx), res -> {
+          hedgeDone(hedged, call, mi, url, res);
+          hedged.primary(res);
+        });
+    hedged.setPrimaryCancel(clientRequest::reset);
+    final long hedgeDelay = Math.max(delay, hedgeMinDelay);
+    vertx.setTimer(hedgeDelay, id -> {
+      if (hedged.isDecided() || bcontent == null && (streamed[0] || !streamed[1])) {
+        return; // responded already, or request body can not be sent again
+      }
+      DeploymentDescriptor instance = otherInstance(srvcId, url);
+      if (instance == null || !circuitBreakers().isClosed(srvcId) || !hedgeBudget.tryRetry()
+          || !hedged.startHedge()) {
+        return;
+      }
+      hedgeUrl[0] = instance.getUrl();
+      pc.debug("proxyRequestResponse: no response from " + url + " in " + hedgeDelay
+          + " ms; hedging to " + hedgeUrl[0]);
+      InstanceStats.Call hedgeCall = instanceStats.start(hedgeUrl[0]);
+      HttpClientRequest hedgeRequest = clientPool(mi).requestAbs(ctx.request().method(),
+          hedgeUrl[0] + getPath(mi, ctx), res -> {
+            hedgeDone(hedged, hedgeCall, mi, hedgeUrl[0], res);
+            hedged.hedge(res);
+          });
+      hedged.setHedgeCancel(hedgeRequest::reset);
+      hedgeRequest.headers().setAll(clientRequest.headers());
+      setTimeout(hedgeRequest, pc, mi);
+      if (bcontent != null) {
+        bcontent.end(hedgeRequest);
+      } else {
+        hedgeRequest.end();
+      }
+    });
+    return clientRequest;
+  }
+
+  /**
+   * Record the outcome of one of the requests of a hedged call. The request
+   * that loses is reset, which is not held against its instance.
+   */
+  private void hedgeDone(HedgedCall<HttpClientResponse> hedged, InstanceStats.Call call,
+                         ModuleInstance mi, String url, AsyncResult<HttpClientResponse> res) {
+    if (hedged.isDecided()) {
+      call.cancel();
+      return;
+    }
+    instanceDone(call, mi, url, res);
+    if (res.succeeded()) {
+      hedgeLatencies.record(mi.getModuleDescriptor().getId(), call.elapsedMillis());
+    }
+  }
+
+  /**
+   * Get response cache key for a call to a module.
+   * @return key; null if the response is not cached
+   */
+  private String responseCacheKey(Iterator<ModuleInstance> it, ProxyContext pc,
+                                  List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
+    if (!responseCache.isEnabled()
+        || !Boolean.TRUE.equals(mi.getRoutingEntry().getResponseCache())
+        || !isDirectGet(it, pc, clientRequestList, mi)) {
+      return null;
+    }
+    HttpServerRequest req = pc.getCtx().request();
+    return ResponseCache.key(pc.getTenant(), req.getHeader(XOkapiHeaders.TOKEN),
+        mi.getModuleDescriptor().getId(), req.uri(), req.path());
+  }
+
+  /**
+   * Get single-flight key for a call to a module.
+   * @return key; null if the request is not coalesced
+   */
+  private String coalesceKey(Iterator<ModuleInstance> it, ProxyContext pc,
+                             List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
+    if (!Boolean.TRUE.equals(mi.getRoutingEntry().getCoalesce())
+        || !isDirectGet(it, pc, clientRequestList, mi)) {
+      return null;
+    }
+    HttpServerRequest req = pc.getCtx().request();
+    return SingleFlight.key(pc.getTenant(), req.getHeader(XOkapiHeaders.TOKEN),
+        mi.getModuleDescriptor().getId(), req.uri(), req.getHeader("Accept"));
+  }
+
+  /**
+   * Check for a GET handler call with a response that goes straight to the
+   * client, which may be answered with a buffered response.
+   */
+  private static boolean isDirectGet(Iterator<ModuleInstance> it, ProxyContext pc,
+                                     List<HttpClientRequest> clientRequestList,
+                                     ModuleInstance mi) {
+    HttpServerRequest req = pc.getCtx().request();
+    return mi.isHandler() && req.method() == HttpMethod.GET && !req.headers().contains("Range")
+        && !it.hasNext() && clientRequestList.isEmpty();
+  }
+
+  /**
+   * Forget cached responses for the path of a successful request that may
+   * change it.
+   */
+  private void invalidateResponses(ProxyContext pc, ModuleInstance mi, int statusCode) {
+    HttpMethod method = pc.getCtx().request().method();
+    if (responseCache.size() > 0 && mi.isHandler() && statusCode >= 200 && statusCode < 400
+        && method != HttpMethod.GET && method != HttpMethod.HEAD
+        && method != HttpMethod.OPTIONS) {
+      responseCache.invalidate(pc.getTenant(), pc.getCtx().request().path());
+    }
+  }
+
+  /**
+   * Send a cached handler response to the client.
+   */
+  private void proxyResponseCached(ProxyContext pc, ModuleInstance mi,
+                                   ResponseCache.Entry cached) {
+    pc.debug("proxyRequestResponse: cached response of " + mi.getModuleDescriptor().getId());
+    if (cached.isNotModified(pc.getCtx().request().getHeader("If-None-Match"))) {
+      proxyResponseBuffered(pc, mi, 304, cached.getHeaders(), null);
+    } else {
+      proxyResponseBuffered(pc, mi, cached.getStatus(), cached.getHeaders(), cached.getBody());
+    }
+  }
+
+  /**
+   * Send a handler response that the proxy has in memory to the client.
+   * @param body response body; null for none
+   */
+  private void proxyResponseBuffered(ProxyContext pc, ModuleInstance mi, int status,
+                                     MultiMap headers, Buffer body) {
+    HttpServerResponse hres = pc.getCtx().response();
+    hres.setStatusCode(status);
+    hres.headers().addAll(headers);
+    sanitizeAuthHeaders(hres.headers());
+    makeTraceHeader(mi, status, pc);
+    pc.closeTimer();
+    if (body == null) {
+      hres.end();
+    } else {
+      hres.end(body);
+    }
   }
 
   private void proxyHeaders(Iterator<ModuleInstance> it, ProxyContext pc,
-                            ReadStream<Buffer> stream, Buffer bcontent,
+                            ReadStream<Buffer> stream, ProxyBody bcontent,
                             List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
-    HttpClientRequest clientRequest = httpClient.requestAbs(ctx.request().method(),
+    final String authKey = authCacheKey(pc, mi);
+    if (authKey != null) {
+      AuthCache.Entry cached = authCache.get(authKey);
+      if (cached != null) {
+        proxyHeadersCached(it, pc, stream, bcontent, clientRequestList, mi, cached);
+        return;
+      }
+    }
+    InstanceStats.Call call = instanceStats.start(mi.getUrl());
+    HttpClientRequest clientRequest = clientPool(mi).requestAbs(ctx.request().method(),
         makeUrl(mi, ctx), res1 -> {
+          instanceDone(call, mi, res1);
           if (proxyHttpFail(pc, mi, res1)) {
             return;
           }
           HttpClientResponse res = res1.result();
           Iterator<ModuleInstance> newIt = getNewIterator(it, mi, res.statusCode());
           if (newIt.hasNext()) {
+            // copy before relayToRequest removes the auth headers
+            MultiMap authResHeaders = authKey == null ? null
+                : MultiMap.caseInsensitiveMultiMap().setAll(res.headers());
             relayToRequest(res, pc, mi);
             storeResponseInfo(pc, mi, res);
             makeTraceHeader(mi, res.statusCode(), pc);
-            res.endHandler(x
-                -> proxyR(newIt, pc, stream, bcontent, clientRequestList));
+            res.endHandler(x -> {
+              if (authResHeaders != null) {
+                authCache.put(authKey, res.statusCode(), authResHeaders,
+                    pc.getAuthResBody().length());
+              }
+              proxyR(newIt, pc, stream, bcontent, clientRequestList);
+            });
           } else {
             relayToResponse(ctx.response(), res, pc);
             makeTraceHeader(mi, res.statusCode(), pc);
@@ -836,12 +1436,42 @@ public class ProxyService {
           }
         });
     copyHeaders(clientRequest, ctx, mi);
+    setTimeout(clientRequest, pc, mi);
     clientRequest.end();
     log(pc, clientRequest);
   }
 
+  /**
+   * Get auth cache key for a call to a module.
+   * @return key; null if the call is not to an auth filter or is not cached
+   */
+  private String authCacheKey(ProxyContext pc, ModuleInstance mi) {
+    if (!authCache.isEnabled()
+        || !XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase())) {
+      return null;
+    }
+    return AuthCache.key(pc.getTenant(), pc.getCtx().request().headers());
+  }
+
+  /**
+   * Continue the pipeline with a cached auth filter response.
+   */
+  private void proxyHeadersCached(Iterator<ModuleInstance> it, ProxyContext pc,
+                                  ReadStream<Buffer> stream, ProxyBody bcontent,
+                                  List<HttpClientRequest> clientRequestList, ModuleInstance mi,
+                                  AuthCache.Entry cached) {
+    pc.debug("proxyHeaders: cached response of " + mi.getModuleDescriptor().getId());
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap().setAll(cached.getHeaders());
+    relayToRequest(headers, pc, mi);
+    pc.setAuthRes(cached.getStatus());
+    pc.getAuthHeaders().setAll(headers);
+    pc.setAuthResBody(Buffer.buffer());
+    makeTraceHeader(mi, cached.getStatus(), pc);
+    proxyR(it, pc, stream, bcontent, clientRequestList);
+  }
+
   private void proxyRedirect(Iterator<ModuleInstance> it,
-                             ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                             ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                              List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
     pc.trace("ProxyNull " + mi.getModuleDescriptor().getId());
@@ -851,25 +1481,34 @@ public class ProxyService {
   }
 
   private void proxyInternal(Iterator<ModuleInstance> it,
-                             ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                             ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                              List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
+    proxyStreamToBuffer(pc, stream, bcontent, res
         -> proxyInternalBuffer(it, pc, res, clientRequestList, mi)
     );
   }
 
   private void proxyInternalBuffer(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, Buffer bcontent, List<HttpClientRequest> clientRequestList,
+      ProxyContext pc, ProxyBody bcontent, List<HttpClientRequest> clientRequestList,
       ModuleInstance mi) {
-    String req = bcontent.toString();
-    pc.debug("proxyInternalBuffer " + req);
-    RoutingContext ctx = pc.getCtx();
-
     for (HttpClientRequest r : clientRequestList) {
-      r.end(bcontent);
+      bcontent.end(r);
     }
+    bcontent.toBuffer(bres -> {
+      if (bres.failed()) {
+        pc.responseError(ErrorType.INTERNAL, bres.cause());
+        return;
+      }
+      proxyInternalString(it, pc, bres.result().toString(), mi);
+    });
+  }
+
+  private void proxyInternalString(Iterator<ModuleInstance> it, ProxyContext pc, String req,
+                                   ModuleInstance mi) {
+    pc.debug("proxyInternalBuffer " + req);
+    RoutingContext ctx = pc.getCtx();
     internalModule.internalService(req, pc, res -> {
       if (res.failed()) {
         pc.responseError(res.getType(), res.cause());
@@ -886,7 +1525,7 @@ public class ProxyService {
       pc.setHandlerRes(statusCode);
       makeTraceHeader(mi, statusCode, pc);
       if (it.hasNext()) { // carry on with the pipeline
-        proxyR(it, pc, null, respBuf, new LinkedList<>());
+        proxyR(it, pc, null, ProxyBody.of(respBuf), new LinkedList<>());
       } else { // produce a result
         pc.closeTimer();
         ctx.response().end(respBuf);
@@ -895,7 +1534,7 @@ public class ProxyService {
   }
 
   private void proxyR(Iterator<ModuleInstance> it,
-                      ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                      ProxyContext pc, ReadStream<Buffer> stream, ProxyBody bcontent,
                       List<HttpClientRequest> clientRequestList) {
 
     RoutingContext ctx = pc.getCtx();
@@ -909,9 +1548,7 @@ public class ProxyService {
       if (tenantId == null || tenantId.isEmpty()) {
         tenantId = "???"; // Should not happen, we have validated earlier
       }
-      String metricKey = "proxy." + tenantId
-          + ".module." + mi.getModuleDescriptor().getId();
-      pc.startTimer(metricKey);
+      pc.startTimer(proxyMetrics.moduleTimer(tenantId, mi.getModuleDescriptor().getId()));
 
       // Pass the right token
       ctx.request().headers().remove(XOkapiHeaders.TOKEN);
@@ -936,6 +1573,18 @@ public class ProxyService {
       if (pathPattern != null) {
         ctx.request().headers().set(XOkapiHeaders.MATCH_PATH_PATTERN, pathPattern);
       }
+      if (proxyType != ProxyType.REDIRECT && proxyType != ProxyType.INTERNAL
+          && pc.remainingMs() <= 0) {
+        stream.resume();
+        pc.responseError(504, messages.getMessage("10111", mi.getModuleDescriptor().getId()));
+        return;
+      }
+      if (hasBreaker(proxyType)
+          && !circuitBreakers().allow(mi.getModuleDescriptor().getId())) {
+        stream.resume();
+        pc.responseError(503, messages.getMessage("10117", mi.getModuleDescriptor().getId()));
+        return;
+      }
       switch (proxyType) {
         case REQUEST_ONLY:
           proxyRequestOnly(it, pc, stream, bcontent, clientRequestList, mi);
@@ -1015,9 +1664,263 @@ public class ProxyService {
     }
   }
 
-  private static DeploymentDescriptor pickInstance(List<DeploymentDescriptor> instances) {
-    int sz = instances.size();
-    return sz > 0 ? instances.get(random.nextInt(sz)) : null;
+  /**
+   * Pick instance of module with the load balancing strategy configured for
+   * the module, or the global one. Ejected instances are skipped, unless all
+   * instances are ejected.
+   * @param srvcId module ID
+   * @param instances live instances of module
+   * @return instance; null if none
+   */
+  private DeploymentDescriptor pickInstance(String srvcId, List<DeploymentDescriptor> instances) {
+    return loadBalancers.computeIfAbsent(srvcId, id -> {
+      String strategy = loadBalancingModules.getString(id);
+      if (strategy == null && !loadBalancingModules.isEmpty()) {
+        strategy = loadBalancingModules.getString(new ModuleId(id).getProduct());
+      }
+      return LoadBalancers.create(strategy != null ? strategy : loadBalancing, instanceStats);
+    }).pick(outlierDetector.available(discoveryManager.filterHealthy(instances)));
+  }
+
+  /**
+   * Set the deadline of a request: the X-Okapi-Deadline given, or the
+   * configured proxyDeadline, whichever is earlier. The deadline is passed
+   * on to modules in X-Okapi-Deadline.
+   */
+  private void setDeadline(ProxyContext pc) {
+    MultiMap headers = pc.getCtx().request().headers();
+    long deadline = 0;
+    String s = headers.get(XOkapiHeaders.DEADLINE);
+    if (s != null) {
+      try {
+        deadline = Long.parseLong(s.trim());
+      } catch (NumberFormatException e) {
+        pc.debug("Ignoring bad " + XOkapiHeaders.DEADLINE + ": " + s);
+      }
+    }
+    if (proxyDeadline > 0) {
+      long d = System.currentTimeMillis() + proxyDeadline;
+      if (deadline <= 0 || d < deadline) {
+        deadline = d;
+      }
+    }
+    if (deadline > 0) {
+      pc.setDeadline(deadline);
+      headers.set(XOkapiHeaders.DEADLINE, Long.toString(deadline));
+    } else {
+      headers.remove(XOkapiHeaders.DEADLINE);
+    }
+  }
+
+  /**
+   * Get timeout for a call to a module: timeout of routing entry, module
+   * (proxyTimeoutModules) or global (proxyTimeout), whichever is found first,
+   * limited by the time left until the deadline of the request.
+   * @return timeout in milliseconds; 0 for none
+   */
+  private long getTimeout(ProxyContext pc, ModuleInstance mi) {
+    long timeout = proxyTimeout;
+    Integer t = mi.getRoutingEntry().getTimeout();
+    if (t != null) {
+      timeout = t;
+    } else if (!proxyTimeoutModules.isEmpty()) {
+      ModuleDescriptor md = mi.getModuleDescriptor();
+      Long l = proxyTimeoutModules.getLong(md.getId());
+      if (l == null) {
+        l = proxyTimeoutModules.getLong(md.getProduct());
+      }
+      if (l != null) {
+        timeout = l;
+      }
+    }
+    long remaining = pc.remainingMs();
+    if (remaining != Long.MAX_VALUE && (timeout <= 0 || remaining < timeout)) {
+      timeout = Math.max(remaining, 1L);
+    }
+    return timeout;
+  }
+
+  private void setTimeout(HttpClientRequest clientRequest, ProxyContext pc, ModuleInstance mi) {
+    long timeout = getTimeout(pc, mi);
+    if (timeout > 0) {
+      clientRequest.setTimeout(timeout);
+    }
+  }
+
+  private static long getContentLength(MultiMap headers) {
+    String s = headers.get("Content-Length");
+    if (s != null) {
+      try {
+        return Long.parseLong(s.trim());
+      } catch (NumberFormatException e) {
+        logger.debug("Bad Content-Length: {}", s);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Admit a request within the adaptive limit of requests in the proxy.
+   * Responds with 503 if the request is not admitted.
+   * @param pc proxy context
+   * @return true if admitted
+   */
+  private boolean admit(ProxyContext pc) {
+    if (!admissionLimiter.isEnabled()) {
+      return true;
+    }
+    AdmissionLimiter.Permit permit = admissionLimiter.acquire(
+        AdmissionLimiter.isAdmin(pc.getCtx().request().path()));
+    if (permit == null) {
+      pc.getCtx().response().putHeader("Retry-After", "1");
+      pc.responseError(503, messages.getMessage("10116"));
+      return false;
+    }
+    // only sample responses without error; a failing module is no overload
+    pc.addDoneHandler(ended -> permit.release(ended
+        && pc.getCtx().response().getStatusCode() < 400));
+    return true;
+  }
+
+  /**
+   * Admit a request within the limits of a tenant or of a tenant and module.
+   * Granted permits are released when the response is done. Responds with
+   * 429 and Retry-After if the request is not admitted.
+   * @param pc proxy context
+   * @param tenantId tenant
+   * @param product module product; null for the tenant limits
+   * @param limits limits; null for none
+   * @return true if admitted
+   */
+  private boolean acquireLimit(ProxyContext pc, String tenantId, String product,
+                               TenantLimits limits) {
+    if (limits == null) {
+      return true;
+    }
+    TenantLimiter.Permit permit = tenantLimiter.acquire(
+        TenantLimiter.key(tenantId, product), limits);
+    if (!permit.isGranted()) {
+      pc.getCtx().response().putHeader("Retry-After", Long.toString(permit.getRetryAfter()));
+      pc.responseError(429, product == null
+          ? messages.getMessage("10114", tenantId)
+          : messages.getMessage("10115", tenantId, product));
+      return false;
+    }
+    pc.addDoneHandler(ended -> permit.release());
+    return true;
+  }
+
+  /**
+   * Admit a request within the per module limits of the tenant, for each
+   * module of the pipeline. Limits are looked up by module ID, then product.
+   * @param pc proxy context
+   * @param tenant tenant
+   * @param l pipeline
+   * @return true if admitted
+   */
+  private boolean acquireModuleLimits(ProxyContext pc, Tenant tenant,
+                                      List<ModuleInstance> l) {
+    Map<String, TenantLimits> moduleLimits = tenant.getDescriptor().getModuleLimits();
+    if (moduleLimits == null || moduleLimits.isEmpty()) {
+      return true;
+    }
+    List<String> products = new ArrayList<>();
+    for (ModuleInstance mi : l) {
+      ModuleDescriptor md = mi.getModuleDescriptor();
+      String product = md.getProduct();
+      if (products.contains(product)) {
+        continue;
+      }
+      products.add(product);
+      TenantLimits limits = moduleLimits.get(md.getId());
+      if (limits == null) {
+        limits = moduleLimits.get(product);
+      }
+      if (!acquireLimit(pc, tenant.getId(), product, limits)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get maximum size of request body: the lowest of the global
+   * (proxyMaxBodySize), tenant and routing entry limits.
+   * @param tenant tenant of request
+   * @param l modules of request
+   * @return size in bytes; 0 for no limit
+   */
+  private long getMaxBodySize(Tenant tenant, List<ModuleInstance> l) {
+    long max = proxyMaxBodySize;
+    Long t = tenant.getDescriptor().getMaxBodySize();
+    if (t != null && t > 0 && (max <= 0 || t < max)) {
+      max = t;
+    }
+    for (ModuleInstance mi : l) {
+      Long r = mi.getRoutingEntry().getMaxBodySize();
+      if (r != null && r > 0 && (max <= 0 || r < max)) {
+        max = r;
+      }
+    }
+    return max;
+  }
+
+  private HttpClientPools.Pool clientPool(ModuleInstance mi) {
+    return clientPools.get(mi.getModuleDescriptor().getId());
+  }
+
+  /**
+   * Record the outcome of a request to a module instance.
+   * @param call request statistics handle
+   * @param mi module instance
+   * @param res response (or failure)
+   */
+  private void instanceDone(InstanceStats.Call call, ModuleInstance mi,
+                            AsyncResult<HttpClientResponse> res) {
+    instanceDone(call, mi, mi.getUrl(), res);
+  }
+
+  /**
+   * Record the outcome of a request to a module instance.
+   * @param call request statistics handle
+   * @param mi module instance
+   * @param url URL of the instance
+   * @param res response (or failure)
+   */
+  private void instanceDone(InstanceStats.Call call, ModuleInstance mi, String url,
+                            AsyncResult<HttpClientResponse> res) {
+    boolean failure = res.failed() || isUnavailable(res.result().statusCode());
+    call.end(!failure);
+    if (failure) {
+      outlierDetector.failure(url);
+    } else {
+      outlierDetector.success(url);
+    }
+    if (hasBreaker(mi.getRoutingEntry().getProxyType())) {
+      circuitBreakers().record(mi.getModuleDescriptor().getId(), failure,
+          call.elapsedMillis());
+    }
+  }
+
+  private CircuitBreakers circuitBreakers() {
+    return discoveryManager.getCircuitBreakers();
+  }
+
+  /**
+   * Whether calls of a proxy type go through the circuit breaker of the
+   * module. Request-log filters do not affect the response, and redirect
+   * and internal calls do not leave Okapi.
+   */
+  private static boolean hasBreaker(ProxyType proxyType) {
+    return proxyType != ProxyType.REDIRECT && proxyType != ProxyType.INTERNAL
+        && proxyType != ProxyType.REQUEST_LOG;
+  }
+
+  /**
+   * Whether status code means that the instance could not serve the request.
+   */
+  private static boolean isUnavailable(int statusCode) {
+    return statusCode == 502 || statusCode == 503 || statusCode == 504;
   }
 
   /**
@@ -1137,26 +2040,39 @@ public class ProxyService {
     discoveryManager.getNonEmpty(inst.getModuleDescriptor().getId(), gres -> {
       DeploymentDescriptor instance = null;
       if (gres.succeeded()) {
-        instance = pickInstance(gres.result());
+        instance = pickInstance(inst.getModuleDescriptor().getId(), gres.result());
       }
       if (instance == null) {
         fut.handle(Future.failedFuture(messages.getMessage("11100",
             inst.getModuleDescriptor().getId(), inst.getPath())));
         return;
       }
+      String srvcId = inst.getModuleDescriptor().getId();
+      if (!circuitBreakers().allow(srvcId)) {
+        fut.handle(Future.failedFuture(messages.getMessage("10117", srvcId)));
+        return;
+      }
       String baseurl = instance.getUrl();
       Map<String, String> headers = sysReqHeaders(headersIn, tenantId, authToken, inst, modPerms);
       headers.put(XOkapiHeaders.URL_TO, baseurl);
       logger.info("syscall begin {} {}{}", inst.getMethod(), baseurl, inst.getPath());
-      OkapiClient cli = new OkapiClient(this.httpClient, baseurl, vertx, headers);
+      OkapiClient cli = new OkapiClient(
+          clientPool(inst).getClient(), baseurl, vertx, headers);
       String reqId = inst.getPath().replaceFirst("^[/_]*([^/]+).*", "$1");
       cli.newReqId(reqId); // "tenant" or "tenantpermissions"
       cli.enableInfoLog();
       if (inst.isWithRetry()) {
-        cli.setClosedRetry(40000);
+        // retrying for longer than a breaker stays open would hide the failures from it
+        CircuitBreakers breakers = circuitBreakers();
+        cli.setClosedRetry(breakers.isEnabled()
+            ? (int) Math.min(40000, breakers.getOpenMs()) : 40000);
       }
       cli.request(inst.getMethod(), inst.getPath(), request, cres -> {
         logger.info("syscall return {} {}{}", inst.getMethod(), baseurl, inst.getPath());
+        // system calls, like tenant init, may be slow by nature: only failures count
+        int status = cli.getStatusCode();
+        circuitBreakers().record(srvcId, cres.failed() && (status == 0 || isUnavailable(status)),
+            0);
         if (cres.failed()) {
           String msg = messages.getMessage("11101", inst.getMethod(),
               inst.getModuleDescriptor().getId(), inst.getPath(), cres.cause().getMessage());
@@ -1179,7 +2095,7 @@ public class ProxyService {
       ModuleInstance inst, String modPerms) {
     Map<String, String> headersOut = new HashMap<>();
     for (String hdr : headersIn.names()) {
-      if (hdr.matches("^X-.*$")) {
+      if (hdr.startsWith("X-")) {
         headersOut.put(hdr, headersIn.get(hdr));
       }
     }
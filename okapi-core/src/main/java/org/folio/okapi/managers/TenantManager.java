@@ -18,6 +18,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.InterfaceDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
@@ -93,6 +94,7 @@ public class TenantManager {
   public void init(Vertx vertx, Handler<ExtendedAsyncResult<Void>> fut) {
     this.vertx = vertx;
 
+    tenants.enableNearCache();
     tenants.init(vertx, mapName, ires -> {
       if (ires.failed()) {
         fut.handle(new Failure<>(ires.getType(), ires.cause()));
@@ -218,6 +220,9 @@ public class TenantManager {
         logger.warn("TenantManager: Deleting {} failed: {}", id, dres);
         fut.handle(new Failure<>(ErrorType.INTERNAL, dres.cause()));
       } else {
+        if (proxyService != null) {
+          proxyService.invalidatePipelines(id);
+        }
         tenants.remove(id, fut);
       }
     });
@@ -240,7 +245,13 @@ public class TenantManager {
         fut.handle(new Failure<>(gres.getType(), gres.cause()));
         return;
       }
-      updateModuleCommit(gres.result(), moduleFrom, moduleTo, fut);
+      updateModuleCommit(gres.result(), moduleFrom, moduleTo, res -> {
+        if (res.failed()) {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+        } else {
+          fut.handle(new Success<>());
+        }
+      });
     });
   }
 
@@ -249,23 +260,35 @@ public class TenantManager {
    * @param t tenant
    * @param moduleFrom null if no original module
    * @param moduleTo null if removing a module for tenant
-   * @param fut async result
+   * @param fut async result with the updated tenant
    */
   public void updateModuleCommit(Tenant t,
                                  String moduleFrom, String moduleTo,
-                                 Handler<ExtendedAsyncResult<Void>> fut) {
+                                 Handler<ExtendedAsyncResult<Tenant>> fut) {
     String id = t.getId();
+    // t may be shared by the near cache of the tenants map, so it is not
+    // modified; the caller gets the updated copy
+    Tenant t1 = new Tenant(t.getDescriptor(), new TreeMap<>(t.getEnabled()));
     if (moduleFrom != null) {
-      t.disableModule(moduleFrom);
+      t1.disableModule(moduleFrom);
     }
     if (moduleTo != null) {
-      t.enableModule(moduleTo);
+      t1.enableModule(moduleTo);
     }
-    tenantStore.updateModules(id, t.getEnabled(), ures -> {
+    tenantStore.updateModules(id, t1.getEnabled(), ures -> {
       if (ures.failed()) {
         fut.handle(new Failure<>(ures.getType(), ures.cause()));
       } else {
-        tenants.put(id, t, fut);
+        tenants.put(id, t1, pres -> {
+          if (proxyService != null) {
+            proxyService.invalidatePipelines(id);
+          }
+          if (pres.failed()) {
+            fut.handle(new Failure<>(pres.getType(), pres.cause()));
+          } else {
+            fut.handle(new Success<>(t1));
+          }
+        });
       }
     });
   }
@@ -526,11 +549,11 @@ public class TenantManager {
    * @param mdFrom module from
    * @param mdTo module to
    * @param pc ProxyContext
-   * @param fut future
+   * @param fut future with the updated tenant
    */
   private void ead5commit(Tenant tenant,
                           ModuleDescriptor mdFrom, ModuleDescriptor mdTo, ProxyContext pc,
-                          Handler<ExtendedAsyncResult<Void>> fut) {
+                          Handler<ExtendedAsyncResult<Tenant>> fut) {
 
     String moduleFrom = mdFrom != null ? mdFrom.getId() : null;
     String moduleTo = mdTo != null ? mdTo.getId() : null;
@@ -546,7 +569,7 @@ public class TenantManager {
         eb.publish(EVENT_NAME, tenant.getId());
       }
       pc.debug("ead5commit done");
-      fut.handle(new Success<>());
+      fut.handle(new Success<>(ures.result()));
     });
   }
 
@@ -1116,7 +1139,7 @@ public class TenantManager {
           fut.handle(new Failure<>(res1.getType(), res1.cause()));
           return;
         }
-        installTenantPrepare(tenant, pc, options, modsAvailable, tml, it, fut);
+        installTenantPrepare(res1.result(), pc, options, modsAvailable, tml, it, fut);
       });
     });
   }
@@ -0,0 +1,142 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit of requests in the proxy (AIMD). The limit starts at the
+ * maximum. When a request completes slower than the latency threshold, the
+ * limit is decreased by 10%, at most once per threshold period. When a
+ * request completes in time while at least half the limit is in use, the limit
+ * is increased by one. Requests beyond the limit are rejected early, so that
+ * Okapi stays responsive under overload.
+ *
+ * <p>Only requests that succeeded are sampled, so that failures, like
+ * timeouts of a module that is down, do not lower the limit. The limit is
+ * global: a module that is slow while it succeeds lowers it for all
+ * requests, as slow responses are what the limit is for.
+ *
+ * <p>Admin requests may exceed the limit by a reserved number of requests,
+ * and do not affect the limit, as some of them (tenant install) are slow by
+ * nature.
+ */
+public class AdmissionLimiter {
+
+  private static final double BACKOFF = 0.9;
+
+  /**
+   * Admitted request. Must be released when done.
+   */
+  public class Permit {
+    private final long start;
+    private final boolean admin;
+    private boolean released;
+
+    Permit(long start, boolean admin) {
+      this.start = start;
+      this.admin = admin;
+    }
+
+    /**
+     * Release permit. May be called more than once.
+     * @param sample true if the request succeeded, and its latency is used;
+     *     false if it failed
+     */
+    public void release(boolean sample) {
+      synchronized (AdmissionLimiter.this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        inFlight--;
+        if (sample && !admin) {
+          sample(clock.getAsLong() - start);
+        }
+      }
+    }
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final int reserved;
+  private final long latencyThreshold;
+  private double limit;
+  private int inFlight;
+  private long lastBackoff;
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private LongSupplier clock = System::currentTimeMillis;
+
+  /**
+   * Create limiter and register its metrics.
+   * @param minLimit lowest limit
+   * @param maxLimit highest limit; 0 disables the limiter
+   * @param reserved requests that admin requests may exceed the limit by
+   * @param latencyThreshold latency in milliseconds that decreases the limit
+   */
+  public AdmissionLimiter(int minLimit, int maxLimit, int reserved, long latencyThreshold) {
+    this.maxLimit = maxLimit;
+    this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+    this.reserved = Math.max(0, reserved);
+    this.latencyThreshold = latencyThreshold;
+    this.limit = maxLimit;
+    DropwizardHelper.registerGauge("proxy.admission.limit", this::getLimit);
+    DropwizardHelper.registerGauge("proxy.admission.inFlight", this::getInFlight);
+    DropwizardHelper.registerGauge("proxy.admission.accepted", accepted::get);
+    DropwizardHelper.registerGauge("proxy.admission.rejected", rejected::get);
+  }
+
+  void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  public boolean isEnabled() {
+    return maxLimit > 0;
+  }
+
+  /**
+   * Check whether a request path is for an admin request. Calls to modules
+   * through /_/invoke are not.
+   * @param path request path
+   * @return true if admin request
+   */
+  public static boolean isAdmin(String path) {
+    return path != null && path.startsWith("/_/") && !path.startsWith("/_/invoke/");
+  }
+
+  /**
+   * Admit a request, if within the limit.
+   * @param admin whether the request is an admin request
+   * @return permit; null if rejected
+   */
+  public synchronized Permit acquire(boolean admin) {
+    int max = (int) limit + (admin ? reserved : 0);
+    if (inFlight >= max) {
+      rejected.incrementAndGet();
+      return null;
+    }
+    inFlight++;
+    accepted.incrementAndGet();
+    return new Permit(clock.getAsLong(), admin);
+  }
+
+  private void sample(long latency) {
+    if (latency > latencyThreshold) {
+      long now = clock.getAsLong();
+      if (now - lastBackoff >= latencyThreshold) {
+        lastBackoff = now;
+        limit = Math.max(minLimit, limit * BACKOFF);
+      }
+    } else if (inFlight * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+}
@@ -0,0 +1,172 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import org.folio.okapi.common.LruCache;
+import org.folio.okapi.common.XOkapiHeaders;
+
+/**
+ * Cache of successful auth filter responses. A response is cached for a
+ * tenant, token and the permission headers that Okapi sends to the auth
+ * filter, which is what the auth filter decides on. Only 2xx responses without
+ * a body are cached, for the configured time to live or less if the auth
+ * filter returns Cache-Control max-age. Cache-Control no-store and no-cache
+ * prevent caching.
+ */
+public class AuthCache {
+
+  /**
+   * Cached auth filter response.
+   */
+  public static class Entry {
+    private final int status;
+    private final MultiMap headers;
+    private final long expires;
+
+    Entry(int status, MultiMap headers, long expires) {
+      this.status = status;
+      this.headers = headers;
+      this.expires = expires;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Response headers. Must not be modified.
+     * @return headers
+     */
+    public MultiMap getHeaders() {
+      return headers;
+    }
+  }
+
+  private final LruCache<String, Entry> cache;
+
+  /**
+   * Create cache and register its metrics.
+   * @param maxSize maximum number of responses; 0 disables the cache
+   * @param ttl maximum time in milliseconds that a response is cached
+   */
+  public AuthCache(int maxSize, long ttl) {
+    cache = new LruCache<>(maxSize, ttl);
+    DropwizardHelper.registerGauge("proxy.authCache.size", cache::size);
+    DropwizardHelper.registerGauge("proxy.authCache.hits", cache::getHits);
+    DropwizardHelper.registerGauge("proxy.authCache.misses", cache::getMisses);
+    DropwizardHelper.registerGauge("proxy.authCache.evictions", cache::getEvictions);
+  }
+
+  public boolean isEnabled() {
+    return cache.getMaxSize() > 0;
+  }
+
+  /**
+   * Make cache key for an auth filter request.
+   * @param tenantId tenant
+   * @param headers headers of the request to the auth filter
+   * @return key; null if the request must not be cached
+   */
+  public static String key(String tenantId, MultiMap headers) {
+    String token = headers.get(XOkapiHeaders.TOKEN);
+    if (tenantId == null || token == null || headers.contains(XOkapiHeaders.ADDITIONAL_TOKEN)) {
+      return null;
+    }
+    return tenantId + " " + digest(token,
+        headers.get(XOkapiHeaders.PERMISSIONS_REQUIRED),
+        headers.get(XOkapiHeaders.PERMISSIONS_DESIRED),
+        headers.get(XOkapiHeaders.MODULE_PERMISSIONS),
+        headers.get(XOkapiHeaders.EXTRA_PERMISSIONS));
+  }
+
+  /**
+   * SHA-256 digest of values.
+   * @param values values; null values are allowed
+   * @return base64 encoded digest
+   */
+  static String digest(String... values) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    for (String value : values) {
+      if (value != null) {
+        md.update(value.getBytes(StandardCharsets.UTF_8));
+      }
+      md.update((byte) 0);
+    }
+    return Base64.getEncoder().encodeToString(md.digest());
+  }
+
+  /**
+   * Get max-age of Cache-Control header.
+   * @param cacheControl header value; null if absent
+   * @param ttl time to live if no max-age is given
+   * @return time to live in milliseconds; 0 if the response must not be cached
+   */
+  static long maxAge(String cacheControl, long ttl) {
+    CacheControl cc = CacheControl.parse(cacheControl);
+    if (cc.isNoStore() || cc.isNoCache()) {
+      return 0;
+    }
+    if (cc.getMaxAge() < 0) {
+      return ttl;
+    }
+    return Math.min(ttl, cc.getMaxAge() * 1000);
+  }
+
+  /**
+   * Get cached response.
+   * @param key key from {@link #key(String, MultiMap)}
+   * @return response; null if not cached
+   */
+  public Entry get(String key) {
+    Entry e = cache.get(key);
+    if (e != null && System.currentTimeMillis() >= e.expires) {
+      cache.remove(key);
+      return null;
+    }
+    return e;
+  }
+
+  /**
+   * Cache a response, if it may be cached.
+   * @param key key from {@link #key(String, MultiMap)}
+   * @param status response status
+   * @param headers response headers
+   * @param bodyLength response body length
+   */
+  public void put(String key, int status, MultiMap headers, int bodyLength) {
+    if (status < 200 || status > 299 || bodyLength > 0) {
+      return;
+    }
+    long age = maxAge(headers.get("Cache-Control"), cache.getTtl());
+    if (age <= 0) {
+      return;
+    }
+    MultiMap copy = MultiMap.caseInsensitiveMultiMap().setAll(headers);
+    cache.put(key, new Entry(status, copy, System.currentTimeMillis() + age));
+  }
+
+  /**
+   * Forget responses for a tenant.
+   * @param tenantId tenant
+   */
+  public void removeTenant(String tenantId) {
+    String prefix = tenantId + " ";
+    cache.removeIf(k -> k.startsWith(prefix));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+}
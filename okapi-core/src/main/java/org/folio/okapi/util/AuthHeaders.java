@@ -0,0 +1,120 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.Json;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.bean.RoutingEntry.ProxyType;
+
+/**
+ * Values of the permission headers that Okapi passes to the auth filter:
+ * X-Okapi-Permissions-Required, X-Okapi-Permissions-Desired,
+ * X-Okapi-Module-Permissions and X-Okapi-Extra-Permissions. They only depend
+ * on the routing entries of the pipeline, so they are computed once for each
+ * cached pipeline rather than for each request.
+ */
+public class AuthHeaders {
+
+  private final String permissionsRequired;
+  private final String permissionsDesired;
+  private final String modulePermissions;
+  private final String extraPermissions;
+
+  private AuthHeaders(String permissionsRequired, String permissionsDesired,
+                      String modulePermissions, String extraPermissions) {
+    this.permissionsRequired = permissionsRequired;
+    this.permissionsDesired = permissionsDesired;
+    this.modulePermissions = modulePermissions;
+    this.extraPermissions = extraPermissions;
+  }
+
+  /**
+   * Compute headers for module instances.
+   * @param modlist pipeline
+   * @return headers
+   */
+  public static AuthHeaders of(List<ModuleInstance> modlist) {
+    return build(modlist, mod -> mod.getModuleDescriptor().getId(),
+        ModuleInstance::getRoutingEntry);
+  }
+
+  /**
+   * Compute headers for pipeline templates.
+   * @param steps pipeline
+   * @return headers
+   */
+  public static AuthHeaders ofSteps(List<PipelineCache.Step> steps) {
+    return build(steps, step -> step.getModuleDescriptor().getId(),
+        PipelineCache.Step::getRoutingEntry);
+  }
+
+  private static <T> AuthHeaders build(List<T> pipeline, Function<T, String> moduleId,
+                                       Function<T, RoutingEntry> routingEntry) {
+    Set<String> req = new HashSet<>();
+    Set<String> want = new HashSet<>();
+    Set<String> extraperms = new HashSet<>();
+    Map<String, String[]> modperms = new HashMap<>(pipeline.size());
+    for (T t : pipeline) {
+      RoutingEntry re = routingEntry.apply(t);
+      String[] reqp = re.getPermissionsRequired();
+      if (reqp != null) {
+        req.addAll(Arrays.asList(reqp));
+      }
+      String[] wap = re.getPermissionsDesired();
+      if (wap != null) {
+        want.addAll(Arrays.asList(wap));
+      }
+      String[] modp = re.getModulePermissions();
+      if (modp != null) {
+        if (re.getProxyType() == ProxyType.REDIRECT) {
+          extraperms.addAll(Arrays.asList(modp));
+        } else {
+          modperms.put(moduleId.apply(t), modp);
+        }
+      }
+    }
+    return new AuthHeaders(
+        req.isEmpty() ? null : String.join(",", req),
+        want.isEmpty() ? null : String.join(",", want),
+        Json.encode(modperms),
+        extraperms.isEmpty() ? null : Json.encode(extraperms));
+  }
+
+  /**
+   * X-Okapi-Permissions-Required value.
+   * @return comma separated permissions; null if none
+   */
+  public String getPermissionsRequired() {
+    return permissionsRequired;
+  }
+
+  /**
+   * X-Okapi-Permissions-Desired value.
+   * @return comma separated permissions; null if none
+   */
+  public String getPermissionsDesired() {
+    return permissionsDesired;
+  }
+
+  /**
+   * X-Okapi-Module-Permissions value. Always present, even if empty.
+   * @return JSON object with permissions per module ID
+   */
+  public String getModulePermissions() {
+    return modulePermissions;
+  }
+
+  /**
+   * X-Okapi-Extra-Permissions value.
+   * @return JSON array of permissions; null if none
+   */
+  public String getExtraPermissions() {
+    return extraPermissions;
+  }
+}
@@ -0,0 +1,58 @@
+package org.folio.okapi.util;
+
+/**
+ * The directives of a Cache-Control response header that the proxy caches
+ * look at.
+ */
+public class CacheControl {
+
+  private boolean noStore;
+  private boolean noCache;
+  private long maxAge = -1;
+
+  private CacheControl() {
+  }
+
+  /**
+   * Parse header value. A max-age that is not a number is treated as 0.
+   * @param value Cache-Control value; null if absent
+   * @return directives
+   */
+  public static CacheControl parse(String value) {
+    CacheControl cc = new CacheControl();
+    if (value == null) {
+      return cc;
+    }
+    for (String directive : value.split(",")) {
+      String d = directive.trim().toLowerCase();
+      if (d.equals("no-store")) {
+        cc.noStore = true;
+      } else if (d.equals("no-cache")) {
+        cc.noCache = true;
+      } else if (d.startsWith("max-age=")) {
+        try {
+          cc.maxAge = Math.min(Integer.MAX_VALUE, Math.max(0, Long.parseLong(d.substring(8))));
+        } catch (NumberFormatException e) {
+          cc.maxAge = 0;
+        }
+      }
+    }
+    return cc;
+  }
+
+  public boolean isNoStore() {
+    return noStore;
+  }
+
+  public boolean isNoCache() {
+    return noCache;
+  }
+
+  /**
+   * Get max-age.
+   * @return seconds; -1 if not given
+   */
+  public long getMaxAge() {
+    return maxAge;
+  }
+}
@@ -0,0 +1,302 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.CircuitBreakerDescriptor;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Circuit breakers per module (service ID), for calls from this node.
+ *
+ * <ul>
+ * <li>CLOSED: calls are made. The outcomes of the most recent calls (the
+ * window) are kept; when the window is full and the share of failed or slow
+ * calls reaches its threshold, the breaker opens.</li>
+ * <li>OPEN: calls are rejected without contacting the module, until the open
+ * time has passed.</li>
+ * <li>HALF_OPEN: a limited number of trial calls are made. If they all
+ * succeed in time, the breaker closes; the first failed or slow trial opens it
+ * again. Trials that do not complete within the open time are given up, and
+ * new trials are made.</li>
+ * </ul>
+ *
+ * <p>A failed call is one without a response, or with a response that says
+ * the module is unavailable (502, 503, 504).
+ */
+public class CircuitBreakers {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private static class Breaker {
+    State state = State.CLOSED;
+    final boolean[] failed;
+    final boolean[] slow;
+    int count;
+    int next;
+    long openUntil;
+    long halfOpenSince;
+    int trials;
+    int successes;
+
+    Breaker(int window) {
+      failed = new boolean[window];
+      slow = new boolean[window];
+    }
+
+    void clear() {
+      count = 0;
+      next = 0;
+    }
+
+    int failedCount() {
+      return count(failed);
+    }
+
+    int slowCount() {
+      return count(slow);
+    }
+
+    private int count(boolean[] a) {
+      int n = 0;
+      for (int i = 0; i < count; i++) {
+        if (a[i]) {
+          n++;
+        }
+      }
+      return n;
+    }
+  }
+
+  private final int window;
+  private final int failureRate;
+  private final long slowCallMs;
+  private final int slowCallRate;
+  private final long openMs;
+  private final int halfOpenCalls;
+  private final LongSupplier clock;
+  private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+  /**
+   * Create circuit breakers.
+   * @param window number of recent calls that are considered; 0 disables
+   *     the breakers
+   * @param failureRate percentage of failed calls that opens a breaker
+   * @param slowCallMs duration in milliseconds of a slow call; 0 for no
+   *     slow call check
+   * @param slowCallRate percentage of slow calls that opens a breaker
+   * @param openMs time in milliseconds that a breaker stays open
+   * @param halfOpenCalls number of trial calls in half-open state
+   */
+  public CircuitBreakers(int window, int failureRate, long slowCallMs, int slowCallRate,
+                         long openMs, int halfOpenCalls) {
+    this(window, failureRate, slowCallMs, slowCallRate, openMs, halfOpenCalls,
+        System::currentTimeMillis);
+  }
+
+  CircuitBreakers(int window, int failureRate, long slowCallMs, int slowCallRate,
+                  long openMs, int halfOpenCalls, LongSupplier clock) {
+    this.window = window;
+    this.failureRate = failureRate;
+    this.slowCallMs = slowCallMs;
+    this.slowCallRate = slowCallRate;
+    this.openMs = openMs;
+    this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    this.clock = clock;
+    DropwizardHelper.registerGauge("proxy.breaker.open", this::openCount);
+  }
+
+  public boolean isEnabled() {
+    return window > 0;
+  }
+
+  public long getOpenMs() {
+    return openMs;
+  }
+
+  /**
+   * Check whether a call to a module may be made. A call that is allowed
+   * should be followed by {@link #record}.
+   * @param srvcId module ID
+   * @return true if allowed; false if the breaker is open
+   */
+  public boolean allow(String srvcId) {
+    if (!isEnabled() || srvcId == null) {
+      return true;
+    }
+    Breaker b = breakers.get(srvcId);
+    if (b == null) {
+      return true;
+    }
+    synchronized (b) {
+      long now = clock.getAsLong();
+      if (b.state == State.OPEN && now >= b.openUntil) {
+        halfOpen(b, now);
+      }
+      if (b.state == State.HALF_OPEN) {
+        if (b.trials >= halfOpenCalls && now - b.halfOpenSince >= openMs) {
+          halfOpen(b, now);
+        }
+        if (b.trials < halfOpenCalls) {
+          b.trials++;
+          return true;
+        }
+      }
+      if (b.state == State.CLOSED) {
+        return true;
+      }
+    }
+    DropwizardHelper.markEvent("proxy.breaker.rejected");
+    return false;
+  }
+
+  /**
+   * Check whether a breaker is closed, without using a trial call. Used for
+   * further attempts (retries and hedges) of a call that {@link #allow} has
+   * already let through: these are only made when the breaker is closed.
+   * @param srvcId module ID
+   * @return true if closed; false if open or half-open
+   */
+  public boolean isClosed(String srvcId) {
+    if (!isEnabled() || srvcId == null) {
+      return true;
+    }
+    Breaker b = breakers.get(srvcId);
+    if (b == null) {
+      return true;
+    }
+    synchronized (b) {
+      return b.state == State.CLOSED;
+    }
+  }
+
+  private static void halfOpen(Breaker b, long now) {
+    b.state = State.HALF_OPEN;
+    b.halfOpenSince = now;
+    b.trials = 0;
+    b.successes = 0;
+  }
+
+  /**
+   * Record outcome of a call.
+   * @param srvcId module ID
+   * @param failure true if the call failed
+   * @param durationMs duration of the call in milliseconds
+   */
+  public void record(String srvcId, boolean failure, long durationMs) {
+    if (!isEnabled() || srvcId == null) {
+      return;
+    }
+    boolean slow = slowCallMs > 0 && durationMs > slowCallMs;
+    Breaker b = breakers.get(srvcId);
+    if (b == null) {
+      if (!failure && !slow) {
+        return; // no state needed for healthy modules
+      }
+      b = breakers.computeIfAbsent(srvcId, x -> new Breaker(window));
+    }
+    synchronized (b) {
+      switch (b.state) {
+        case HALF_OPEN:
+          if (failure || slow) {
+            open(srvcId, b);
+          } else if (++b.successes >= halfOpenCalls) {
+            b.state = State.CLOSED;
+            b.clear();
+            logger.info("Closing circuit breaker for {}", srvcId);
+          }
+          break;
+        case CLOSED:
+          b.failed[b.next] = failure;
+          b.slow[b.next] = slow;
+          b.next = (b.next + 1) % window;
+          if (b.count < window) {
+            b.count++;
+          }
+          if (b.count == window
+              && (b.failedCount() * 100 >= failureRate * window
+              || slowCallMs > 0 && b.slowCount() * 100 >= slowCallRate * window)) {
+            open(srvcId, b);
+          }
+          break;
+        default: // OPEN: call started before the breaker opened
+          break;
+      }
+    }
+  }
+
+  private void open(String srvcId, Breaker b) {
+    b.state = State.OPEN;
+    b.openUntil = clock.getAsLong() + openMs;
+    b.clear();
+    logger.warn("Opening circuit breaker for {} for {} ms", srvcId, openMs);
+    DropwizardHelper.markEvent("proxy.breaker.opened");
+  }
+
+  /**
+   * Forget the state of a module, for example when it gets a new instance.
+   * @param srvcId module ID
+   */
+  public void reset(String srvcId) {
+    breakers.remove(srvcId);
+  }
+
+  private int openCount() {
+    int n = 0;
+    for (Breaker b : breakers.values()) {
+      synchronized (b) {
+        if (b.state != State.CLOSED) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Get state of the breaker of a module.
+   * @param srvcId module ID
+   * @return state; CLOSED if the module has no recent failures
+   */
+  public CircuitBreakerDescriptor get(String srvcId) {
+    CircuitBreakerDescriptor d = new CircuitBreakerDescriptor();
+    d.setSrvcId(srvcId);
+    d.setState(State.CLOSED.name());
+    Breaker b = breakers.get(srvcId);
+    if (b != null) {
+      synchronized (b) {
+        if (b.state == State.OPEN && clock.getAsLong() >= b.openUntil) {
+          d.setState(State.HALF_OPEN.name());
+        } else {
+          d.setState(b.state.name());
+        }
+        d.setCalls(b.count);
+        if (b.count > 0) {
+          d.setFailureRate(b.failedCount() * 100 / b.count);
+          d.setSlowCallRate(b.slowCount() * 100 / b.count);
+        }
+      }
+    }
+    return d;
+  }
+
+  /**
+   * Get state of the breakers of modules that have had failed or slow calls.
+   * @return states, sorted by module ID
+   */
+  public List<CircuitBreakerDescriptor> list() {
+    List<CircuitBreakerDescriptor> l = new ArrayList<>();
+    for (String srvcId : new TreeMap<>(breakers).keySet()) {
+      l.add(get(srvcId));
+    }
+    return l;
+  }
+}
@@ -1,6 +1,7 @@
 package org.folio.okapi.util;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
@@ -85,6 +86,24 @@ public class DropwizardHelper {
     return timer.time();
   }
 
+  /**
+   * Get a timer handle, which may be kept and used for many operations.
+   * @param metricKey string key
+   * @return timer for the key
+   */
+  public static Timer getTimer(String metricKey) {
+    return SharedMetricRegistries.getOrCreate("okapi").timer(metricKey);
+  }
+
+  /**
+   * Get a meter handle, which may be kept and marked for many events.
+   * @param metricKey string key
+   * @return meter for the key
+   */
+  public static Meter getMeter(String metricKey) {
+    return SharedMetricRegistries.getOrCreate("okapi").meter(metricKey);
+  }
+
   /**
    * Mark an event.
    * Tells the metrics system that an event has occurred, for example a request
@@ -0,0 +1,178 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Copies a stream to a primary destination and to the requests of
+ * request-log filters (sinks), with backpressure. The source is paused while
+ * the primary destination is full. A full sink either pauses the source too
+ * (blocking mode) or is dropped: its request is reset and the rest of the
+ * stream is not sent to it (lossy mode). Either way, the memory used for the
+ * stream is bounded by the write queue sizes.
+ *
+ * <p>FanOut does not set handlers on the sink requests. The owner reports a
+ * sink that failed with {@link #failed}, and is told of a dropped sink by the
+ * drop handler.
+ */
+public class FanOut {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  public enum Mode {
+    LOSSY, BLOCKING
+  }
+
+  private final ReadStream<Buffer> src;
+  private final WriteStream<Buffer> primary;
+  private final List<HttpClientRequest> sinks;
+  private final Mode mode;
+  private final Set<WriteStream<Buffer>> full = new HashSet<>();
+  private Handler<Buffer> dataHandler;
+  private Handler<Void> endHandler;
+  private Handler<HttpClientRequest> dropHandler;
+
+  /**
+   * Create fan-out.
+   * @param src source stream; should be paused
+   * @param primary primary destination
+   * @param sinks requests of request-log filters
+   * @param mode what to do with a full sink
+   * @param sinkQueueSize write queue size for sinks, in bytes; 0 for default
+   */
+  public FanOut(ReadStream<Buffer> src, WriteStream<Buffer> primary,
+                List<HttpClientRequest> sinks, Mode mode, int sinkQueueSize) {
+    this.src = src;
+    this.primary = primary;
+    this.sinks = new LinkedList<>(sinks);
+    this.mode = mode;
+    for (HttpClientRequest r : this.sinks) {
+      if (sinkQueueSize > 0) {
+        r.setWriteQueueMaxSize(sinkQueueSize);
+      }
+    }
+  }
+
+  /**
+   * Parse mode.
+   * @param mode "lossy" or "blocking"
+   * @return mode
+   * @throws IllegalArgumentException for unknown mode
+   */
+  public static Mode mode(String mode) {
+    return Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Set handler called for each chunk, before it is written.
+   * @param handler handler
+   * @return this
+   */
+  public FanOut dataHandler(Handler<Buffer> handler) {
+    this.dataHandler = handler;
+    return this;
+  }
+
+  /**
+   * Set handler called at end of source, before destinations are ended.
+   * @param handler handler
+   * @return this
+   */
+  public FanOut endHandler(Handler<Void> handler) {
+    this.endHandler = handler;
+    return this;
+  }
+
+  /**
+   * Set handler called when a slow sink is dropped in lossy mode, before its
+   * request is reset.
+   * @param handler handler
+   * @return this
+   */
+  public FanOut dropHandler(Handler<HttpClientRequest> handler) {
+    this.dropHandler = handler;
+    return this;
+  }
+
+  /**
+   * Start copying. Resumes the source.
+   */
+  public void start() {
+    src.handler(data -> {
+      if (dataHandler != null) {
+        dataHandler.handle(data);
+      }
+      // copy, as failed sinks are removed
+      for (HttpClientRequest r : sinks.toArray(new HttpClientRequest[0])) {
+        if (mode == Mode.LOSSY && r.writeQueueFull()) {
+          logger.warn("Dropping request to slow request-log filter {}", r.absoluteURI());
+          DropwizardHelper.markEvent("proxy.requestLog.dropped");
+          remove(r);
+          if (dropHandler != null) {
+            dropHandler.handle(r);
+          }
+          r.reset();
+          continue;
+        }
+        r.write(data);
+        if (mode == Mode.BLOCKING) {
+          waitFor(r);
+        }
+      }
+      primary.write(data);
+      waitFor(primary);
+    });
+    src.endHandler(v -> {
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+      for (HttpClientRequest r : sinks) {
+        r.end();
+      }
+      primary.end();
+    });
+    src.resume();
+  }
+
+  /**
+   * Report sink that failed. It will not drain, so it is no longer written
+   * to or waited for.
+   * @param r request of sink
+   */
+  public void failed(HttpClientRequest r) {
+    remove(r);
+  }
+
+  private void remove(HttpClientRequest r) {
+    sinks.remove(r);
+    if (full.remove(r) && full.isEmpty()) {
+      src.resume();
+    }
+  }
+
+  private void waitFor(WriteStream<Buffer> ws) {
+    if (!ws.writeQueueFull() || !full.add(ws)) {
+      return;
+    }
+    if (full.size() == 1) {
+      src.pause();
+    }
+    ws.drainHandler(x -> {
+      ws.drainHandler(null);
+      full.remove(ws);
+      if (full.isEmpty()) {
+        src.resume();
+      }
+    });
+  }
+}
@@ -0,0 +1,111 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+/**
+ * Races a call (the primary) against a later duplicate call (the hedge) to
+ * another instance. The first successful response wins, and the other call
+ * is cancelled. If a call fails while the other is still in flight, the
+ * other decides. Not thread safe; to be used on one Vert.x context.
+ *
+ * @param <T> response type
+ */
+public class HedgedCall<T> {
+
+  private final Handler<AsyncResult<T>> primaryWon;
+  private final Handler<AsyncResult<T>> hedgeWon;
+  private boolean decided;
+  private boolean primaryDone;
+  private boolean hedgeStarted;
+  private boolean hedgeDone;
+  private Runnable primaryCancel;
+  private Runnable hedgeCancel;
+
+  /**
+   * Create hedged call. One of the handlers is called once, with the
+   * response that wins.
+   * @param primaryWon handler for a response of the primary call
+   * @param hedgeWon handler for a response of the hedge call
+   */
+  public HedgedCall(Handler<AsyncResult<T>> primaryWon, Handler<AsyncResult<T>> hedgeWon) {
+    this.primaryWon = primaryWon;
+    this.hedgeWon = hedgeWon;
+  }
+
+  /**
+   * Set how to cancel the primary call.
+   * @param cancel cancels the primary call
+   */
+  public void setPrimaryCancel(Runnable cancel) {
+    this.primaryCancel = cancel;
+  }
+
+  /**
+   * Start the hedge, unless the primary call has completed. Only if this
+   * returns true is the hedge call made, and its outcome passed to
+   * {@link #hedge}.
+   * @return true if the hedge call should be made
+   */
+  public boolean startHedge() {
+    if (decided || primaryDone || hedgeStarted) {
+      return false;
+    }
+    hedgeStarted = true;
+    return true;
+  }
+
+  /**
+   * Set how to cancel the hedge call.
+   * @param cancel cancels the hedge call
+   */
+  public void setHedgeCancel(Runnable cancel) {
+    this.hedgeCancel = cancel;
+  }
+
+  /**
+   * Check whether the outcome is decided; responses that come after are
+   * from the losing call.
+   * @return true if decided
+   */
+  public boolean isDecided() {
+    return decided;
+  }
+
+  /**
+   * Outcome of the primary call.
+   * @param res response or failure
+   */
+  public void primary(AsyncResult<T> res) {
+    primaryDone = true;
+    result(res, false, hedgeStarted && !hedgeDone, hedgeCancel);
+  }
+
+  /**
+   * Outcome of the hedge call.
+   * @param res response or failure
+   */
+  public void hedge(AsyncResult<T> res) {
+    hedgeDone = true;
+    result(res, true, !primaryDone, primaryCancel);
+  }
+
+  private void result(AsyncResult<T> res, boolean fromHedge, boolean otherPending,
+                      Runnable cancelOther) {
+    if (decided) {
+      return;
+    }
+    if (res.failed() && otherPending) {
+      return; // the other call decides
+    }
+    decided = true;
+    if (otherPending && cancelOther != null) {
+      cancelOther.run();
+    }
+    if (fromHedge) {
+      hedgeWon.handle(res);
+    } else {
+      primaryWon.handle(res);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package org.folio.okapi.util;
+
+import com.codahale.metrics.Meter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.ModuleId;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * HTTP clients for calls to modules; one client, and thus one set of
+ * connection pools, per module product. A slow module can only use up the
+ * connections of its own pool.
+ *
+ * <p>Client options are given as JSON, in the format of
+ * {@link HttpClientOptions}. Options for a module are the common options
+ * merged with the options for the module product, if any.
+ */
+public class HttpClientPools {
+
+  private static final Logger logger = OkapiLogger.get();
+  private static final int DEFAULT_MAX_POOL_SIZE = 1000;
+
+  /**
+   * HTTP client for one module product.
+   */
+  public static class Pool {
+    private final String name;
+    private final HttpClient client;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Meter requests;
+
+    Pool(String name, HttpClient client) {
+      this.name = name;
+      this.client = client;
+      this.requests = DropwizardHelper.getMeter("proxy.httpClient." + name + ".requests");
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public HttpClient getClient() {
+      return client;
+    }
+
+    /**
+     * Number of requests waiting for a response.
+     * @return count
+     */
+    public int getPending() {
+      return pending.get();
+    }
+
+    /**
+     * Create request with absolute URL. Counts the request as pending until
+     * the response headers are received or the request fails.
+     * @param method HTTP method
+     * @param absoluteUri URL
+     * @param handler response handler
+     * @return request
+     */
+    public HttpClientRequest requestAbs(HttpMethod method, String absoluteUri,
+                                        Handler<AsyncResult<HttpClientResponse>> handler) {
+      pending.incrementAndGet();
+      requests.mark();
+      return client.requestAbs(method, absoluteUri, res -> {
+        pending.decrementAndGet();
+        handler.handle(res);
+      });
+    }
+  }
+
+  private final Vertx vertx;
+  private final JsonObject options;
+  private final JsonObject moduleOptions;
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+  private final Map<String, Pool> poolsByModuleId = new ConcurrentHashMap<>();
+
+  /**
+   * Create client pools. Clients are created on first use.
+   * @param vertx Vert.x handle
+   * @param options options for all clients; null for defaults
+   * @param moduleOptions options per module product; null for none
+   * @throws IllegalArgumentException for invalid options
+   */
+  public HttpClientPools(Vertx vertx, JsonObject options, JsonObject moduleOptions) {
+    this.vertx = vertx;
+    this.options = options != null ? options : new JsonObject();
+    this.moduleOptions = moduleOptions != null ? moduleOptions : new JsonObject();
+    // fail early on bad options
+    createOptions(this.options);
+    for (String product : this.moduleOptions.fieldNames()) {
+      createOptions(getOptions(product));
+    }
+  }
+
+  JsonObject getOptions(String product) {
+    JsonObject json = options.copy();
+    Object o = moduleOptions.getValue(product);
+    if (o != null) {
+      if (!(o instanceof JsonObject)) {
+        throw new IllegalArgumentException("Bad HTTP client options for " + product);
+      }
+      json.mergeIn((JsonObject) o);
+    }
+    return json;
+  }
+
+  static HttpClientOptions createOptions(JsonObject json) {
+    JsonObject j = json.copy();
+    if (!j.containsKey("maxPoolSize")) {
+      j.put("maxPoolSize", DEFAULT_MAX_POOL_SIZE);
+    }
+    try {
+      return new HttpClientOptions(j);
+    } catch (ClassCastException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Bad HTTP client options " + json.encode()
+          + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Get client pool for a module.
+   * @param moduleId module ID, with or without version
+   * @return pool
+   */
+  public Pool get(String moduleId) {
+    Pool pool = poolsByModuleId.get(moduleId);
+    if (pool == null) {
+      pool = getForProduct(new ModuleId(moduleId).getProduct());
+      poolsByModuleId.put(moduleId, pool);
+    }
+    return pool;
+  }
+
+  private Pool getForProduct(String product) {
+    return pools.computeIfAbsent(product, p -> {
+      HttpClientOptions opt = createOptions(getOptions(p));
+      logger.info("New HTTP client for {}: {}", p, opt.toJson().encode());
+      Pool pool = new Pool(p, vertx.createHttpClient(opt));
+      DropwizardHelper.registerGauge("proxy.httpClient." + p + ".pending", pool::getPending);
+      return pool;
+    });
+  }
+}
@@ -0,0 +1,132 @@
+package org.folio.okapi.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request statistics per module instance (URL), as seen by the proxy: the
+ * number of requests in flight and an exponentially weighted moving average
+ * (EWMA) of response times. A failed request counts as a response that took
+ * at least the failure penalty, so that an instance that fails fast does not
+ * look fast. Thread safe; shared by all proxy instances.
+ */
+public class InstanceStats {
+
+  private static final double ALPHA = 0.2; // weight of newest sample
+  static final long DEFAULT_FAILURE_PENALTY_MS = 1000;
+
+  static class Stats {
+    final AtomicInteger inFlight = new AtomicInteger();
+    private double ewmaNanos = 0.0;
+
+    synchronized void sample(long nanos) {
+      double v = Math.max(nanos, 1L); // 0.0 means no sample
+      ewmaNanos = ewmaNanos == 0.0 ? v : ALPHA * v + (1.0 - ALPHA) * ewmaNanos;
+    }
+
+    synchronized double getEwmaNanos() {
+      return ewmaNanos;
+    }
+  }
+
+  /**
+   * A request to an instance. Ends once; further calls to end are ignored.
+   */
+  public class Call {
+    private final Stats stats;
+    private final long start;
+    private boolean ended;
+
+    Call(Stats stats) {
+      this.stats = stats;
+      this.start = System.nanoTime();
+    }
+
+    /**
+     * Time since the request started.
+     * @return milliseconds
+     */
+    public long elapsedMillis() {
+      return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * End the request.
+     * @param success true if the instance responded; false if the request
+     *     failed, in which case the failure penalty is sampled if it is
+     *     longer than the time taken
+     */
+    public synchronized void end(boolean success) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      stats.inFlight.decrementAndGet();
+      long nanos = System.nanoTime() - start;
+      stats.sample(success ? nanos : Math.max(nanos, failurePenaltyNanos));
+    }
+
+    /**
+     * End a request that was given up by the proxy, without a sample.
+     */
+    public synchronized void cancel() {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      stats.inFlight.decrementAndGet();
+    }
+  }
+
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+  private final long failurePenaltyNanos;
+
+  public InstanceStats() {
+    this(DEFAULT_FAILURE_PENALTY_MS);
+  }
+
+  /**
+   * Create statistics.
+   * @param failurePenaltyMs response time in milliseconds that a failed
+   *     request counts as, at least
+   */
+  public InstanceStats(long failurePenaltyMs) {
+    this.failurePenaltyNanos = Math.max(0, failurePenaltyMs) * 1000000;
+  }
+
+  private static String key(String url) {
+    return url == null ? "" : url;
+  }
+
+  /**
+   * Start a request to an instance.
+   * @param url instance URL
+   * @return call to be ended when response is received or the request fails
+   */
+  public Call start(String url) {
+    Stats s = stats.computeIfAbsent(key(url), x -> new Stats());
+    s.inFlight.incrementAndGet();
+    return new Call(s);
+  }
+
+  /**
+   * Number of requests in flight.
+   * @param url instance URL
+   * @return count
+   */
+  public int getInFlight(String url) {
+    Stats s = stats.get(key(url));
+    return s == null ? 0 : s.inFlight.get();
+  }
+
+  /**
+   * Moving average of response times.
+   * @param url instance URL
+   * @return average in nanoseconds; 0 if no response has been seen
+   */
+  public double getEwmaNanos(String url) {
+    Stats s = stats.get(key(url));
+    return s == null ? 0.0 : s.getEwmaNanos();
+  }
+}
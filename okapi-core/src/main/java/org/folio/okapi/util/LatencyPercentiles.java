@@ -0,0 +1,81 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A percentile of recent latencies per key (module). The latest samples are
+ * kept in a window, and the percentile is computed again after every tenth
+ * of the window, so that reading it is cheap.
+ */
+public class LatencyPercentiles {
+
+  private static class Window {
+    final long[] samples;
+    int count;
+    int next;
+    int sinceCompute;
+    long value = -1;
+
+    Window(int size) {
+      samples = new long[size];
+    }
+  }
+
+  private final int percentile;
+  private final int window;
+  private final int minSamples;
+  private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+  /**
+   * Create percentiles.
+   * @param percentile percentile, 1 to 100
+   * @param window number of latest samples that are considered
+   * @param minSamples number of samples needed for a percentile
+   */
+  public LatencyPercentiles(int percentile, int window, int minSamples) {
+    this.percentile = Math.max(1, Math.min(100, percentile));
+    this.window = Math.max(1, window);
+    this.minSamples = Math.max(1, Math.min(minSamples, this.window));
+  }
+
+  /**
+   * Add sample.
+   * @param key module
+   * @param latencyMs latency in milliseconds
+   */
+  public void record(String key, long latencyMs) {
+    Window w = windows.computeIfAbsent(key, k -> new Window(window));
+    synchronized (w) {
+      w.samples[w.next] = latencyMs;
+      w.next = (w.next + 1) % window;
+      if (w.count < window) {
+        w.count++;
+      }
+      w.sinceCompute++;
+      if (w.count >= minSamples && (w.value < 0 || w.sinceCompute * 10 >= window)) {
+        long[] sorted = Arrays.copyOf(w.samples, w.count);
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(percentile / 100.0 * w.count) - 1;
+        w.value = sorted[Math.max(0, i)];
+        w.sinceCompute = 0;
+      }
+    }
+  }
+
+  /**
+   * Get percentile.
+   * @param key module
+   * @return latency in milliseconds; -1 if there are too few samples
+   */
+  public long get(String key) {
+    Window w = windows.get(key);
+    if (w == null) {
+      return -1;
+    }
+    synchronized (w) {
+      return w.value;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * Read stream that fails when more than a given number of bytes have been
+ * read. The data is checked as it arrives, so a body that is too large is
+ * rejected before it is buffered. After the limit is exceeded, the rest of
+ * the stream is discarded, the overflow handler is called, and then the
+ * exception handler with {@link BodyTooLargeException}. The end handler is
+ * not called, so the body is never passed on incomplete.
+ */
+public class LimitedReadStream implements ReadStream<Buffer> {
+
+  /**
+   * Exception for a stream that exceeded the limit.
+   */
+  public static class BodyTooLargeException extends RuntimeException {
+    BodyTooLargeException(long limit) {
+      super("Body exceeds " + limit + " bytes");
+    }
+  }
+
+  private final ReadStream<Buffer> stream;
+  private final long limit;
+  private final Handler<Void> overflowHandler;
+  private Handler<Throwable> exceptionHandler;
+  private Handler<Void> endHandler;
+  private long bytes;
+  private boolean overflow;
+
+  /**
+   * Create limited stream.
+   * @param stream stream to read
+   * @param limit maximum number of bytes
+   * @param overflowHandler called once when the limit is exceeded
+   */
+  public LimitedReadStream(ReadStream<Buffer> stream, long limit,
+                           Handler<Void> overflowHandler) {
+    this.stream = stream;
+    this.limit = limit;
+    this.overflowHandler = overflowHandler;
+    stream.exceptionHandler(e -> {
+      if (exceptionHandler != null) {
+        exceptionHandler.handle(e);
+      }
+    });
+    stream.endHandler(v -> {
+      if (!overflow && endHandler != null) {
+        endHandler.handle(null);
+      }
+    });
+  }
+
+  public boolean isOverflow() {
+    return overflow;
+  }
+
+  @Override
+  public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+    exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+    if (handler == null) {
+      stream.handler(null);
+      return this;
+    }
+    stream.handler(data -> {
+      if (overflow) {
+        return;
+      }
+      bytes += data.length();
+      if (bytes <= limit) {
+        handler.handle(data);
+        return;
+      }
+      overflow = true;
+      stream.resume(); // discard the rest
+      overflowHandler.handle(null);
+      if (exceptionHandler != null) {
+        exceptionHandler.handle(new BodyTooLargeException(limit));
+      }
+    });
+    return this;
+  }
+
+  @Override
+  public ReadStream<Buffer> pause() {
+    if (!overflow) {
+      stream.pause();
+    }
+    return this;
+  }
+
+  @Override
+  public ReadStream<Buffer> resume() {
+    stream.resume();
+    return this;
+  }
+
+  @Override
+  public ReadStream<Buffer> fetch(long amount) {
+    stream.fetch(amount);
+    return this;
+  }
+
+  @Override
+  public ReadStream<Buffer> endHandler(Handler<Void> handler) {
+    endHandler = handler;
+    return this;
+  }
+}
@@ -0,0 +1,17 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Strategy for picking one of the instances of a module.
+ */
+public interface LoadBalancer {
+
+  /**
+   * Pick instance.
+   * @param instances live instances of a module
+   * @return instance; null if list is empty
+   */
+  DeploymentDescriptor pick(List<DeploymentDescriptor> instances);
+}
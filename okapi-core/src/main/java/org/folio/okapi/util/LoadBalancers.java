@@ -0,0 +1,115 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * The load balancing strategies.
+ */
+// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
+// for load balancing, so security is not an issue
+@java.lang.SuppressWarnings({"squid:S2245"})
+public final class LoadBalancers {
+
+  public static final String RANDOM = "random";
+  public static final String ROUND_ROBIN = "round-robin";
+  public static final String LEAST_OUTSTANDING = "least-outstanding";
+  public static final String EWMA = "ewma";
+
+  private LoadBalancers() {
+    throw new UnsupportedOperationException("LoadBalancers");
+  }
+
+  /**
+   * Create load balancer.
+   * @param strategy one of random, round-robin, least-outstanding, ewma
+   * @param stats request statistics for strategies that use them
+   * @return load balancer
+   * @throws IllegalArgumentException for unknown strategy
+   */
+  public static LoadBalancer create(String strategy, InstanceStats stats) {
+    switch (strategy) {
+      case RANDOM:
+        return LoadBalancers::pickRandom;
+      case ROUND_ROBIN:
+        return new RoundRobin();
+      case LEAST_OUTSTANDING:
+        return instances -> pickMin(instances, dd -> stats.getInFlight(dd.getUrl()));
+      case EWMA:
+        return instances -> pickEwma(instances, stats);
+      default:
+        throw new IllegalArgumentException("Unknown load balancing strategy: " + strategy);
+    }
+  }
+
+  private static DeploymentDescriptor pickRandom(List<DeploymentDescriptor> instances) {
+    int sz = instances.size();
+    return sz > 0 ? instances.get(ThreadLocalRandom.current().nextInt(sz)) : null;
+  }
+
+  private static class RoundRobin implements LoadBalancer {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public DeploymentDescriptor pick(List<DeploymentDescriptor> instances) {
+      int sz = instances.size();
+      if (sz == 0) {
+        return null;
+      }
+      return instances.get(Math.floorMod(next.getAndIncrement(), sz));
+    }
+  }
+
+  interface Cost {
+    double of(DeploymentDescriptor dd);
+  }
+
+  /**
+   * Pick instance with the lowest expected wait: average response time for
+   * each request in line. An instance without samples counts as having the
+   * mean average of the others, so that it gets its share of the requests
+   * but not all of them.
+   */
+  private static DeploymentDescriptor pickEwma(List<DeploymentDescriptor> instances,
+                                               InstanceStats stats) {
+    double sum = 0.0;
+    int known = 0;
+    for (DeploymentDescriptor dd : instances) {
+      double ewma = stats.getEwmaNanos(dd.getUrl());
+      if (ewma > 0.0) {
+        sum += ewma;
+        known++;
+      }
+    }
+    final double mean = known > 0 ? sum / known : 1.0;
+    return pickMin(instances, dd -> {
+      double ewma = stats.getEwmaNanos(dd.getUrl());
+      return (ewma > 0.0 ? ewma : mean) * (stats.getInFlight(dd.getUrl()) + 1);
+    });
+  }
+
+  /**
+   * Pick instance with the lowest cost. Starts at a random position, so that
+   * ties are broken randomly.
+   */
+  private static DeploymentDescriptor pickMin(List<DeploymentDescriptor> instances, Cost cost) {
+    int sz = instances.size();
+    if (sz == 0) {
+      return null;
+    }
+    int start = ThreadLocalRandom.current().nextInt(sz);
+    DeploymentDescriptor best = null;
+    double bestCost = 0.0;
+    for (int i = 0; i < sz; i++) {
+      DeploymentDescriptor dd = instances.get((start + i) % sz);
+      double c = cost.of(dd);
+      if (best == null || c < bestCost) {
+        best = dd;
+        bestCost = c;
+      }
+    }
+    return best;
+  }
+}
@@ -11,6 +11,7 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
@@ -19,6 +20,12 @@ import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 
+/**
+ * Shared map of strings, with optional two-level keys.
+ *
+ * <p>A near cache of decoded values may be enabled, see
+ * {@link #enableNearCache()}.
+ */
 public class LockedStringMap {
 
   static class StringMap {
@@ -32,6 +39,22 @@ public class LockedStringMap {
   private static final int DELAY = 10; // ms in recursing for retry of map
   protected final Logger logger = OkapiLogger.get();
   private final Messages messages = Messages.getInstance();
+  private static final String NEAR_CACHE_ADDRESS = "okapi.nearcache.";
+  private boolean nearCache = false;
+  private String nearCacheAddress = null;
+  private long nearCacheVersion = 0;
+  private final Map<String, Object> nearCacheMap = new ConcurrentHashMap<>();
+
+  /**
+   * Keep values, as decoded by subclasses, in a cache local to this node.
+   * Entries are dropped when they are modified through this map. In a
+   * cluster, modifications are announced on the event bus, so that other
+   * nodes drop their entries as well. Values returned from the cache are
+   * shared, so callers must not modify them. Must be called before init.
+   */
+  public void enableNearCache() {
+    nearCache = true;
+  }
 
   /**
    * Initialize a shared map.
@@ -44,6 +67,11 @@ public class LockedStringMap {
     AsyncMapFactory.<String, String>create(vertx, mapName, res -> {
       if (res.succeeded()) {
         this.list = res.result();
+        if (nearCache && vertx.isClustered() && mapName != null) {
+          nearCacheAddress = NEAR_CACHE_ADDRESS + mapName;
+          vertx.eventBus().consumer(nearCacheAddress,
+              msg -> invalidateCached((String) msg.body()));
+        }
         fut.handle(new Success<>());
       } else {
         fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
@@ -97,6 +125,21 @@ public class LockedStringMap {
    * @param fut async result with values if successful
    */
   public void getString(String k, Handler<ExtendedAsyncResult<Collection<String>>> fut) {
+    getStringMap(k, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+      } else {
+        fut.handle(new Success<>(res.result().values()));
+      }
+    });
+  }
+
+  /**
+   * Get values from shared map with primary key.
+   * @param k primary-level key
+   * @param fut async result with values by secondary-level key if successful
+   */
+  public void getStringMap(String k, Handler<ExtendedAsyncResult<Map<String, String>>> fut) {
     list.get(k, resGet -> {
       if (resGet.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, resGet.cause()));
@@ -105,7 +148,7 @@ public class LockedStringMap {
         StringMap map;
         if (val != null) {
           map = Json.decodeValue(val, StringMap.class);
-          fut.handle(new Success<>(map.strings.values()));
+          fut.handle(new Success<>(map.strings));
         } else {
           fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
         }
@@ -172,6 +215,7 @@ public class LockedStringMap {
       list.putIfAbsent(k, newVal, resPut -> {
         if (resPut.succeeded()) {
           if (resPut.result() == null) {
+            changed(k);
             fut.handle(new Success<>());
           } else { // Someone messed with it, try again
             vertx.setTimer(DELAY, res
@@ -185,6 +229,7 @@ public class LockedStringMap {
       list.replaceIfPresent(k, oldVal, newVal, resRepl -> {
         if (resRepl.succeeded()) {
           if (Boolean.TRUE.equals(resRepl.result())) {
+            changed(k);
             fut.handle(new Success<>());
           } else {
             vertx.setTimer(DELAY, res
@@ -240,6 +285,7 @@ public class LockedStringMap {
       list.removeIfPresent(k, val, resDel -> {
         if (resDel.succeeded()) {
           if (Boolean.TRUE.equals(resDel.result())) {
+            changed(k);
             fut.handle(new Success<>(true));
           } else {
             vertx.setTimer(DELAY, res -> remove(k, k2, fut));
@@ -253,6 +299,7 @@ public class LockedStringMap {
       list.replaceIfPresent(k, val, newVal, resPut -> {
         if (resPut.succeeded()) {
           if (Boolean.TRUE.equals(resPut.result())) {
+            changed(k);
             fut.handle(new Success<>(false));
           } else {
             vertx.setTimer(DELAY, res -> remove(k, k2, fut));
@@ -264,4 +311,50 @@ public class LockedStringMap {
     }
   }
 
+  /**
+   * Get value from near cache.
+   * @param k primary-level key
+   * @return decoded value; null if not cached (or near cache is disabled)
+   */
+  @SuppressWarnings("unchecked")
+  protected <V> V getCached(String k) {
+    return (V) nearCacheMap.get(k);
+  }
+
+  /**
+   * Get near cache version. Must be called before the shared map is read,
+   * and passed to {@link #putCached} with the value decoded from it.
+   * @return version
+   */
+  protected synchronized long getCacheVersion() {
+    return nearCacheVersion;
+  }
+
+  /**
+   * Put value in near cache, unless an entry was invalidated since the
+   * value was read from the shared map.
+   * @param k primary-level key
+   * @param value decoded value
+   * @param version as returned by {@link #getCacheVersion} before reading
+   */
+  protected synchronized void putCached(String k, Object value, long version) {
+    if (nearCache && version == nearCacheVersion) {
+      nearCacheMap.put(k, value);
+    }
+  }
+
+  private synchronized void invalidateCached(String k) {
+    nearCacheVersion++;
+    nearCacheMap.remove(k);
+  }
+
+  private void changed(String k) {
+    if (!nearCache) {
+      return;
+    }
+    invalidateCached(k);
+    if (nearCacheAddress != null) {
+      vertx.eventBus().publish(nearCacheAddress, k);
+    }
+  }
 }
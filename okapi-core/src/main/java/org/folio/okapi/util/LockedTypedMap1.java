@@ -35,11 +35,23 @@ public class LockedTypedMap1<T> extends LockedStringMap {
    * @param fut result with value if successful
    */
   public void get(String k, Handler<ExtendedAsyncResult<T>> fut) {
+    getDecoded(k, fut);
+  }
+
+  private void getDecoded(String k, Handler<ExtendedAsyncResult<T>> fut) {
+    T cached = getCached(k);
+    if (cached != null) {
+      fut.handle(new Success<>(cached));
+      return;
+    }
+    long version = getCacheVersion();
     getString(k, null, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
       } else {
-        fut.handle(new Success<>(Json.decodeValue(res.result(), clazz)));
+        T t = Json.decodeValue(res.result(), clazz);
+        putCached(k, t, version);
+        fut.handle(new Success<>(t));
       }
     });
   }
@@ -60,11 +72,10 @@ public class LockedTypedMap1<T> extends LockedStringMap {
       LinkedHashMap<String, T> results = new LinkedHashMap<>();
       CompList<LinkedHashMap<String,T>> futures = new CompList<>(ErrorType.INTERNAL);
       for (String key : keys) {
-        Promise<String> promise = Promise.promise();
-        getString(key, null, res -> {
+        Promise<T> promise = Promise.promise();
+        getDecoded(key, res -> {
           if (res.succeeded()) {
-            T t = Json.decodeValue(res.result(), clazz);
-            results.put(key, t);
+            results.put(key, res.result());
           }
           promise.handle(res);
         });
@@ -2,8 +2,12 @@ package org.folio.okapi.util;
 
 import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
 import org.folio.okapi.common.Success;
@@ -33,11 +37,20 @@ public class LockedTypedMap2<T> extends LockedStringMap {
    * @param fut async result with deserialized value on success
    */
   public void get(String k, String k2, Handler<ExtendedAsyncResult<T>> fut) {
-    getString(k, k2, res -> {
+    getDecoded(k, res -> {
       if (res.failed()) {
-        fut.handle(new Failure<>(res.getType(), res.cause()));
+        if (res.getType() == ErrorType.NOT_FOUND) {
+          fut.handle(new Failure<>(ErrorType.NOT_FOUND, k + "/" + k2));
+        } else {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+        }
+        return;
+      }
+      T t = res.result().get(k2);
+      if (t == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k + "/" + k2));
       } else {
-        fut.handle(new Success<>(Json.decodeValue(res.result(), clazz)));
+        fut.handle(new Success<>(t));
       }
     });
   }
@@ -48,16 +61,34 @@ public class LockedTypedMap2<T> extends LockedStringMap {
    * @param fut async result with deserialized values on success
    */
   public void get(String k, Handler<ExtendedAsyncResult<List<T>>> fut) {
-    getString(k, res -> {
+    getDecoded(k, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
       } else {
-        LinkedList<T> t = new LinkedList<>();
-        for (String s : res.result()) {
-          t.add(Json.decodeValue(s, clazz));
-        }
-        fut.handle(new Success<>(t));
+        fut.handle(new Success<>(new LinkedList<>(res.result().values())));
+      }
+    });
+  }
+
+  private void getDecoded(String k, Handler<ExtendedAsyncResult<Map<String, T>>> fut) {
+    Map<String, T> cached = getCached(k);
+    if (cached != null) {
+      fut.handle(new Success<>(cached));
+      return;
+    }
+    long version = getCacheVersion();
+    getStringMap(k, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      Map<String, T> t = new LinkedHashMap<>();
+      for (Map.Entry<String, String> e : res.result().entrySet()) {
+        t.put(e.getKey(), Json.decodeValue(e.getValue(), clazz));
       }
+      t = Collections.unmodifiableMap(t);
+      putCached(k, t, version);
+      fut.handle(new Success<>(t));
     });
   }
 }
@@ -0,0 +1,168 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Passive outlier detection for module instances. The proxy reports the
+ * outcome of each request to an instance (URL). An instance that fails a
+ * number of consecutive requests is ejected: it is not picked for new
+ * requests for a while. The ejection time doubles for each ejection, up to
+ * a maximum. After an ejection the instance is on probation, and the first
+ * failure ejects it again. The ejection count is reset once the instance has
+ * been in service for the maximum ejection time.
+ *
+ * <p>If all instances of a module are ejected, all are used anyway.
+ */
+public class OutlierDetector {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  private static class State {
+    int consecutiveFailures;
+    int ejections;
+    long ejectedUntil;
+    boolean probation;
+    boolean removed; // no longer in the map; a new state must be made
+  }
+
+  private final int consecutiveFailures;
+  private final long baseEjectionMs;
+  private final long maxEjectionMs;
+  private final LongSupplier clock;
+  private final Map<String, State> states = new ConcurrentHashMap<>();
+
+  /**
+   * Create outlier detector.
+   * @param consecutiveFailures number of consecutive failures that ejects an
+   *     instance; 0 disables ejection
+   * @param baseEjectionMs time of first ejection in milliseconds
+   * @param maxEjectionMs maximum ejection time in milliseconds
+   */
+  public OutlierDetector(int consecutiveFailures, long baseEjectionMs, long maxEjectionMs) {
+    this(consecutiveFailures, baseEjectionMs, maxEjectionMs, System::currentTimeMillis);
+  }
+
+  OutlierDetector(int consecutiveFailures, long baseEjectionMs, long maxEjectionMs,
+                  LongSupplier clock) {
+    this.consecutiveFailures = consecutiveFailures;
+    this.baseEjectionMs = baseEjectionMs;
+    this.maxEjectionMs = maxEjectionMs;
+    this.clock = clock;
+  }
+
+  /**
+   * Report failed request: no response, or a response that says the
+   * instance is unavailable.
+   * @param url instance URL
+   */
+  public void failure(String url) {
+    if (consecutiveFailures <= 0 || url == null) {
+      return;
+    }
+    while (!failure(url, states.computeIfAbsent(url, x -> new State()))) {
+      // state was removed by success() on another thread; try again
+    }
+  }
+
+  private boolean failure(String url, State st) {
+    synchronized (st) {
+      if (st.removed) {
+        return false;
+      }
+      long now = clock.getAsLong();
+      if (now < st.ejectedUntil) {
+        return true; // request started before ejection
+      }
+      st.consecutiveFailures++;
+      if (st.probation || st.consecutiveFailures >= consecutiveFailures) {
+        st.ejections++;
+        long ms = baseEjectionMs << Math.min(st.ejections - 1, 30);
+        if (ms <= 0 || ms > maxEjectionMs) {
+          ms = maxEjectionMs;
+        }
+        st.ejectedUntil = now + ms;
+        st.consecutiveFailures = 0;
+        st.probation = true;
+        logger.warn("Ejecting instance {} for {} ms", url, ms);
+        DropwizardHelper.markEvent("proxy.instance.ejections");
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Report successful request.
+   * @param url instance URL
+   */
+  public void success(String url) {
+    if (url == null) {
+      return;
+    }
+    State st = states.get(url);
+    if (st == null) {
+      return;
+    }
+    synchronized (st) {
+      long now = clock.getAsLong();
+      st.consecutiveFailures = 0;
+      if (now >= st.ejectedUntil) {
+        st.probation = false;
+        if (st.ejections == 0 || now - st.ejectedUntil >= maxEjectionMs) {
+          st.removed = true;
+          states.remove(url, st);
+        }
+      }
+    }
+  }
+
+  /**
+   * Check whether instance is ejected.
+   * @param url instance URL
+   * @return true if ejected now
+   */
+  public boolean isEjected(String url) {
+    if (url == null) {
+      return false;
+    }
+    State st = states.get(url);
+    if (st == null) {
+      return false;
+    }
+    synchronized (st) {
+      return clock.getAsLong() < st.ejectedUntil;
+    }
+  }
+
+  /**
+   * Get instances that are not ejected.
+   * @param instances instances of a module
+   * @return instances not ejected; all instances if all are ejected
+   */
+  public List<DeploymentDescriptor> available(List<DeploymentDescriptor> instances) {
+    if (states.isEmpty()) {
+      return instances;
+    }
+    List<DeploymentDescriptor> l = null;
+    for (int i = 0; i < instances.size(); i++) {
+      DeploymentDescriptor dd = instances.get(i);
+      if (isEjected(dd.getUrl())) {
+        if (l == null) {
+          l = new ArrayList<>(instances.subList(0, i));
+        }
+      } else if (l != null) {
+        l.add(dd);
+      }
+    }
+    if (l == null || l.isEmpty()) {
+      return instances;
+    }
+    return l;
+  }
+}
@@ -0,0 +1,195 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.http.HttpMethod;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.common.LruCache;
+
+/**
+ * Cache of resolved proxy pipelines. A pipeline is the sorted list of
+ * filters and handlers (including those found by following redirects) for a
+ * request, keyed by tenant, method, X-Okapi-Module-Id and the routing entries
+ * that match the request path. Redirects go to fixed paths, so the pipeline
+ * only depends on the matching entries, not on the path itself: requests for
+ * /instances/1 and /instances/2 that both match /instances/{id} share one
+ * pipeline. Pipelines are stored as templates ({@link Step}) from which fresh
+ * ModuleInstances are made for each request.
+ *
+ * <p>Each pipeline remembers the routing table it was resolved with. A
+ * pipeline found for another routing table is stale and is treated as a
+ * miss, so pipelines never outlive changes to the enabled modules, even if
+ * explicit invalidation is missed.
+ */
+public class PipelineCache {
+
+  /**
+   * Template for one ModuleInstance of a pipeline.
+   */
+  public static class Step {
+    private final ModuleDescriptor md;
+    private final RoutingEntry re;
+    private final boolean handler;
+    private final List<RoutingEntry> redirects;
+
+    /**
+     * Create step.
+     * @param md module
+     * @param re routing entry of module
+     * @param handler true for handler; false for filter
+     * @param redirects redirect entries followed to reach this step, in order
+     */
+    public Step(ModuleDescriptor md, RoutingEntry re, boolean handler,
+                List<RoutingEntry> redirects) {
+      this.md = md;
+      this.re = re;
+      this.handler = handler;
+      this.redirects = redirects;
+    }
+
+    public ModuleDescriptor getModuleDescriptor() {
+      return md;
+    }
+
+    public RoutingEntry getRoutingEntry() {
+      return re;
+    }
+
+    public boolean isHandler() {
+      return handler;
+    }
+
+    /**
+     * Whether the step was found by following a redirect.
+     */
+    public boolean isRedirected() {
+      return !redirects.isEmpty();
+    }
+
+    /**
+     * Make module instance for a request.
+     * @param uri request URI
+     * @param method request method
+     * @return new instance
+     */
+    public ModuleInstance instance(String uri, HttpMethod method) {
+      for (RoutingEntry r : redirects) {
+        uri = r.getRedirectUri(uri);
+      }
+      return new ModuleInstance(md, re, uri, method, handler);
+    }
+  }
+
+  /**
+   * Cached pipeline: its steps and values derived from them.
+   */
+  public static class Pipeline {
+    private final RoutingTable table;
+    private final List<Step> steps;
+    private volatile AuthHeaders authHeaders;
+
+    Pipeline(RoutingTable table, List<Step> steps) {
+      this.table = table;
+      this.steps = steps;
+    }
+
+    public List<Step> getSteps() {
+      return steps;
+    }
+
+    /**
+     * Get permission headers for the auth filter. Computed on first use.
+     * @return headers
+     */
+    public AuthHeaders getAuthHeaders() {
+      AuthHeaders h = authHeaders;
+      if (h == null) {
+        h = AuthHeaders.ofSteps(steps);
+        authHeaders = h;
+      }
+      return h;
+    }
+  }
+
+  private final LruCache<String, Pipeline> cache;
+
+  /**
+   * Create pipeline cache and register its metrics.
+   * @param maxSize maximum number of pipelines; 0 disables the cache
+   */
+  public PipelineCache(int maxSize) {
+    cache = new LruCache<>(maxSize);
+    DropwizardHelper.registerGauge("proxy.pipelineCache.size", cache::size);
+    DropwizardHelper.registerGauge("proxy.pipelineCache.hits", cache::getHits);
+    DropwizardHelper.registerGauge("proxy.pipelineCache.misses", cache::getMisses);
+    DropwizardHelper.registerGauge("proxy.pipelineCache.evictions", cache::getEvictions);
+  }
+
+  /**
+   * Make cache key for request.
+   * @param tenantId tenant
+   * @param method HTTP method
+   * @param entries routing entries that match the request, as returned by
+   *     {@link RoutingTable#lookup}
+   * @param moduleId X-Okapi-Module-Id value; null if not given
+   * @return key
+   */
+  public static String key(String tenantId, String method, List<RoutingTable.Entry> entries,
+                           String moduleId) {
+    StringBuilder b = new StringBuilder(tenantId).append(' ').append(method).append(' ');
+    for (RoutingTable.Entry e : entries) {
+      b.append(e.getSeq()).append(',');
+    }
+    if (moduleId != null) {
+      b.append(' ').append(moduleId);
+    }
+    return b.toString();
+  }
+
+  /**
+   * Get pipeline.
+   * @param key key as returned by {@link #key}
+   * @param table current routing table of tenant
+   * @return pipeline; null if not cached, or cached for another routing table
+   */
+  public Pipeline get(String key, RoutingTable table) {
+    Pipeline p = cache.get(key);
+    if (p == null || p.table != table) {
+      return null;
+    }
+    return p;
+  }
+
+  /**
+   * Store pipeline.
+   * @param key key as returned by {@link #key}
+   * @param table routing table the pipeline was resolved with
+   * @param steps sorted pipeline
+   * @return pipeline stored; also returned if the cache is disabled
+   */
+  public Pipeline put(String key, RoutingTable table, List<Step> steps) {
+    Pipeline p = new Pipeline(table, Collections.unmodifiableList(new ArrayList<>(steps)));
+    cache.put(key, p);
+    return p;
+  }
+
+  /**
+   * Remove all pipelines of a tenant.
+   * @param tenantId tenant
+   */
+  public void removeTenant(String tenantId) {
+    final String prefix = tenantId + " ";
+    cache.removeIf(k -> k.startsWith(prefix));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+}
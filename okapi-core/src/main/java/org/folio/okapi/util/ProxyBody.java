@@ -0,0 +1,236 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * A body that the proxy must keep, because it is passed to more than one
+ * module or must be sent with a Content-Length. Small bodies are kept in
+ * memory. A body larger than the memory limit is spooled to a temporary file,
+ * with backpressure on the incoming stream, and streamed from the file each
+ * time it is written. The file must be removed with {@link #delete()}.
+ */
+public class ProxyBody {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  private final Vertx vertx;
+  private final Buffer buffer; // null if spooled
+  private final String file;
+  private final long length;
+  private int opening; // files being opened by pipe
+  private boolean deleted;
+
+  private ProxyBody(Vertx vertx, Buffer buffer, String file, long length) {
+    this.vertx = vertx;
+    this.buffer = buffer;
+    this.file = file;
+    this.length = length;
+  }
+
+  /**
+   * Create in-memory body.
+   * @param buffer content
+   * @return body
+   */
+  public static ProxyBody of(Buffer buffer) {
+    return new ProxyBody(null, buffer, null, buffer.length());
+  }
+
+  /**
+   * Read stream into body.
+   * @param vertx Vert.x handle
+   * @param stream stream to read; will be resumed
+   * @param memoryLimit maximum size of in-memory body; 0 for no limit
+   * @param fut result
+   */
+  public static void spool(Vertx vertx, ReadStream<Buffer> stream, long memoryLimit,
+                           Handler<AsyncResult<ProxyBody>> fut) {
+    final Buffer incoming = Buffer.buffer();
+    stream.handler(data -> {
+      incoming.appendBuffer(data);
+      if (memoryLimit > 0 && incoming.length() > memoryLimit) {
+        stream.pause();
+        spoolToFile(vertx, stream, incoming, fut);
+      }
+    });
+    stream.endHandler(v -> fut.handle(Future.succeededFuture(of(incoming))));
+    stream.exceptionHandler(e -> fut.handle(Future.failedFuture(e)));
+    stream.resume();
+  }
+
+  private static void spoolToFile(Vertx vertx, ReadStream<Buffer> stream, Buffer head,
+                                  Handler<AsyncResult<ProxyBody>> fut) {
+    stream.handler(null);
+    stream.endHandler(null);
+    stream.exceptionHandler(null);
+    vertx.fileSystem().createTempFile("okapi-body", ".tmp", (String) null, res1 -> {
+      if (res1.failed()) {
+        fut.handle(Future.failedFuture(res1.cause()));
+        return;
+      }
+      String path = res1.result();
+      vertx.fileSystem().open(path, new OpenOptions().setWrite(true), res2 -> {
+        if (res2.failed()) {
+          vertx.fileSystem().delete(path, x -> { });
+          fut.handle(Future.failedFuture(res2.cause()));
+          return;
+        }
+        AsyncFile af = res2.result();
+        af.write(head);
+        long[] length = {head.length()};
+        stream.handler(data -> {
+          length[0] += data.length();
+          af.write(data);
+          if (af.writeQueueFull()) {
+            stream.pause();
+            af.drainHandler(x -> stream.resume());
+          }
+        });
+        stream.endHandler(v -> af.close(res3 -> {
+          if (res3.failed()) {
+            vertx.fileSystem().delete(path, x -> { });
+            fut.handle(Future.failedFuture(res3.cause()));
+            return;
+          }
+          logger.debug("Spooled {} bytes to {}", length[0], path);
+          fut.handle(Future.succeededFuture(new ProxyBody(vertx, null, path, length[0])));
+        }));
+        stream.exceptionHandler(e -> af.close(x -> {
+          vertx.fileSystem().delete(path, y -> { });
+          fut.handle(Future.failedFuture(e));
+        }));
+        stream.resume();
+      });
+    });
+  }
+
+  public boolean isSpooled() {
+    return buffer == null;
+  }
+
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Get body as buffer. Reads the file for a spooled body.
+   * @param fut result
+   */
+  public void toBuffer(Handler<AsyncResult<Buffer>> fut) {
+    if (buffer != null) {
+      fut.handle(Future.succeededFuture(buffer));
+    } else {
+      vertx.fileSystem().readFile(file, fut);
+    }
+  }
+
+  /**
+   * Send body as the whole request. The request is reset if a spooled body
+   * can not be read, as it may have promised a Content-Length.
+   * @param req request
+   */
+  public void end(HttpClientRequest req) {
+    if (buffer != null) {
+      req.end(buffer);
+    } else {
+      if (!req.isChunked()) {
+        req.putHeader("Content-Length", Long.toString(length));
+      }
+      pipe(req, req::reset);
+    }
+  }
+
+  /**
+   * Send body as the whole response. The response is reset if a spooled
+   * body can not be read, as it may have promised a Content-Length.
+   * @param res response
+   */
+  public void end(HttpServerResponse res) {
+    if (buffer != null) {
+      res.end(buffer);
+    } else {
+      if (!res.isChunked()) {
+        res.putHeader("Content-Length", Long.toString(length));
+      }
+      pipe(res, res::reset);
+    }
+  }
+
+  private void pipe(WriteStream<Buffer> ws, Runnable reset) {
+    synchronized (this) {
+      opening++;
+    }
+    vertx.fileSystem().open(file, new OpenOptions().setRead(true), res -> {
+      opened();
+      if (res.failed()) {
+        logger.warn("Failed to open spooled body {}: {}", file, res.cause().getMessage());
+        reset.run();
+        return;
+      }
+      AsyncFile af = res.result();
+      af.pipe().endOnFailure(false).to(ws, x -> {
+        af.close();
+        if (x.failed()) {
+          logger.warn("Failed to send spooled body {}: {}", file, x.cause().getMessage());
+          reset.run();
+        }
+      });
+    });
+  }
+
+  private void opened() {
+    boolean doDelete;
+    synchronized (this) {
+      opening--;
+      doDelete = deleted && opening == 0;
+    }
+    if (doDelete) {
+      deleteFile();
+    }
+  }
+
+  /**
+   * Remove the file of a spooled body. Streams already started will
+   * continue, as the file is open.
+   */
+  public void delete() {
+    if (file == null) {
+      return;
+    }
+    synchronized (this) {
+      if (deleted) {
+        return;
+      }
+      deleted = true;
+      if (opening > 0) {
+        return; // deleted when opened
+      }
+    }
+    deleteFile();
+  }
+
+  private void deleteFile() {
+    vertx.fileSystem().delete(file, res -> {
+      if (res.failed()) {
+        logger.warn("Failed to delete {}: {}", file, res.cause().getMessage());
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    return buffer != null ? buffer.toString() : "<" + length + " bytes in " + file + ">";
+  }
+}
@@ -1,12 +1,16 @@
 package org.folio.okapi.util;
 
 import com.codahale.metrics.Timer;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.ext.web.RoutingContext;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.ModuleInstance;
 import org.folio.okapi.common.ErrorType;
@@ -21,7 +25,9 @@ import org.folio.okapi.common.XOkapiHeaders;
  * used for Okapi's own services, without the modList. Also has lots of helpers
  * for logging, in order to get the request-id in most log messages.
  */
-@java.lang.SuppressWarnings({"squid:S1192"})
+// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
+// for request IDs, so security is not an issue
+@java.lang.SuppressWarnings({"squid:S1192", "squid:S2245"})
 public class ProxyContext {
 
   private final Logger logger = OkapiLogger.get();
@@ -32,6 +38,9 @@ public class ProxyContext {
   private Timer.Context timer;
   private Long timerId;
   private final int waitMs;
+  private long deadline; // milliseconds since epoch; 0 for none
+  private AuthHeaders permissionHeaders;
+  private int retries;
 
   // store auth filter response status code, headers, and body
   private int authRes;
@@ -40,6 +49,9 @@ public class ProxyContext {
   // store handler response status code and headers
   private int handlerRes;
   private final MultiMap handlerHeaders = MultiMap.caseInsensitiveMultiMap();
+  // requests to request-log filters, with handler called if dropped
+  private final Map<HttpClientRequest, Runnable> requestLogs = new HashMap<>();
+  private FanOut requestLogFanOut;
 
   private final Messages messages = Messages.getInstance();
 
@@ -58,20 +70,14 @@ public class ProxyContext {
     if (path == null) { // defensive coding, should always be there
       path = "";
     }
-    path = path.replaceFirst("^(/_)?(/[^/?]+).*$", "$2");
-    // when rerouting, the query appears as part of the getPath, so we kill it
-    // here with the '?'.
-    Random r = new Random();
-    StringBuilder newid = new StringBuilder();
-    newid.append(String.format("%06d", r.nextInt(1000000)));
-    newid.append(path);
+    String newid = newReqId(path);
     String curid = ctx.request().getHeader(XOkapiHeaders.REQUEST_ID);
     if (curid == null || curid.isEmpty()) {
       reqId = newid.toString();
       ctx.request().headers().add(XOkapiHeaders.REQUEST_ID, reqId);
       this.debug("Assigned new reqId " + newid);
     } else {
-      reqId = curid + ";" + newid.toString();
+      reqId = curid + ";" + newid;
       ctx.request().headers().set(XOkapiHeaders.REQUEST_ID, reqId);
       this.debug("Appended a reqId " + newid);
     }
@@ -80,13 +86,59 @@ public class ProxyContext {
     handlerRes = 0;
   }
 
+  /**
+   * Make request ID: 6 random digits followed by the first path segment.
+   * @param path request path
+   * @return request ID
+   */
+  static String newReqId(String path) {
+    String prefix = pathPrefix(path);
+    String digits = Integer.toString(ThreadLocalRandom.current().nextInt(1000000));
+    StringBuilder b = new StringBuilder(6 + prefix.length());
+    for (int i = digits.length(); i < 6; i++) {
+      b.append('0');
+    }
+    return b.append(digits).append(prefix).toString();
+  }
+
+  /**
+   * Get first path segment, skipping a leading /_ (so /_/proxy/modules gives
+   * /proxy). When rerouting, the query appears as part of the path, so the
+   * segment also ends at '?'. Same as replacing ^(/_)?(/[^/?]+).*$ with $2.
+   * @param path request path
+   * @return first segment, with leading slash; path itself if none
+   */
+  static String pathPrefix(String path) {
+    if (path.startsWith("/_/")) {
+      int end = segmentEnd(path, 2);
+      if (end > 3) {
+        return path.substring(2, end);
+      }
+    }
+    if (path.startsWith("/")) {
+      int end = segmentEnd(path, 0);
+      if (end > 1) {
+        return path.substring(0, end);
+      }
+    }
+    return path;
+  }
+
+  private static int segmentEnd(String path, int start) {
+    int i = start + 1;
+    while (i < path.length() && path.charAt(i) != '/' && path.charAt(i) != '?') {
+      i++;
+    }
+    return i;
+  }
+
   /**
    * start Dropwizard timer.
-   * @param key Dropziard key
+   * @param t Dropwizard timer
    */
-  public final void startTimer(String key) {
+  public final void startTimer(Timer t) {
     closeTimer();
-    timer = DropwizardHelper.getTimerContext(key);
+    timer = t.time();
     if (waitMs > 0) {
       timerId = ctx.vertx().setPeriodic(waitMs, res
           -> logger.warn("{} WAIT {} {} {} {}", reqId, ctx.request().remoteAddress(), tenant,
@@ -95,6 +147,42 @@ public class ProxyContext {
     }
   }
 
+  public AuthHeaders getPermissionHeaders() {
+    return permissionHeaders;
+  }
+
+  public void setPermissionHeaders(AuthHeaders permissionHeaders) {
+    this.permissionHeaders = permissionHeaders;
+  }
+
+  public int getRetries() {
+    return retries;
+  }
+
+  public void incRetries() {
+    retries++;
+  }
+
+  public long getDeadline() {
+    return deadline;
+  }
+
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * Time left until deadline.
+   * @return milliseconds left, which is 0 or negative if the deadline has
+   *     passed; Long.MAX_VALUE if there is no deadline
+   */
+  public long remainingMs() {
+    if (deadline == 0) {
+      return Long.MAX_VALUE;
+    }
+    return deadline - System.currentTimeMillis();
+  }
+
   /**
    * Stop Dropwizard timer.
    */
@@ -197,6 +285,100 @@ public class ProxyContext {
     return handlerHeaders;
   }
 
+  /**
+   * Register request to a request-log filter.
+   * @param r request
+   * @param onDrop called if the proxy drops the request, in which case the
+   *     outcome of the request must not be recorded
+   */
+  public void addRequestLog(HttpClientRequest r, Runnable onDrop) {
+    requestLogs.put(r, onDrop);
+  }
+
+  /**
+   * Set the fan-out that copies the stream to the request-log filters.
+   * @param fanOut fan-out
+   */
+  public void setRequestLogFanOut(FanOut fanOut) {
+    this.requestLogFanOut = fanOut;
+  }
+
+  /**
+   * Drop request to a request-log filter; the caller resets it.
+   * @param r request
+   */
+  public void requestLogDropped(HttpClientRequest r) {
+    Runnable onDrop = requestLogs.remove(r);
+    if (onDrop != null) {
+      onDrop.run();
+    }
+  }
+
+  /**
+   * Report outcome of request to a request-log filter.
+   * @param r request
+   * @param failed whether the request failed
+   * @return false if the request was dropped, and the outcome should be ignored
+   */
+  public boolean requestLogDone(HttpClientRequest r, boolean failed) {
+    if (requestLogs.remove(r) == null) {
+      return false;
+    }
+    if (failed && requestLogFanOut != null) {
+      requestLogFanOut.failed(r);
+    }
+    return true;
+  }
+
+  private static final String DONE_HANDLERS = "okapi.doneHandlers";
+
+  /**
+   * Done handlers of a response. Kept in the routing context, so that they
+   * are shared by all ProxyContexts of a request (a rerouted request gets a
+   * new one), and the response gets one close handler that calls them all.
+   */
+  private static class DoneHandlers {
+    private final List<Handler<Boolean>> handlers = new ArrayList<>();
+    private Boolean done;
+
+    void add(Handler<Boolean> handler) {
+      if (done != null) {
+        handler.handle(done);
+      } else {
+        handlers.add(handler);
+      }
+    }
+
+    void done(boolean ended) {
+      if (done != null) {
+        return;
+      }
+      done = ended;
+      for (Handler<Boolean> handler : handlers) {
+        handler.handle(ended);
+      }
+    }
+  }
+
+  /**
+   * Add handler that is called once when the request is done: with true when
+   * the response has been sent, with false if the connection closed before.
+   * The response has a single close handler, so code that needs to know
+   * when the connection closes must use this instead of setting its own.
+   * @param handler done handler
+   */
+  public void addDoneHandler(Handler<Boolean> handler) {
+    DoneHandlers d = ctx.get(DONE_HANDLERS);
+    if (d == null) {
+      DoneHandlers handlers = new DoneHandlers();
+      ctx.put(DONE_HANDLERS, handlers);
+      ctx.addBodyEndHandler(v -> handlers.done(true));
+      ctx.response().closeHandler(v -> handlers.done(false));
+      d = handlers;
+    }
+    d.add(handler);
+  }
+
   /**
    * Log that HTTP request has been received.
    * @param ctx routing context
@@ -249,6 +431,15 @@ public class ProxyContext {
   public void responseError(int code, String msg) {
     logResponse("okapi", msg, code);
     closeTimer();
+    if (ctx.response().ended()) {
+      return; // already responded, for example with 413
+    }
+    if (ctx.response().headWritten()) {
+      // part of a module response was sent; the client must see it fail
+      warn("Response already started; resetting connection: " + code + " " + msg);
+      ctx.response().reset();
+      return;
+    }
     HttpResponse.responseError(ctx, code, msg);
   }
 
@@ -0,0 +1,153 @@
+package org.folio.okapi.util;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import io.vertx.core.http.HttpMethod;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Metric handles for the proxy, resolved once and kept, so that a request does
+ * not build metric names or look them up in the registry. Requests are
+ * counted per tenant, method and path pattern of the routing entry, not per
+ * raw path, and modules are timed per tenant and module ID.
+ *
+ * <p>Request meters are found by routing entry first, and then by metric
+ * name, so that new routing entries for the same tenant, method and path
+ * pattern (after a module is updated) share the meter. The entries must be
+ * forgotten with {@link #clearRoutingEntries} when modules are updated.
+ *
+ * <p>The number of metrics is capped. When the cap is reached, further
+ * requests and calls are counted in the shared "proxy.other" metrics, as are
+ * requests that match no routing entry.
+ */
+public class ProxyMetrics {
+
+  private static final Logger logger = OkapiLogger.get();
+  static final String OTHER = "proxy.other";
+
+  private final int limit;
+  private final AtomicInteger count = new AtomicInteger();
+  private final AtomicBoolean limitWarned = new AtomicBoolean();
+  // tenant -> routing entry -> meter per method
+  private final Map<String, Map<RoutingEntry, AtomicReferenceArray<Meter>>> requestMeters
+      = new ConcurrentHashMap<>();
+  // metric name -> meter
+  private final Map<String, Meter> namedMeters = new ConcurrentHashMap<>();
+  // tenant -> module ID -> timer
+  private final Map<String, Map<String, Timer>> moduleTimers = new ConcurrentHashMap<>();
+  private Meter otherMeter;
+  private Timer otherTimer;
+
+  /**
+   * Create metric handles.
+   * @param limit maximum number of handles; 0 for no limit
+   */
+  public ProxyMetrics(int limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Number of metrics created, not counting the "proxy.other" metrics.
+   * @return count
+   */
+  public int size() {
+    return count.get();
+  }
+
+  private boolean reserve(String name) {
+    int n = count.getAndUpdate(v -> limit <= 0 || v < limit ? v + 1 : v);
+    if (limit <= 0 || n < limit) {
+      return true;
+    }
+    if (!limitWarned.getAndSet(true)) {
+      logger.warn("Proxy metrics limit {} reached; {} counted as {}", limit, name, OTHER);
+    }
+    return false;
+  }
+
+  /**
+   * Get meter for requests that are not counted in their own meter.
+   * @return meter
+   */
+  public synchronized Meter otherMeter() {
+    if (otherMeter == null) {
+      otherMeter = DropwizardHelper.getMeter(OTHER);
+    }
+    return otherMeter;
+  }
+
+  private synchronized Timer getOtherTimer() {
+    if (otherTimer == null) {
+      otherTimer = DropwizardHelper.getTimer(OTHER + ".module");
+    }
+    return otherTimer;
+  }
+
+  /**
+   * Get meter for requests. Metric name is
+   * proxy.&lt;tenant&gt;.&lt;method&gt;.&lt;path pattern&gt;.
+   * @param tenantId tenant
+   * @param method request method
+   * @param re routing entry of the handler
+   * @return meter
+   */
+  public Meter requestMeter(String tenantId, HttpMethod method, RoutingEntry re) {
+    Map<RoutingEntry, AtomicReferenceArray<Meter>> entries
+        = requestMeters.computeIfAbsent(tenantId, x -> new ConcurrentHashMap<>());
+    AtomicReferenceArray<Meter> meters = entries.get(re);
+    if (meters == null) {
+      meters = entries.computeIfAbsent(re,
+          x -> new AtomicReferenceArray<>(HttpMethod.values().length));
+    }
+    int i = method.ordinal();
+    Meter meter = meters.get(i);
+    if (meter != null) {
+      return meter;
+    }
+    synchronized (meters) {
+      meter = meters.get(i);
+      if (meter == null) {
+        String name = "proxy." + tenantId + "." + method + "." + re.getStaticPath();
+        meter = namedMeters.computeIfAbsent(name,
+            x -> reserve(name) ? DropwizardHelper.getMeter(name) : otherMeter());
+        meters.set(i, meter);
+      }
+    }
+    return meter;
+  }
+
+  /**
+   * Forget the routing entries of all tenants. Called when modules are
+   * updated, as the routing entries of the new modules are new objects.
+   */
+  public void clearRoutingEntries() {
+    requestMeters.clear();
+  }
+
+  /**
+   * Get timer for calls to a module. Metric name is
+   * proxy.&lt;tenant&gt;.module.&lt;module ID&gt;.
+   * @param tenantId tenant
+   * @param moduleId module ID
+   * @return timer
+   */
+  public Timer moduleTimer(String tenantId, String moduleId) {
+    Map<String, Timer> timers
+        = moduleTimers.computeIfAbsent(tenantId, x -> new ConcurrentHashMap<>());
+    Timer timer = timers.get(moduleId);
+    if (timer != null) {
+      return timer;
+    }
+    return timers.computeIfAbsent(moduleId, x -> {
+      String name = "proxy." + tenantId + ".module." + moduleId;
+      return reserve(name) ? DropwizardHelper.getTimer(name) : getOtherTimer();
+    });
+  }
+}
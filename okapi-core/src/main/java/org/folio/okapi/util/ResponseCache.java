@@ -0,0 +1,319 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.folio.okapi.common.LruCache;
+
+/**
+ * Cache of GET responses of handlers, for routing entries that enable it.
+ * Responses are cached per tenant, token, module and URI, so a response is
+ * only reused for the same client. Only 200 responses with a body no larger
+ * than the entry size limit are cached, and only if the module allows it:
+ *
+ * <ul>
+ * <li>Cache-Control no-store, or Vary *, prevents caching.</li>
+ * <li>Cache-Control max-age gives the time that a response is fresh.</li>
+ * <li>A response without max-age, or with no-cache, is cached only if it has
+ * an ETag, and must be revalidated with If-None-Match for each use.</li>
+ * <li>Vary: a response is only used for a request that has the same values
+ * for the headers listed.</li>
+ * </ul>
+ *
+ * <p>Memory is bounded by the number of entries times the entry size limit.
+ */
+public class ResponseCache {
+
+  /**
+   * Cached response.
+   */
+  public static class Entry {
+    private final int status;
+    private final MultiMap headers;
+    private final Buffer body;
+    private final String etag;
+    private final List<String> varyNames;
+    private final List<String> varyValues;
+    private final long expires;
+
+    Entry(int status, MultiMap headers, Buffer body, List<String> varyNames,
+          List<String> varyValues, long expires) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+      this.etag = headers.get("ETag");
+      this.varyNames = varyNames;
+      this.varyValues = varyValues;
+      this.expires = expires;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Response headers. Must not be modified.
+     * @return headers
+     */
+    public MultiMap getHeaders() {
+      return headers;
+    }
+
+    public Buffer getBody() {
+      return body;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public boolean isFresh() {
+      return System.currentTimeMillis() < expires;
+    }
+
+    /**
+     * Check If-None-Match of a request against the ETag of the response.
+     * @param ifNoneMatch If-None-Match value; null if absent
+     * @return true if the client has the response already
+     */
+    public boolean isNotModified(String ifNoneMatch) {
+      if (ifNoneMatch == null || etag == null) {
+        return false;
+      }
+      String weakEtag = weak(etag);
+      for (String tag : ifNoneMatch.split(",")) {
+        String t = tag.trim();
+        if (t.equals("*") || weak(t).equals(weakEtag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static String weak(String tag) {
+      return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+  }
+
+  /**
+   * Collects a response body, while it is sent to the client, and caches the
+   * response when the body is complete.
+   */
+  public class Store {
+    private final String key;
+    private final int status;
+    private final MultiMap headers;
+    private final List<String> varyNames;
+    private final List<String> varyValues;
+    private final long maxAge;
+    private final Buffer body = Buffer.buffer();
+    private boolean abandoned;
+
+    Store(String key, int status, MultiMap headers, List<String> varyNames,
+          List<String> varyValues, long maxAge) {
+      this.key = key;
+      this.status = status;
+      this.headers = headers;
+      this.varyNames = varyNames;
+      this.varyValues = varyValues;
+      this.maxAge = maxAge;
+    }
+
+    /**
+     * Add part of the body.
+     * @param data part
+     */
+    public void append(Buffer data) {
+      if (abandoned) {
+        return;
+      }
+      if (body.length() + data.length() > maxEntrySize) {
+        abandoned = true;
+        return;
+      }
+      body.appendBuffer(data);
+    }
+
+    /**
+     * Body is complete; cache the response.
+     */
+    public void end() {
+      if (!abandoned) {
+        cache.put(key, new Entry(status, headers, body, varyNames, varyValues,
+            System.currentTimeMillis() + maxAge));
+      }
+    }
+  }
+
+  private final LruCache<String, Entry> cache;
+  private final int maxEntrySize;
+
+  /**
+   * Create cache and register its metrics.
+   * @param maxSize maximum number of responses; 0 disables the cache
+   * @param maxEntrySize maximum size of a response body in bytes
+   */
+  public ResponseCache(int maxSize, int maxEntrySize) {
+    this.cache = new LruCache<>(maxSize);
+    this.maxEntrySize = maxEntrySize;
+    DropwizardHelper.registerGauge("proxy.responseCache.size", cache::size);
+    DropwizardHelper.registerGauge("proxy.responseCache.hits", cache::getHits);
+    DropwizardHelper.registerGauge("proxy.responseCache.misses", cache::getMisses);
+    DropwizardHelper.registerGauge("proxy.responseCache.evictions", cache::getEvictions);
+  }
+
+  public boolean isEnabled() {
+    return cache.getMaxSize() > 0;
+  }
+
+  /**
+   * Make cache key for a request.
+   * @param tenantId tenant
+   * @param token X-Okapi-Token of the request; null if none
+   * @param moduleId handler module
+   * @param uri request URI
+   * @param path request path, without query
+   * @return key
+   */
+  public static String key(String tenantId, String token, String moduleId, String uri,
+                           String path) {
+    return tenantId + " " + AuthCache.digest(token, moduleId, uri) + " " + path;
+  }
+
+  static List<String> varyNames(String vary) {
+    List<String> names = new ArrayList<>();
+    if (vary != null) {
+      for (String name : vary.split(",")) {
+        String n = name.trim();
+        if (!n.isEmpty()) {
+          names.add(n);
+        }
+      }
+    }
+    return names;
+  }
+
+  static List<String> varyValues(List<String> names, MultiMap reqHeaders) {
+    List<String> values = new ArrayList<>(names.size());
+    for (String name : names) {
+      values.add(reqHeaders.get(name));
+    }
+    return values;
+  }
+
+  /**
+   * Get max-age of a response.
+   * @param headers response headers
+   * @return milliseconds that the response is fresh; -1 if it must not be cached
+   */
+  static long maxAge(MultiMap headers) {
+    CacheControl cc = CacheControl.parse(headers.get("Cache-Control"));
+    if (cc.isNoStore() || varyNames(headers.get("Vary")).contains("*")) {
+      return -1;
+    }
+    long maxAge = cc.isNoCache() ? 0 : Math.max(0, cc.getMaxAge() * 1000);
+    if (maxAge == 0 && headers.get("ETag") == null) {
+      return -1;
+    }
+    return maxAge;
+  }
+
+  private static MultiMap copyHeaders(MultiMap headers) {
+    MultiMap copy = MultiMap.caseInsensitiveMultiMap().setAll(headers);
+    copy.remove("Content-Length");
+    copy.remove("Transfer-Encoding");
+    copy.remove("Connection");
+    copy.remove("Keep-Alive");
+    return copy;
+  }
+
+  /**
+   * Get cached response for a request. A response that is not fresh may be
+   * returned; it must be revalidated.
+   * @param key key from {@link #key}
+   * @param reqHeaders request headers, for Vary
+   * @return response; null if none
+   */
+  public Entry get(String key, MultiMap reqHeaders) {
+    Entry e = cache.get(key);
+    if (e == null || !Objects.equals(e.varyValues, varyValues(e.varyNames, reqHeaders))) {
+      return null;
+    }
+    return e;
+  }
+
+  /**
+   * Start storing a response, if it may be cached.
+   * @param key key from {@link #key}
+   * @param status response status
+   * @param headers response headers
+   * @param reqHeaders request headers, for Vary
+   * @return store for the body; null if the response is not cached
+   */
+  public Store store(String key, int status, MultiMap headers, MultiMap reqHeaders) {
+    long maxAge = maxAge(headers);
+    if (status != 200 || maxAge < 0) {
+      return null;
+    }
+    List<String> varyNames = varyNames(headers.get("Vary"));
+    return new Store(key, status, copyHeaders(headers), varyNames,
+        varyValues(varyNames, reqHeaders), maxAge);
+  }
+
+  /**
+   * Update a response that the module found not modified (304).
+   * @param key key from {@link #key}
+   * @param e cached response
+   * @param headers headers of the 304 response
+   * @param reqHeaders request headers, for Vary
+   * @return response with updated headers, to be used for the request
+   */
+  public Entry revalidated(String key, Entry e, MultiMap headers, MultiMap reqHeaders) {
+    MultiMap updated = MultiMap.caseInsensitiveMultiMap().setAll(e.headers);
+    for (String name : new String[] {"Cache-Control", "Date", "ETag", "Expires", "Vary"}) {
+      if (headers.contains(name)) {
+        updated.set(name, headers.getAll(name));
+      }
+    }
+    long maxAge = maxAge(updated);
+    List<String> varyNames = varyNames(updated.get("Vary"));
+    Entry n = new Entry(e.status, updated, e.body, varyNames,
+        varyValues(varyNames, reqHeaders), System.currentTimeMillis() + Math.max(0, maxAge));
+    if (maxAge < 0) {
+      cache.remove(key);
+    } else {
+      cache.put(key, n);
+    }
+    return n;
+  }
+
+  /**
+   * Forget responses for a path, after a change through another method.
+   * @param tenantId tenant
+   * @param path request path, without query
+   */
+  public void invalidate(String tenantId, String path) {
+    String prefix = tenantId + " ";
+    String suffix = " " + path;
+    cache.removeIf(k -> k.startsWith(prefix) && k.endsWith(suffix));
+  }
+
+  /**
+   * Forget responses for a tenant.
+   * @param tenantId tenant
+   */
+  public void removeTenant(String tenantId) {
+    String prefix = tenantId + " ";
+    cache.removeIf(k -> k.startsWith(prefix));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+}
@@ -0,0 +1,60 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries, or other extra calls like hedges, at a percentage of
+ * requests. Each request deposits the percentage of a token, and each retry
+ * takes a whole token. The balance is capped, so that retries come in
+ * bursts of limited size after quiet periods. A new budget has a few tokens,
+ * so that a lightly used node can retry too.
+ */
+public class RetryBudget {
+
+  static final double MAX_BALANCE = 100.0;
+  static final double INITIAL_BALANCE = 10.0;
+
+  private final double ratio;
+  private double balance = INITIAL_BALANCE;
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong exhausted = new AtomicLong();
+
+  /**
+   * Create budget.
+   * @param percent retries per 100 requests
+   */
+  public RetryBudget(int percent) {
+    this.ratio = Math.max(0, percent) / 100.0;
+  }
+
+  /**
+   * Count a request.
+   */
+  public synchronized void request() {
+    balance = Math.min(MAX_BALANCE, balance + ratio);
+  }
+
+  /**
+   * Take a retry from the budget.
+   * @return true if the retry may be made; false if the budget is exhausted
+   */
+  public boolean tryRetry() {
+    synchronized (this) {
+      if (balance >= 1.0) {
+        balance -= 1.0;
+        retries.incrementAndGet();
+        return true;
+      }
+    }
+    exhausted.incrementAndGet();
+    return false;
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  public long getExhausted() {
+    return exhausted.get();
+  }
+}
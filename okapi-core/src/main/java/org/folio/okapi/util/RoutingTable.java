@@ -0,0 +1,247 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+
+/**
+ * Compiled routing table for the modules enabled for one tenant.
+ *
+ * <p>Routing entries are kept in a trie of path segments, one trie for each
+ * HTTP method (and one for entries that match all methods). An entry is
+ * placed at the node for the literal segments that begin its path (pattern).
+ * A lookup walks the segments of the URI, so only entries that share a
+ * prefix with the URI are matched with {@link RoutingEntry#match}. The table
+ * is immutable once built.
+ */
+public class RoutingTable {
+
+  /**
+   * A routing entry of a module.
+   */
+  public static class Entry {
+    private final int seq;
+    private final int moduleNo;
+    private final ModuleDescriptor md;
+    private final RoutingEntry re;
+    private final boolean handler;
+
+    Entry(int seq, int moduleNo, ModuleDescriptor md, RoutingEntry re, boolean handler) {
+      this.seq = seq;
+      this.moduleNo = moduleNo;
+      this.md = md;
+      this.re = re;
+      this.handler = handler;
+    }
+
+    public ModuleDescriptor getModuleDescriptor() {
+      return md;
+    }
+
+    /**
+     * Position of the entry in the table; identifies the entry within the
+     * table.
+     */
+    public int getSeq() {
+      return seq;
+    }
+
+    public RoutingEntry getRoutingEntry() {
+      return re;
+    }
+
+    /**
+     * Whether this is a handler (proxy or multiple interface) entry.
+     * @return true for handler; false for filter
+     */
+    public boolean isHandler() {
+      return handler;
+    }
+
+    /**
+     * Position of the module in list of modules the table was built from.
+     */
+    public int getModuleNo() {
+      return moduleNo;
+    }
+  }
+
+  private static class Node {
+    final Map<String, Node> children = new HashMap<>();
+    final List<Entry> entries = new ArrayList<>();
+  }
+
+  private static final String ALL_METHODS = "*";
+  private static final Comparator<Entry> SEQ_ORDER = Comparator.comparingInt(e -> e.seq);
+
+  private final List<ModuleDescriptor> modules;
+  private final Map<String, Node> tries = new HashMap<>();
+  private final Map<String, List<Entry>> multiEntries = new HashMap<>();
+
+  /**
+   * Build routing table.
+   * @param modules enabled modules; the order defines the order of lookup results
+   */
+  public RoutingTable(List<ModuleDescriptor> modules) {
+    this.modules = new ArrayList<>(modules);
+    int seq = 0;
+    int moduleNo = 0;
+    for (ModuleDescriptor md : this.modules) {
+      for (RoutingEntry re : md.getProxyRoutingEntries()) {
+        add(new Entry(seq++, moduleNo, md, re, true));
+      }
+      List<Entry> multi = new ArrayList<>();
+      for (RoutingEntry re : md.getMultiRoutingEntries()) {
+        multi.add(new Entry(seq++, moduleNo, md, re, true));
+      }
+      multiEntries.put(md.getId(), multi);
+      for (RoutingEntry re : md.getFilterRoutingEntries()) {
+        add(new Entry(seq++, moduleNo, md, re, false));
+      }
+      moduleNo++;
+    }
+  }
+
+  /**
+   * Check whether table was built for the given modules.
+   * @param enabledModules module list, as returned from ModuleManager
+   * @return true if same module descriptors in same order
+   */
+  public boolean isFor(List<ModuleDescriptor> enabledModules) {
+    if (enabledModules.size() != modules.size()) {
+      return false;
+    }
+    int i = 0;
+    for (ModuleDescriptor md : enabledModules) {
+      if (md != modules.get(i++)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void add(Entry e) {
+    String[] methods = e.re.getMethods();
+    if (methods == null) {
+      return; // never matches
+    }
+    Set<String> keys = new LinkedHashSet<>();
+    for (String m : methods) {
+      if (ALL_METHODS.equals(m)) {
+        keys.clear();
+        keys.add(ALL_METHODS);
+        break;
+      }
+      keys.add(m);
+    }
+    List<String> segments = prefixSegments(e.re);
+    for (String key : keys) {
+      Node node = tries.computeIfAbsent(key, x -> new Node());
+      for (String segment : segments) {
+        node = node.children.computeIfAbsent(segment, x -> new Node());
+      }
+      node.entries.add(e);
+    }
+  }
+
+  /**
+   * Return the complete literal path segments that every URI matched by the
+   * routing entry starts with.
+   */
+  static List<String> prefixSegments(RoutingEntry re) {
+    String p = re.getPathPattern();
+    boolean exact = p != null;
+    if (p == null) {
+      p = re.getPath(); // prefix match
+    }
+    if (p == null) {
+      return Collections.emptyList();
+    }
+    int end = p.length();
+    for (int i = 0; i < p.length(); i++) {
+      char c = p.charAt(i);
+      if (c == '{' || c == '*') {
+        end = i;
+        exact = false;
+        break;
+      }
+    }
+    if (!exact) {
+      // last segment is incomplete; only use those before it
+      end = end > 0 ? p.lastIndexOf('/', end - 1) : -1;
+      if (end <= 0) {
+        return Collections.emptyList();
+      }
+    }
+    List<String> segments = new ArrayList<>();
+    int i = p.startsWith("/") ? 1 : 0;
+    while (i <= end) {
+      int j = p.indexOf('/', i);
+      if (j == -1 || j > end) {
+        j = end;
+      }
+      segments.add(p.substring(i, j));
+      i = j + 1;
+    }
+    return segments;
+  }
+
+  private static void collect(Node node, String uri, String method, List<Entry> found) {
+    final int len = RoutingEntry.cutUri(uri);
+    int i = uri.startsWith("/") ? 1 : 0;
+    while (node != null) {
+      for (Entry e : node.entries) {
+        if (e.re.match(uri, method)) {
+          found.add(e);
+        }
+      }
+      if (i > len) {
+        break;
+      }
+      int j = uri.indexOf('/', i);
+      if (j == -1 || j > len) {
+        j = len;
+      }
+      node = node.children.get(uri.substring(i, j));
+      i = j + 1;
+    }
+  }
+
+  /**
+   * Find routing entries that match a request.
+   *
+   * <p>The result is in module order. For each module, handlers come before
+   * filters, and entries are in the order of the module descriptor.
+   * @param uri request URI
+   * @param method HTTP method
+   * @param moduleId if non-null, only handlers from the multiple interfaces of
+   *     this module are considered (X-Okapi-Module-Id); if null, handlers
+   *     from proxy interfaces of all modules.
+   * @return matching entries
+   */
+  public List<Entry> lookup(String uri, String method, String moduleId) {
+    List<Entry> found = new ArrayList<>();
+    collect(tries.get(method), uri, method, found);
+    collect(tries.get(ALL_METHODS), uri, method, found);
+    if (moduleId != null) {
+      found.removeIf(Entry::isHandler);
+      List<Entry> multi = multiEntries.get(moduleId);
+      if (multi != null) {
+        for (Entry e : multi) {
+          if (e.re.match(uri, method)) {
+            found.add(e);
+          }
+        }
+      }
+    }
+    found.sort(SEQ_ORDER);
+    return found;
+  }
+}
@@ -0,0 +1,205 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical concurrent requests, so that one upstream call (the
+ * leader) serves them all. The other requests (waiters) get a copy of the
+ * buffered response of the leader. If the response of the leader is larger
+ * than the body limit or fails, the waiters get no response and must make
+ * their own calls. The number of waiters for a call is limited; further
+ * requests make their own calls.
+ */
+public class SingleFlight {
+
+  /**
+   * Response of the leader.
+   */
+  public static class Response {
+    private final int status;
+    private final MultiMap headers;
+    private final Buffer body;
+
+    Response(int status, MultiMap headers, Buffer body) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Response headers. Must not be modified.
+     * @return headers
+     */
+    public MultiMap getHeaders() {
+      return headers;
+    }
+
+    public Buffer getBody() {
+      return body;
+    }
+  }
+
+  private static class Waiter {
+    private final Context context;
+    private final Handler<Response> handler;
+
+    Waiter(Context context, Handler<Response> handler) {
+      this.context = context;
+      this.handler = handler;
+    }
+
+    void handle(Response response) {
+      if (context == null) {
+        handler.handle(response);
+      } else {
+        context.runOnContext(x -> handler.handle(response));
+      }
+    }
+  }
+
+  /**
+   * Upstream call of a leader. Must be ended or failed.
+   */
+  public class Flight {
+    private final String key;
+    private final List<Waiter> waiters = new ArrayList<>();
+    private int status;
+    private MultiMap headers;
+    private final Buffer body = Buffer.buffer();
+    private boolean done;
+
+    Flight(String key) {
+      this.key = key;
+    }
+
+    /**
+     * Set response status and headers.
+     * @param status HTTP status
+     * @param headers response headers
+     */
+    public void response(int status, MultiMap headers) {
+      this.status = status;
+      this.headers = MultiMap.caseInsensitiveMultiMap().setAll(headers);
+      this.headers.remove("Content-Length");
+      this.headers.remove("Transfer-Encoding");
+    }
+
+    /**
+     * Add part of the response body.
+     * @param data part
+     */
+    public void append(Buffer data) {
+      if (done) {
+        return;
+      }
+      if (body.length() + data.length() > maxBodySize) {
+        finish(null);
+        return;
+      }
+      body.appendBuffer(data);
+    }
+
+    /**
+     * Response is complete; pass it to the waiters.
+     */
+    public void end() {
+      finish(headers == null ? null : new Response(status, headers, body));
+    }
+
+    /**
+     * Upstream call failed; waiters must make their own calls.
+     */
+    public void fail() {
+      finish(null);
+    }
+
+    private void finish(Response response) {
+      List<Waiter> list;
+      synchronized (flights) {
+        if (done) {
+          return;
+        }
+        done = true;
+        flights.remove(key, this);
+        list = new ArrayList<>(waiters);
+      }
+      for (Waiter w : list) {
+        w.handle(response);
+      }
+    }
+  }
+
+  private final int maxWaiters;
+  private final int maxBodySize;
+  private final Map<String, Flight> flights = new HashMap<>();
+
+  /**
+   * Create request coalescing.
+   * @param maxWaiters maximum number of requests waiting for one leader
+   * @param maxBodySize maximum response body size in bytes that is shared
+   */
+  public SingleFlight(int maxWaiters, int maxBodySize) {
+    this.maxWaiters = maxWaiters;
+    this.maxBodySize = maxBodySize;
+  }
+
+  /**
+   * Make key for a request.
+   * @param tenantId tenant
+   * @param token X-Okapi-Token of the request; null if none
+   * @param moduleId handler module
+   * @param uri request URI
+   * @param accept Accept header of the request; null if none
+   * @return key
+   */
+  public static String key(String tenantId, String token, String moduleId, String uri,
+                           String accept) {
+    return tenantId + " " + AuthCache.digest(token, moduleId, uri, accept);
+  }
+
+  /**
+   * Start a request. If an identical request is in flight, and it does not
+   * have too many waiters, the request waits for its response.
+   * @param key key from {@link #key}
+   * @param waiter called, on the current Vert.x context, with the shared
+   *     response; with null if the request must make its own call
+   * @return flight if the request must make the call; null if it waits
+   */
+  public Flight start(String key, Handler<Response> waiter) {
+    synchronized (flights) {
+      Flight flight = flights.get(key);
+      if (flight == null) {
+        flight = new Flight(key);
+        flights.put(key, flight);
+        return flight;
+      }
+      if (flight.waiters.size() < maxWaiters) {
+        flight.waiters.add(new Waiter(Vertx.currentContext(), waiter));
+        return null;
+      }
+    }
+    return new Flight(key); // not registered; has no waiters
+  }
+
+  /**
+   * Number of calls in flight, for metrics.
+   * @return count
+   */
+  public int size() {
+    synchronized (flights) {
+      return flights.size();
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package org.folio.okapi.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.folio.okapi.bean.TenantLimits;
+
+/**
+ * Enforces {@link TenantLimits}: a token bucket for the request rate and a
+ * count of requests in flight, per key (tenant, or tenant and module). The
+ * limits are passed on each request, so changes to a tenant take effect
+ * immediately.
+ */
+public class TenantLimiter {
+
+  /**
+   * Outcome of {@link #acquire}. A granted permit must be released when the
+   * request is done.
+   */
+  public static class Permit {
+    private final State state;
+    private final long retryAfter;
+    private boolean released;
+
+    Permit(State state, long retryAfter) {
+      this.state = state;
+      this.retryAfter = retryAfter;
+    }
+
+    public boolean isGranted() {
+      return retryAfter == 0;
+    }
+
+    /**
+     * Get time until the request may be retried.
+     * @return seconds; 0 if granted
+     */
+    public long getRetryAfter() {
+      return retryAfter;
+    }
+
+    /**
+     * Release a granted permit. May be called more than once.
+     */
+    public void release() {
+      synchronized (this) {
+        if (released || state == null) {
+          return;
+        }
+        released = true;
+      }
+      synchronized (state) {
+        state.inFlight--;
+      }
+    }
+  }
+
+  private static final Permit GRANTED = new Permit(null, 0);
+
+  static class State {
+    double tokens = -1;
+    long last;
+    int inFlight;
+  }
+
+  private final Map<String, State> states = new ConcurrentHashMap<>();
+  private final long inFlightRetryAfter;
+  private final AtomicLong rejected = new AtomicLong();
+  private LongSupplier clock = System::currentTimeMillis;
+
+  /**
+   * Create limiter and register its metrics.
+   * @param inFlightRetryAfter Retry-After in seconds for requests that exceed
+   *     the in-flight limit
+   */
+  public TenantLimiter(long inFlightRetryAfter) {
+    this.inFlightRetryAfter = Math.max(1, inFlightRetryAfter);
+    DropwizardHelper.registerGauge("proxy.tenantLimits.rejected", rejected::get);
+    DropwizardHelper.registerGauge("proxy.tenantLimits.keys", states::size);
+  }
+
+  void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Make key for a tenant and module.
+   * @param tenantId tenant
+   * @param product module product; null for the tenant as a whole
+   * @return key
+   */
+  public static String key(String tenantId, String product) {
+    return product == null ? tenantId : tenantId + " " + product;
+  }
+
+  /**
+   * Admit a request, if the limits allow it.
+   * @param key key from {@link #key}
+   * @param limits limits; null for none
+   * @return permit
+   */
+  public Permit acquire(String key, TenantLimits limits) {
+    if (limits == null) {
+      return GRANTED;
+    }
+    Double rate = limits.getRateLimit();
+    boolean limitRate = rate != null && rate > 0;
+    Integer maxInFlight = limits.getMaxInFlight();
+    boolean limitInFlight = maxInFlight != null && maxInFlight > 0;
+    if (!limitRate && !limitInFlight) {
+      return GRANTED;
+    }
+    State state = states.computeIfAbsent(key, k -> new State());
+    synchronized (state) {
+      if (limitRate) {
+        long now = clock.getAsLong();
+        Integer burst = limits.getRateBurst();
+        double capacity = burst != null && burst > 0 ? burst : Math.ceil(rate);
+        if (state.tokens < 0) {
+          state.tokens = capacity;
+        } else {
+          state.tokens = Math.min(capacity, state.tokens + (now - state.last) * rate / 1000);
+        }
+        state.last = now;
+        if (state.tokens < 1) {
+          rejected.incrementAndGet();
+          return new Permit(null, Math.max(1, (long) Math.ceil((1 - state.tokens) / rate)));
+        }
+      }
+      if (limitInFlight && state.inFlight >= maxInFlight) {
+        rejected.incrementAndGet();
+        return new Permit(null, inFlightRetryAfter);
+      }
+      if (limitRate) {
+        state.tokens--;
+      }
+      state.inFlight++;
+    }
+    return new Permit(state, 0);
+  }
+
+  /**
+   * Number of requests in flight for a key.
+   * @param key key from {@link #key}
+   * @return count
+   */
+  public int getInFlight(String key) {
+    State state = states.get(key);
+    if (state == null) {
+      return 0;
+    }
+    synchronized (state) {
+      return state.inFlight;
+    }
+  }
+}
@@ -9,10 +9,13 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.Map;
+import java.util.TreeMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.HttpClientLegacy;
 import org.folio.okapi.common.OkapiLogger;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,17 +43,34 @@ public class OkapiPerformance {
   private static final String LS = System.lineSeparator();
   private int port = 9230;
 
+  // req/sec for the repeatPost phase, by number of proxy instances
+  private static final Map<Integer, Long> throughput = new TreeMap<>();
+  private int proxyInstances;
+
   @Before
   public void setUp(TestContext context) {
     vertx = Vertx.vertx();
+    httpClient = vertx.createHttpClient();
+  }
+
+  private void deployOkapi(TestContext context, int instances) {
+    proxyInstances = instances;
     JsonObject conf = new JsonObject()
-      .put("port", Integer.toString(port));
+      .put("port", Integer.toString(port))
+      .put("proxyInstances", Integer.toString(instances));
 
     DeploymentOptions opt = new DeploymentOptions()
             .setConfig(conf);
     vertx.deployVerticle(MainVerticle.class.getName(),
-            opt, context.asyncAssertSuccess());
-    httpClient = vertx.createHttpClient();
+            opt, context.asyncAssertSuccess(x -> declareAuth(context)));
+  }
+
+  @AfterClass
+  public static void reportThroughput() {
+    Logger log = OkapiLogger.get();
+    for (Map.Entry<Integer, Long> e : throughput.entrySet()) {
+      log.info("proxyInstances {}: {} req/sec", e.getKey(), e.getValue());
+    }
   }
 
   @After
@@ -108,7 +128,13 @@ public class OkapiPerformance {
   @Test(timeout = 600000)
   public void testSample(TestContext context) {
     async = context.async();
-    declareAuth(context);
+    deployOkapi(context, 1);
+  }
+
+  @Test(timeout = 600000)
+  public void testSampleProxyInstances(TestContext context) {
+    async = context.async();
+    deployOkapi(context, Runtime.getRuntime().availableProcessors());
   }
 
   public void declareAuth(TestContext context) {
@@ -418,7 +444,10 @@ public class OkapiPerformance {
     if (cnt == max) {
       if (--repeatPostRunning == 0) {
         long timeDiff = (System.nanoTime() - startTime) / 1000000;
-        logger.info("repeatPost " + timeDiff + " elapsed ms. " + 1000 * max * parallels / timeDiff + " req/sec");
+        final long reqSec = 1000L * max * parallels / Math.max(timeDiff, 1);
+        logger.info("repeatPost " + timeDiff + " elapsed ms. " + reqSec + " req/sec"
+            + " proxyInstances " + proxyInstances);
+        throughput.put(proxyInstances, reqSec);
         vertx.setTimer(1, x -> deleteTenant(context));
       }
       return;
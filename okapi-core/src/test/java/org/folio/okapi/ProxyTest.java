@@ -8,6 +8,7 @@ import static io.restassured.RestAssured.given;
 import io.restassured.response.Response;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -15,6 +16,7 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.ext.unit.TestContext;
@@ -28,6 +30,9 @@ import io.vertx.ext.unit.Async;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
@@ -53,7 +58,10 @@ public class ProxyTest {
   private final int portPre = 9236;
   private final int portPost = 9237;
   private final int portEdge = 9238;
+  private final int portModule1 = 9242;
+  private final int portModule2 = 9243;
   private final int port = 9230;
+  private String okapiDeploymentId;
   private Buffer preBuffer;
   private Buffer postBuffer;
   private MultiMap postHandlerHeaders;
@@ -254,16 +262,193 @@ public class ProxyTest {
   }
 
   Future<Void> startOkapi() {
+    return startOkapi(new JsonObject());
+  }
+
+  Future<Void> startOkapi(JsonObject conf) {
     DeploymentOptions opt = new DeploymentOptions()
         .setConfig(new JsonObject()
             .put("loglevel", "info")
             .put("port", Integer.toString(port))
-            .put("httpCache", true));
+            .put("httpCache", true)
+            .mergeIn(conf));
     Promise<Void> promise = Promise.promise();
-    vertx.deployVerticle(MainVerticle.class.getName(), opt, x -> promise.handle(x.mapEmpty()));
+    vertx.deployVerticle(MainVerticle.class.getName(), opt, x -> {
+      if (x.succeeded()) {
+        okapiDeploymentId = x.result();
+      }
+      promise.handle(x.mapEmpty());
+    });
     return promise.future();
   }
 
+  /**
+   * Restart Okapi with more configuration, for proxy features that are off by
+   * default. Must be called before modules and tenants are added.
+   */
+  private void restartOkapi(TestContext context, JsonObject conf) {
+    Async async = context.async();
+    vertx.undeploy(okapiDeploymentId, context.asyncAssertSuccess(x ->
+        startOkapi(conf).setHandler(context.asyncAssertSuccess(y -> async.complete()))));
+    async.await();
+  }
+
+  /**
+   * Start a module instance that is not launched by Okapi.
+   */
+  private HttpServer startModule(TestContext context, int modulePort,
+                                 Handler<RoutingContext> handler) {
+    Router router = Router.router(vertx);
+    router.routeWithRegex("/.*").handler(handler);
+    HttpServer server = vertx.createHttpServer().requestHandler(router);
+    Async async = context.async();
+    server.listen(modulePort, context.asyncAssertSuccess(x -> async.complete()));
+    async.await();
+    return server;
+  }
+
+  /**
+   * Add module with one handler, and register its instances at ports.
+   */
+  private void addModule(String moduleId, JsonObject handler, int... modulePorts) {
+    handler.put("permissionsRequired", new JsonArray());
+    JsonObject md = new JsonObject()
+        .put("id", moduleId)
+        .put("provides", new JsonArray().add(new JsonObject()
+            .put("id", moduleId.replaceFirst("-[0-9.]*$", ""))
+            .put("version", "1.0")
+            .put("handlers", new JsonArray().add(handler))));
+    given()
+        .header("Content-Type", "application/json")
+        .body(md.encode()).post("/_/proxy/modules")
+        .then().statusCode(201);
+    for (int modulePort : modulePorts) {
+      JsonObject dd = new JsonObject()
+          .put("instId", moduleId + "-" + modulePort)
+          .put("srvcId", moduleId)
+          .put("url", "http://localhost:" + modulePort);
+      given()
+          .header("Content-Type", "application/json")
+          .body(dd.encode()).post("/_/discovery/modules")
+          .then().statusCode(201);
+    }
+  }
+
+  /**
+   * Add tenant and enable modules for it.
+   */
+  private void addTenant(JsonObject td, String... moduleIds) {
+    given()
+        .header("Content-Type", "application/json")
+        .body(td.encode()).post("/_/proxy/tenants")
+        .then().statusCode(201);
+    for (String moduleId : moduleIds) {
+      given()
+          .header("Content-Type", "application/json")
+          .body(new JsonObject().put("id", moduleId).encode())
+          .post("/_/proxy/tenants/" + td.getString("id") + "/modules")
+          .then().statusCode(201);
+    }
+  }
+
+  private static String content(int length) {
+    return new String(new char[length]).replace('\0', 'x');
+  }
+
+  private volatile int moduleCalls;
+
+  /**
+   * Handler that responds with the number of calls so far, so that a test
+   * can tell whether a response came from the module.
+   */
+  private void cachedHandle(RoutingContext ctx) {
+    moduleCalls++;
+    String body = Integer.toString(moduleCalls);
+    ctx.request().endHandler(x -> {
+      if (!HttpMethod.GET.equals(ctx.request().method())) {
+        ctx.response().setStatusCode(204).end();
+      } else if (ctx.request().path().equals("/cached/etag")) {
+        ctx.response().putHeader("ETag", "\"v1\"");
+        if ("\"v1\"".equals(ctx.request().getHeader("If-None-Match"))) {
+          ctx.response().setStatusCode(304).end();
+        } else {
+          ctx.response().end(body);
+        }
+      } else {
+        ctx.response().putHeader("Cache-Control", "max-age=60");
+        ctx.response().putHeader("Vary", "Accept-Language");
+        ctx.response().end(body);
+      }
+    });
+  }
+
+  private volatile boolean failNextCall;
+
+  /**
+   * Handler that responds slowly, so that requests overlap. Responds with the
+   * number of the call, or fails it by closing the connection.
+   */
+  private void slowHandle(RoutingContext ctx) {
+    moduleCalls++;
+    String body = ctx.request().path().endsWith("/large")
+        ? content(200) : Integer.toString(moduleCalls);
+    boolean fail = failNextCall;
+    failNextCall = false;
+    ctx.request().endHandler(x -> vertx.setTimer(300, id -> {
+      if (fail) {
+        ctx.request().connection().close();
+      } else {
+        ctx.response().end(body);
+      }
+    }));
+  }
+
+  /**
+   * Start a GET request that adds the status and body of its response to a
+   * list. The caller adds headers and ends the request.
+   */
+  private HttpClientRequest getRequest(String path, List<String> results, Async async) {
+    return HttpClientLegacy.get(httpClient, port, "localhost", path, res ->
+        res.bodyHandler(body -> {
+          synchronized (results) {
+            results.add(res.statusCode() + " " + body);
+          }
+          async.countDown();
+        }));
+  }
+
+  /**
+   * Make identical GET requests at the same time.
+   * @return status and body of each response, sorted
+   */
+  private List<String> getConcurrently(TestContext context, int n, String tenant, String path) {
+    List<String> results = new ArrayList<>();
+    Async async = context.async(n);
+    for (int i = 0; i < n; i++) {
+      getRequest(path, results, async).putHeader("X-Okapi-Tenant", tenant).end();
+    }
+    async.await();
+    Collections.sort(results);
+    return results;
+  }
+
+  /**
+   * Handler that responds with the status code given by the last path
+   * segment.
+   */
+  private void statusHandle(RoutingContext ctx) {
+    moduleCalls++;
+    String path = ctx.request().path();
+    int status = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+    ctx.request().endHandler(x -> ctx.response().setStatusCode(status).end("module"));
+  }
+
+  private void echoHandle(RoutingContext ctx) {
+    Buffer buf = Buffer.buffer();
+    ctx.request().handler(buf::appendBuffer);
+    ctx.request().endHandler(x -> ctx.response().end(buf));
+  }
+
   @Before
   public void setUp(TestContext context) {
     vertx = Vertx.vertx();
@@ -3406,4 +3591,352 @@ public class ProxyTest {
         c.getLastReport().isEmpty());
   }
 
+  @Test
+  public void testMaxBodySize(TestContext context) {
+    restartOkapi(context, new JsonObject().put("proxyMaxBodySize", "1000"));
+    startModule(context, portModule1, this::echoHandle);
+    addModule("mod-echo-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("POST"))
+        .put("pathPattern", "/echo"), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-echo-1.0.0");
+
+    given()
+        .header("X-Okapi-Tenant", "roskilde")
+        .body(content(1000)).post("/echo")
+        .then().statusCode(200).body(equalTo(content(1000)));
+
+    // rejected by Content-Length, before the module is called
+    given()
+        .header("X-Okapi-Tenant", "roskilde")
+        .body(content(1001)).post("/echo")
+        .then().statusCode(413).body(equalTo("Request body exceeds 1000 bytes"));
+
+    // chunked: rejected as the body arrives, and the response is written in full
+    Async async = context.async();
+    HttpClientRequest req = HttpClientLegacy.post(httpClient, port, "localhost", "/echo",
+        res -> {
+          context.assertEquals(413, res.statusCode());
+          res.bodyHandler(body -> {
+            context.assertEquals("Request body exceeds 1000 bytes", body.toString());
+            async.complete();
+          });
+        });
+    req.putHeader("X-Okapi-Tenant", "roskilde");
+    req.setChunked(true);
+    for (int i = 0; i < 4; i++) {
+      req.write(content(500));
+    }
+    req.end();
+    async.await();
+  }
+
+  @Test
+  public void testResponseCache(TestContext context) {
+    restartOkapi(context, new JsonObject().put("responseCacheSize", "100"));
+    moduleCalls = 0;
+    startModule(context, portModule1, this::cachedHandle);
+    addModule("mod-cache-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET").add("PUT"))
+        .put("pathPattern", "/cached/{id}")
+        .put("responseCache", true), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-cache-1.0.0");
+    addTenant(new JsonObject().put("id", "kalundborg"), "mod-cache-1.0.0");
+
+    given().header("X-Okapi-Tenant", "roskilde").get("/cached/a")
+        .then().statusCode(200).body(equalTo("1"));
+    // hit
+    given().header("X-Okapi-Tenant", "roskilde").get("/cached/a")
+        .then().statusCode(200).body(equalTo("1"));
+    // not shared with other tokens or tenants
+    given().header("X-Okapi-Tenant", "roskilde").header("X-Okapi-Token", "a.b.c")
+        .get("/cached/a")
+        .then().statusCode(200).body(equalTo("2"));
+    given().header("X-Okapi-Tenant", "kalundborg").get("/cached/a")
+        .then().statusCode(200).body(equalTo("3"));
+    given().header("X-Okapi-Tenant", "roskilde").get("/cached/a")
+        .then().statusCode(200).body(equalTo("1"));
+
+    // Vary: Accept-Language
+    given().header("X-Okapi-Tenant", "roskilde").header("Accept-Language", "da")
+        .get("/cached/a")
+        .then().statusCode(200).body(equalTo("4"));
+    given().header("X-Okapi-Tenant", "roskilde").header("Accept-Language", "da")
+        .get("/cached/a")
+        .then().statusCode(200).body(equalTo("4"));
+
+    // PUT to the same path removes the cached responses
+    given().header("X-Okapi-Tenant", "roskilde").body("x").put("/cached/a")
+        .then().statusCode(204);
+    Assert.assertEquals(5, moduleCalls);
+    given().header("X-Okapi-Tenant", "roskilde").header("Accept-Language", "da")
+        .get("/cached/a")
+        .then().statusCode(200).body(equalTo("6"));
+
+    // ETag without max-age: revalidated with If-None-Match for each use
+    given().header("X-Okapi-Tenant", "roskilde").get("/cached/etag")
+        .then().statusCode(200).header("ETag", "\"v1\"").body(equalTo("7"));
+    given().header("X-Okapi-Tenant", "roskilde").get("/cached/etag")
+        .then().statusCode(200).header("ETag", "\"v1\"").body(equalTo("7"));
+    Assert.assertEquals(8, moduleCalls);
+    given().header("X-Okapi-Tenant", "roskilde").header("If-None-Match", "\"v1\"")
+        .get("/cached/etag")
+        .then().statusCode(304);
+    Assert.assertEquals(9, moduleCalls);
+  }
+
+  @Test
+  public void testCoalesce(TestContext context) {
+    restartOkapi(context, new JsonObject().put("coalesceMaxBodySize", "100"));
+    moduleCalls = 0;
+    startModule(context, portModule1, this::slowHandle);
+    addModule("mod-slow-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/coalesce/{id}")
+        .put("coalesce", true), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-slow-1.0.0");
+
+    // one call for all
+    Assert.assertEquals(Collections.nCopies(4, "200 1"),
+        getConcurrently(context, 4, "roskilde", "/coalesce/a"));
+    Assert.assertEquals(1, moduleCalls);
+
+    // body too large to share: the waiting requests make their own calls
+    Assert.assertEquals(Collections.nCopies(4, "200 " + content(200)),
+        getConcurrently(context, 4, "roskilde", "/coalesce/large"));
+    Assert.assertEquals(5, moduleCalls);
+
+    // call fails: the waiting requests make their own calls
+    failNextCall = true;
+    List<String> results = getConcurrently(context, 4, "roskilde", "/coalesce/b");
+    Assert.assertEquals(9, moduleCalls);
+    Assert.assertEquals(3, results.stream().filter(r -> r.startsWith("200 ")).count());
+    Assert.assertTrue(results.get(3), results.get(3).startsWith("500 "));
+
+    // not shared between tokens
+    results = new ArrayList<>();
+    Async async = context.async(4);
+    for (int i = 0; i < 4; i++) {
+      getRequest("/coalesce/c", results, async)
+          .putHeader("X-Okapi-Tenant", "roskilde")
+          .putHeader("X-Okapi-Token", i % 2 == 0 ? "a.b.c" : "d.e.f")
+          .end();
+    }
+    async.await();
+    Assert.assertEquals(11, moduleCalls);
+  }
+
+  @Test
+  public void testTenantLimits(TestContext context) {
+    moduleCalls = 0;
+    startModule(context, portModule1, this::slowHandle);
+    addModule("mod-slow-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/limited/{id}"), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde")
+        .put("limits", new JsonObject().put("rateLimit", 0.1).put("rateBurst", 2)),
+        "mod-slow-1.0.0");
+    addTenant(new JsonObject().put("id", "kalundborg")
+        .put("moduleLimits", new JsonObject()
+            .put("mod-slow", new JsonObject().put("maxInFlight", 1))),
+        "mod-slow-1.0.0");
+
+    // burst of 2, then one request per 10 seconds
+    for (int i = 1; i <= 2; i++) {
+      given().header("X-Okapi-Tenant", "roskilde").get("/limited/a")
+          .then().statusCode(200).body(equalTo(Integer.toString(i)));
+    }
+    given().header("X-Okapi-Tenant", "roskilde").get("/limited/a")
+        .then().statusCode(429).header("Retry-After", "10")
+        .body(equalTo("Too many requests for tenant roskilde"));
+    Assert.assertEquals(2, moduleCalls);
+
+    // one request at a time to the module
+    List<String> results = getConcurrently(context, 2, "kalundborg", "/limited/b");
+    Assert.assertEquals(3, moduleCalls);
+    Assert.assertEquals("200 3", results.get(0));
+    Assert.assertEquals("429 Too many requests for tenant kalundborg to module mod-slow",
+        results.get(1));
+    given().header("X-Okapi-Tenant", "kalundborg").get("/limited/b")
+        .then().statusCode(200).body(equalTo("4"));
+  }
+
+  @Test
+  public void testAdmission(TestContext context) {
+    restartOkapi(context, new JsonObject().put("admissionMaxLimit", "1"));
+    moduleCalls = 0;
+    startModule(context, portModule1, this::slowHandle);
+    addModule("mod-slow-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/admission/{id}"), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-slow-1.0.0");
+
+    // one request in the proxy at a time
+    List<String> results = getConcurrently(context, 2, "roskilde", "/admission/a");
+    Assert.assertEquals(1, moduleCalls);
+    Assert.assertEquals(Arrays.asList("200 1", "503 Okapi is overloaded"), results);
+    given().header("X-Okapi-Tenant", "roskilde").get("/admission/a")
+        .then().statusCode(200).body(equalTo("2"));
+  }
+
+  @Test
+  public void testCircuitBreaker(TestContext context) throws InterruptedException {
+    restartOkapi(context, new JsonObject()
+        .put("circuitBreakerWindow", "4")
+        .put("circuitBreakerOpenMs", "500")
+        .put("circuitBreakerHalfOpenCalls", "1"));
+    moduleCalls = 0;
+    startModule(context, portModule1, this::statusHandle);
+    addModule("mod-status-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/status/{code}"), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-status-1.0.0");
+
+    // half of the last 4 calls unavailable: the breaker opens
+    for (String code : new String[] {"200", "503", "200", "503"}) {
+      given().header("X-Okapi-Tenant", "roskilde").get("/status/" + code)
+          .then().statusCode(Integer.parseInt(code)).body(equalTo("module"));
+    }
+    given().header("X-Okapi-Tenant", "roskilde").get("/status/200")
+        .then().statusCode(503)
+        .body(equalTo("Circuit breaker open for module mod-status-1.0.0"));
+    Assert.assertEquals(4, moduleCalls);
+
+    // after open time, a trial call that succeeds closes the breaker
+    TimeUnit.MILLISECONDS.sleep(600);
+    for (int i = 0; i < 2; i++) {
+      given().header("X-Okapi-Tenant", "roskilde").get("/status/200")
+          .then().statusCode(200).body(equalTo("module"));
+    }
+    Assert.assertEquals(6, moduleCalls);
+  }
+
+  @Test
+  public void testTimeout(TestContext context) {
+    restartOkapi(context, new JsonObject()
+        .put("proxyTimeoutModules", new JsonObject().put("mod-slow", 100)));
+    moduleCalls = 0;
+    startModule(context, portModule1, this::slowHandle);
+    addModule("mod-slow-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/slow/{id}"), portModule1);
+    addModule("mod-patient-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/patient/{id}")
+        .put("timeout", 1000), portModule1);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-slow-1.0.0", "mod-patient-1.0.0");
+
+    // timeout of module product
+    given().header("X-Okapi-Tenant", "roskilde").get("/slow/a")
+        .then().statusCode(504)
+        .body(equalTo("Timeout calling module mod-slow-1.0.0 http://localhost:" + portModule1));
+    // timeout of routing entry
+    given().header("X-Okapi-Tenant", "roskilde").get("/patient/a")
+        .then().statusCode(200).body(equalTo("2"));
+
+    // deadline already passed: the module is not called
+    given().header("X-Okapi-Tenant", "roskilde").header("X-Okapi-Deadline", "1")
+        .get("/patient/a")
+        .then().statusCode(504)
+        .body(equalTo("Deadline expired before calling module mod-patient-1.0.0"));
+    Assert.assertEquals(2, moduleCalls);
+
+    // deadline before the routing entry timeout
+    given().header("X-Okapi-Tenant", "roskilde")
+        .header("X-Okapi-Deadline", Long.toString(System.currentTimeMillis() + 100))
+        .get("/patient/a")
+        .then().statusCode(504)
+        .body(equalTo("Timeout calling module mod-patient-1.0.0 http://localhost:" + portModule1));
+  }
+
+  /**
+   * Make two requests, which round-robin load balancing sends to different
+   * instances unless a call is retried.
+   * @return status codes, sorted
+   */
+  private List<Integer> twoRequests(HttpMethod method, String path) {
+    List<Integer> codes = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      codes.add(given().header("X-Okapi-Tenant", "roskilde")
+          .request(method.name(), path).then().extract().statusCode());
+    }
+    Collections.sort(codes);
+    return codes;
+  }
+
+  @Test
+  public void testRetry(TestContext context) {
+    restartOkapi(context, new JsonObject()
+        .put("proxyRetries", "1")
+        .put("loadBalancing", "round-robin")
+        .put("outlierConsecutiveFailures", "100"));
+    moduleCalls = 0;
+    // no instance listens on the second port
+    startModule(context, portModule1, this::statusHandle);
+    addModule("mod-status-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET").add("POST").add("PUT"))
+        .put("pathPattern", "/status/{code}"), portModule1, portModule2);
+    addModule("mod-retry-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("PUT"))
+        .put("pathPattern", "/retry/{code}")
+        .put("retry", true), portModule1, portModule2);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-status-1.0.0", "mod-retry-1.0.0");
+
+    // GET is retried with the other instance
+    Assert.assertEquals(Arrays.asList(200, 200), twoRequests(HttpMethod.GET, "/status/200"));
+    Assert.assertEquals(2, moduleCalls);
+
+    // POST is not, nor is PUT without retry in the routing entry
+    Assert.assertEquals(Arrays.asList(200, 500), twoRequests(HttpMethod.POST, "/status/200"));
+    Assert.assertEquals(Arrays.asList(200, 500), twoRequests(HttpMethod.PUT, "/status/200"));
+    Assert.assertEquals(4, moduleCalls);
+
+    // PUT with retry
+    Assert.assertEquals(Arrays.asList(200, 200), twoRequests(HttpMethod.PUT, "/retry/200"));
+    Assert.assertEquals(6, moduleCalls);
+  }
+
+  private volatile int slowPort;
+
+  /**
+   * Handler for an instance that responds with its port; slowly if it is
+   * the instance at slowPort.
+   */
+  private Handler<RoutingContext> portHandle(int modulePort) {
+    return ctx -> ctx.request().endHandler(x -> {
+      long delay = modulePort == slowPort ? 1000 : 1;
+      vertx.setTimer(delay, id -> {
+        if (!ctx.response().closed()) {
+          ctx.response().end(Integer.toString(modulePort));
+        }
+      });
+    });
+  }
+
+  @Test
+  public void testHedge(TestContext context) {
+    restartOkapi(context, new JsonObject()
+        .put("loadBalancing", "round-robin")
+        .put("hedgeMinDelay", "100")
+        .put("hedgeMaxPercent", "100"));
+    slowPort = 0;
+    startModule(context, portModule1, portHandle(portModule1));
+    startModule(context, portModule2, portHandle(portModule2));
+    addModule("mod-port-1.0.0", new JsonObject()
+        .put("methods", new JsonArray().add("GET"))
+        .put("pathPattern", "/port")
+        .put("hedge", true), portModule1, portModule2);
+    addTenant(new JsonObject().put("id", "roskilde"), "mod-port-1.0.0");
+
+    // latencies of 20 responses are needed before calls are hedged
+    for (int i = 0; i < 20; i++) {
+      given().header("X-Okapi-Tenant", "roskilde").get("/port").then().statusCode(200);
+    }
+
+    // calls to the slow instance are won by the hedge to the other
+    slowPort = portModule2;
+    for (int i = 0; i < 4; i++) {
+      given().header("X-Okapi-Tenant", "roskilde").get("/port")
+          .then().statusCode(200).body(equalTo(Integer.toString(portModule1)));
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package org.folio.okapi.bean;
 
 import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.OkapiLogger;
 import org.junit.Test;
@@ -260,4 +261,14 @@ public class RoutingEntryTest {
     assertTrue(t.match("/", "GET"));
     assertEquals("/events", t.getRewritePath());
   }
+
+  @Test
+  public void testTimeout() {
+    RoutingEntry t = Json.decodeValue("{\"methods\":[\"GET\"],\"path\":\"/a\","
+        + "\"timeout\":100}", RoutingEntry.class);
+    assertEquals(Integer.valueOf(100), t.getTimeout());
+    assertTrue(Json.encode(t).contains("\"timeout\":100"));
+    t.setTimeout(null);
+    assertFalse(Json.encode(t).contains("timeout"));
+  }
 }
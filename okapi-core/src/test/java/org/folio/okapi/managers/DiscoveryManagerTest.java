@@ -1,9 +1,16 @@
 package org.folio.okapi.managers;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.bean.HealthDescriptor;
+import org.folio.okapi.bean.NodeDescriptor;
 import org.folio.okapi.util.TestBase;
 import org.junit.Assert;
 import org.junit.Test;
@@ -19,4 +26,170 @@ public class DiscoveryManagerTest extends TestBase {
       Assert.assertEquals(true, discoveryManager.isLeader());
     }));
   }
+
+  @Test
+  public void liveInstancesSnapshot(TestContext context) {
+    DiscoveryManager discoveryManager = new DiscoveryManager(null);
+    Async async = context.async();
+    DeploymentDescriptor dd1 = new DeploymentDescriptor("i1", "mod-1", "http://localhost:9231", null, null);
+    DeploymentDescriptor dd2 = new DeploymentDescriptor("i2", "mod-1", "http://localhost:9232", null, null);
+    dd2.setNodeId("node-1");
+    discoveryManager.init(Vertx.vertx(), res1 -> {
+      context.assertTrue(res1.succeeded());
+      context.assertTrue(discoveryManager.getLiveInstances("mod-1").isEmpty());
+      long v1 = discoveryManager.getSnapshotVersion();
+      discoveryManager.add(dd1, res2 -> {
+        context.assertTrue(res2.succeeded());
+        context.assertEquals(1, discoveryManager.getLiveInstances("mod-1").size());
+        context.assertTrue(discoveryManager.getSnapshotVersion() > v1);
+        discoveryManager.add(dd2, res3 -> {
+          context.assertTrue(res3.succeeded());
+          // node-1 is not known, so dd2 is not live
+          context.assertEquals(1, discoveryManager.getLiveInstances("mod-1").size());
+          NodeDescriptor nd = new NodeDescriptor();
+          nd.setNodeId("node-1");
+          nd.setUrl("http://localhost:9230");
+          discoveryManager.addNode(nd, res4 -> {
+            context.assertTrue(res4.succeeded());
+            context.assertEquals(2, discoveryManager.getLiveInstances("mod-1").size());
+            discoveryManager.remove("mod-1", "i1", res5 -> {
+              context.assertTrue(res5.succeeded());
+              context.assertEquals("i2",
+                  discoveryManager.getLiveInstances("mod-1").get(0).getInstId());
+              async.complete();
+            });
+          });
+        });
+      });
+    });
+  }
+
+  @Test
+  public void backgroundHealthCheck(TestContext context) {
+    Vertx vertx = Vertx.vertx();
+    DiscoveryManager discoveryManager = new DiscoveryManager(null,
+        new JsonObject().put("healthCheckInterval", "50").put("healthCheckTimeout", "1000"));
+    Async async = context.async();
+    DeploymentDescriptor dd1 = new DeploymentDescriptor("i1", "mod-1", "http://localhost:9231", null, null);
+    DeploymentDescriptor dd2 = new DeploymentDescriptor("i2", "mod-1", "http://localhost:9232", null, null);
+    vertx.createHttpServer().requestHandler(req -> req.response().end()).listen(9231, res0 -> {
+      context.assertTrue(res0.succeeded());
+      discoveryManager.init(vertx, res1 -> {
+        context.assertTrue(res1.succeeded());
+        discoveryManager.add(dd1, res2 -> {
+          context.assertTrue(res2.succeeded());
+          discoveryManager.add(dd2, res3 -> {
+            context.assertTrue(res3.succeeded());
+            List<DeploymentDescriptor> l = discoveryManager.getLiveInstances("mod-1");
+            vertx.setPeriodic(50, id -> {
+              List<DeploymentDescriptor> l1 = discoveryManager.filterHealthy(l);
+              if (l1.size() == 1) {
+                vertx.cancelTimer(id);
+                context.assertEquals("i1", l1.get(0).getInstId());
+                discoveryManager.health("mod-1", "i2", res4 -> {
+                  context.assertTrue(res4.succeeded());
+                  context.assertFalse(res4.result().isHealthStatus());
+                  vertx.close(x -> async.complete());
+                });
+              }
+            });
+          });
+        });
+      });
+    });
+  }
+
+  private static void addAll(TestContext context, DiscoveryManager discoveryManager,
+                             List<DeploymentDescriptor> l, int i, Runnable done) {
+    if (i == l.size()) {
+      done.run();
+      return;
+    }
+    discoveryManager.add(l.get(i), res -> {
+      context.assertTrue(res.succeeded());
+      addAll(context, discoveryManager, l, i + 1, done);
+    });
+  }
+
+  @Test
+  public void healthCheckConcurrency(TestContext context) {
+    Vertx vertx = Vertx.vertx();
+    // long interval: rounds are started by the test
+    DiscoveryManager discoveryManager = new DiscoveryManager(null, new JsonObject()
+        .put("healthCheckInterval", "3600000").put("healthCheckConcurrency", "2"));
+    Async async = context.async();
+    List<DeploymentDescriptor> l = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      l.add(new DeploymentDescriptor("i" + i, "mod-1", "http://localhost:9233", null, null));
+    }
+    int[] probes = {0, 0, 0}; // in progress, max in progress, total
+    vertx.createHttpServer().requestHandler(req -> {
+      probes[0]++;
+      probes[1] = Math.max(probes[1], probes[0]);
+      probes[2]++;
+      vertx.setTimer(50, id -> {
+        probes[0]--;
+        req.response().end();
+      });
+    }).listen(9233, res0 -> {
+      context.assertTrue(res0.succeeded());
+      discoveryManager.init(vertx, res1 -> {
+        context.assertTrue(res1.succeeded());
+        addAll(context, discoveryManager, l, 0, () -> discoveryManager.checkHealth(res2 -> {
+          context.assertTrue(res2.succeeded());
+          context.assertEquals(5, probes[2]); // all queued instances probed
+          context.assertEquals(2, probes[1]); // at most 2 at a time
+          for (DeploymentDescriptor dd : l) {
+            context.assertTrue(discoveryManager.getCachedHealth(dd.getInstId()).isHealthStatus());
+          }
+          // served from the cache, without probing
+          discoveryManager.health("mod-1", res3 -> {
+            context.assertTrue(res3.succeeded());
+            context.assertEquals(5, res3.result().size());
+            context.assertEquals(5, probes[2]);
+            discoveryManager.remove("mod-1", "i1", res4 -> {
+              context.assertTrue(res4.succeeded());
+              discoveryManager.checkHealth(res5 -> {
+                context.assertTrue(res5.succeeded());
+                // instance that is gone is dropped from the cache
+                context.assertNull(discoveryManager.getCachedHealth("i1"));
+                context.assertNotNull(discoveryManager.getCachedHealth("i2"));
+                context.assertEquals(9, probes[2]);
+                vertx.close(x -> async.complete());
+              });
+            });
+          });
+        }));
+      });
+    });
+  }
+
+  @Test
+  public void healthCheckTimeout(TestContext context) {
+    Vertx vertx = Vertx.vertx();
+    DiscoveryManager discoveryManager = new DiscoveryManager(null, new JsonObject()
+        .put("healthCheckInterval", "3600000").put("healthCheckTimeout", "100"));
+    Async async = context.async();
+    DeploymentDescriptor dd
+        = new DeploymentDescriptor("i1", "mod-1", "http://localhost:9234", null, null);
+    vertx.createHttpServer().requestHandler(req -> { }).listen(9234, res0 -> { // never responds
+      context.assertTrue(res0.succeeded());
+      discoveryManager.init(vertx, res1 -> {
+        context.assertTrue(res1.succeeded());
+        addAll(context, discoveryManager, Collections.singletonList(dd), 0,
+            () -> discoveryManager.checkHealth(res2 -> {
+              context.assertTrue(res2.succeeded());
+              HealthDescriptor hd = discoveryManager.getCachedHealth("i1");
+              context.assertFalse(hd.isHealthStatus());
+              context.assertTrue(hd.getHealthMessage().startsWith("Fail: "),
+                  hd.getHealthMessage());
+              discoveryManager.health("mod-1", "i1", res3 -> {
+                context.assertTrue(res3.succeeded());
+                context.assertFalse(res3.result().isHealthStatus());
+                vertx.close(x -> async.complete());
+              });
+            }));
+      });
+    });
+  }
 }
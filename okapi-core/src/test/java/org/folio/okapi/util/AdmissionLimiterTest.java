@@ -0,0 +1,81 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdmissionLimiterTest {
+
+  @Test
+  public void testIsAdmin() {
+    Assert.assertTrue(AdmissionLimiter.isAdmin("/_/proxy/tenants"));
+    Assert.assertFalse(AdmissionLimiter.isAdmin("/_/invoke/tenant/t1/a"));
+    Assert.assertFalse(AdmissionLimiter.isAdmin("/a"));
+    Assert.assertFalse(AdmissionLimiter.isAdmin(null));
+  }
+
+  @Test
+  public void testDisabled() {
+    Assert.assertFalse(new AdmissionLimiter(10, 0, 10, 1000).isEnabled());
+  }
+
+  @Test
+  public void testReserved() {
+    AdmissionLimiter limiter = new AdmissionLimiter(1, 2, 1, 1000);
+    Assert.assertTrue(limiter.isEnabled());
+    AdmissionLimiter.Permit p1 = limiter.acquire(false);
+    Assert.assertNotNull(p1);
+    Assert.assertNotNull(limiter.acquire(false));
+    Assert.assertNull(limiter.acquire(false));
+    AdmissionLimiter.Permit admin = limiter.acquire(true);
+    Assert.assertNotNull(admin);
+    Assert.assertNull(limiter.acquire(true));
+    Assert.assertEquals(3, limiter.getInFlight());
+    p1.release(false);
+    p1.release(false);
+    Assert.assertEquals(2, limiter.getInFlight());
+    Assert.assertNull(limiter.acquire(false));
+    admin.release(true);
+    Assert.assertNotNull(limiter.acquire(false));
+  }
+
+  @Test
+  public void testAdapt() {
+    AtomicLong now = new AtomicLong(10000);
+    AdmissionLimiter limiter = new AdmissionLimiter(5, 20, 0, 100);
+    limiter.setClock(now::get);
+    Assert.assertEquals(20, limiter.getLimit());
+
+    AdmissionLimiter.Permit p1 = limiter.acquire(false);
+    AdmissionLimiter.Permit p2 = limiter.acquire(false);
+    now.addAndGet(200);
+    p1.release(true);
+    Assert.assertEquals(18, limiter.getLimit());
+    // at most one backoff per latency period
+    p2.release(true);
+    Assert.assertEquals(18, limiter.getLimit());
+    // latency of failed requests is not used
+    AdmissionLimiter.Permit p3 = limiter.acquire(false);
+    now.addAndGet(200);
+    p3.release(false);
+    Assert.assertEquals(18, limiter.getLimit());
+
+    for (int i = 0; i < 30; i++) {
+      AdmissionLimiter.Permit p = limiter.acquire(false);
+      now.addAndGet(200);
+      p.release(true);
+    }
+    Assert.assertEquals(5, limiter.getLimit());
+
+    // fast requests raise the limit only while the proxy is busy
+    AdmissionLimiter.Permit p = limiter.acquire(false);
+    p.release(true);
+    Assert.assertEquals(5, limiter.getLimit());
+    AdmissionLimiter.Permit[] permits = new AdmissionLimiter.Permit[4];
+    for (int i = 0; i < permits.length; i++) {
+      permits[i] = limiter.acquire(false);
+    }
+    permits[0].release(true);
+    Assert.assertEquals(6, limiter.getLimit());
+  }
+}
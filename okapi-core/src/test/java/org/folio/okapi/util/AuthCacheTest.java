@@ -0,0 +1,87 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import org.folio.okapi.common.XOkapiHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuthCacheTest {
+
+  private static MultiMap request(String token, String required) {
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    if (token != null) {
+      headers.set(XOkapiHeaders.TOKEN, token);
+    }
+    if (required != null) {
+      headers.set(XOkapiHeaders.PERMISSIONS_REQUIRED, required);
+    }
+    headers.set(XOkapiHeaders.MODULE_PERMISSIONS, "{}");
+    return headers;
+  }
+
+  @Test
+  public void testKey() {
+    String k1 = AuthCache.key("t1", request("tok", "a.get"));
+    Assert.assertTrue(k1, k1.startsWith("t1 "));
+    Assert.assertEquals(k1, AuthCache.key("t1", request("tok", "a.get")));
+    Assert.assertNotEquals(k1, AuthCache.key("t2", request("tok", "a.get")));
+    Assert.assertNotEquals(k1, AuthCache.key("t1", request("tok2", "a.get")));
+    Assert.assertNotEquals(k1, AuthCache.key("t1", request("tok", "a.post")));
+    Assert.assertNotEquals(k1, AuthCache.key("t1", request("tok", null)));
+    Assert.assertNull(AuthCache.key("t1", request(null, "a.get")));
+    Assert.assertNull(AuthCache.key(null, request("tok", "a.get")));
+    MultiMap h = request("tok", "a.get");
+    h.set(XOkapiHeaders.ADDITIONAL_TOKEN, "x");
+    Assert.assertNull(AuthCache.key("t1", h));
+  }
+
+  @Test
+  public void testMaxAge() {
+    Assert.assertEquals(1000, AuthCache.maxAge(null, 1000));
+    Assert.assertEquals(1000, AuthCache.maxAge("private", 1000));
+    Assert.assertEquals(0, AuthCache.maxAge("no-store", 1000));
+    Assert.assertEquals(0, AuthCache.maxAge("private, no-cache", 1000));
+    Assert.assertEquals(0, AuthCache.maxAge("max-age=0", 1000));
+    Assert.assertEquals(0, AuthCache.maxAge("max-age=x", 1000));
+    Assert.assertEquals(1000, AuthCache.maxAge("max-age=5", 1000));
+    Assert.assertEquals(2000, AuthCache.maxAge("Max-Age=2", 10000));
+  }
+
+  @Test
+  public void testPutGet() {
+    AuthCache cache = new AuthCache(10, 60000);
+    Assert.assertTrue(cache.isEnabled());
+    String k1 = AuthCache.key("t1", request("tok", "a.get"));
+    String k2 = AuthCache.key("t2", request("tok", "a.get"));
+    MultiMap res = MultiMap.caseInsensitiveMultiMap();
+    res.set(XOkapiHeaders.MODULE_TOKENS, "{\"_\":\"tok\"}");
+    cache.put(k1, 202, res, 0);
+    cache.put(k2, 200, res, 0);
+    res.set("X-Other", "1"); // copied when cached
+    AuthCache.Entry e = cache.get(k1);
+    Assert.assertEquals(202, e.getStatus());
+    Assert.assertEquals("{\"_\":\"tok\"}", e.getHeaders().get(XOkapiHeaders.MODULE_TOKENS));
+    Assert.assertNull(e.getHeaders().get("X-Other"));
+
+    cache.removeTenant("t1");
+    Assert.assertNull(cache.get(k1));
+    Assert.assertNotNull(cache.get(k2));
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+
+    cache.put(k1, 401, res, 0);
+    cache.put(k1, 200, res, 10);
+    res.set("Cache-Control", "no-store");
+    cache.put(k1, 200, res, 0);
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testDisabled() {
+    AuthCache cache = new AuthCache(0, 60000);
+    Assert.assertFalse(cache.isEnabled());
+    String k1 = AuthCache.key("t1", request("tok", "a.get"));
+    cache.put(k1, 200, MultiMap.caseInsensitiveMultiMap(), 0);
+    Assert.assertNull(cache.get(k1));
+  }
+}
@@ -0,0 +1,62 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuthHeadersTest {
+
+  @Test
+  public void testEmpty() {
+    AuthHeaders h = AuthHeaders.of(Collections.emptyList());
+    Assert.assertNull(h.getPermissionsRequired());
+    Assert.assertNull(h.getPermissionsDesired());
+    Assert.assertEquals("{}", h.getModulePermissions());
+    Assert.assertNull(h.getExtraPermissions());
+  }
+
+  @Test
+  public void testPipeline() {
+    ModuleDescriptor md1 = new ModuleDescriptor();
+    md1.setId("mod-1.0.0");
+    ModuleDescriptor md2 = new ModuleDescriptor();
+    md2.setId("mod-2.0.0");
+
+    RoutingEntry redirect = new RoutingEntry();
+    redirect.setType("redirect");
+    redirect.setModulePermissions(new String[] {"extra.a"});
+    RoutingEntry re1 = new RoutingEntry();
+    re1.setPermissionsRequired(new String[] {"a.get"});
+    re1.setPermissionsDesired(new String[] {"a.all"});
+    RoutingEntry re2 = new RoutingEntry();
+    re2.setPermissionsRequired(new String[] {"a.get"});
+    re2.setModulePermissions(new String[] {"b.get"});
+
+    List<PipelineCache.Step> steps = Arrays.asList(
+        new PipelineCache.Step(md1, redirect, false, Collections.emptyList()),
+        new PipelineCache.Step(md1, re1, false, Collections.emptyList()),
+        new PipelineCache.Step(md2, re2, true, Collections.emptyList()));
+    AuthHeaders h = AuthHeaders.ofSteps(steps);
+    Assert.assertEquals("a.get", h.getPermissionsRequired());
+    Assert.assertEquals("a.all", h.getPermissionsDesired());
+    Assert.assertEquals(new JsonObject().put("mod-2.0.0", new JsonArray().add("b.get")),
+        new JsonObject(h.getModulePermissions()));
+    Assert.assertEquals("[\"extra.a\"]", h.getExtraPermissions());
+
+    ModuleInstance mi1 = new ModuleInstance(md1, redirect, "/a", HttpMethod.GET, false);
+    ModuleInstance mi2 = new ModuleInstance(md1, re1, "/a", HttpMethod.GET, false);
+    ModuleInstance mi3 = new ModuleInstance(md2, re2, "/a", HttpMethod.GET, true);
+    AuthHeaders h2 = AuthHeaders.of(Arrays.asList(mi1, mi2, mi3));
+    Assert.assertEquals(h.getPermissionsRequired(), h2.getPermissionsRequired());
+    Assert.assertEquals(h.getModulePermissions(), h2.getModulePermissions());
+    Assert.assertEquals(h.getExtraPermissions(), h2.getExtraPermissions());
+  }
+}
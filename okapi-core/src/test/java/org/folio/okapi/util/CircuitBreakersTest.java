@@ -0,0 +1,122 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.folio.okapi.bean.CircuitBreakerDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakersTest {
+
+  @Test
+  public void testDisabled() {
+    CircuitBreakers breakers = new CircuitBreakers(0, 50, 0, 100, 1000, 1);
+    Assert.assertFalse(breakers.isEnabled());
+    for (int i = 0; i < 10; i++) {
+      breakers.record("m1", true, 0);
+    }
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertTrue(breakers.list().isEmpty());
+  }
+
+  @Test
+  public void testFailureRate() {
+    AtomicLong now = new AtomicLong(1000);
+    CircuitBreakers breakers = new CircuitBreakers(4, 50, 0, 100, 1000, 2, now::get);
+    breakers.record("m1", false, 0);
+    Assert.assertTrue(breakers.list().isEmpty());
+    breakers.record("m1", true, 0);
+    breakers.record("m1", false, 0);
+    Assert.assertTrue(breakers.allow("m1"));
+    CircuitBreakerDescriptor d = breakers.get("m1");
+    Assert.assertEquals("CLOSED", d.getState());
+    Assert.assertEquals(2, d.getCalls());
+    Assert.assertEquals(50, d.getFailureRate());
+
+    breakers.record("m1", false, 0);
+    breakers.record("m1", false, 0);
+    breakers.record("m1", true, 0);
+    Assert.assertTrue(breakers.allow("m1")); // 1 of 4
+    breakers.record("m1", true, 0);
+    Assert.assertFalse(breakers.allow("m1")); // 2 of 4
+    Assert.assertEquals("OPEN", breakers.get("m1").getState());
+    Assert.assertTrue(breakers.allow("m2"));
+    Assert.assertEquals(1, breakers.list().size());
+
+    // half-open: two trials
+    now.addAndGet(1000);
+    Assert.assertEquals("HALF_OPEN", breakers.get("m1").getState());
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertFalse(breakers.allow("m1"));
+    breakers.record("m1", false, 0);
+    breakers.record("m1", false, 0);
+    Assert.assertEquals("CLOSED", breakers.get("m1").getState());
+    Assert.assertEquals(0, breakers.get("m1").getCalls());
+    Assert.assertTrue(breakers.allow("m1"));
+  }
+
+  @Test
+  public void testHalfOpenFailure() {
+    AtomicLong now = new AtomicLong(1000);
+    CircuitBreakers breakers = new CircuitBreakers(1, 100, 0, 100, 1000, 1, now::get);
+    breakers.record("m1", true, 0);
+    Assert.assertFalse(breakers.allow("m1"));
+    // outcome of call started before opening is ignored
+    breakers.record("m1", false, 0);
+    Assert.assertFalse(breakers.allow("m1"));
+
+    now.addAndGet(1000);
+    Assert.assertTrue(breakers.allow("m1"));
+    breakers.record("m1", true, 0);
+    Assert.assertEquals("OPEN", breakers.get("m1").getState());
+    Assert.assertFalse(breakers.allow("m1"));
+
+    // trial without outcome is given up after the open time
+    now.addAndGet(1000);
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertFalse(breakers.allow("m1"));
+    now.addAndGet(1000);
+    Assert.assertTrue(breakers.allow("m1"));
+
+    breakers.reset("m1");
+    Assert.assertTrue(breakers.list().isEmpty());
+    Assert.assertTrue(breakers.allow("m1"));
+  }
+
+  @Test
+  public void testSlowCalls() {
+    AtomicLong now = new AtomicLong(1000);
+    CircuitBreakers breakers = new CircuitBreakers(2, 50, 100, 100, 1000, 1, now::get);
+    breakers.record("m1", false, 200);
+    breakers.record("m1", false, 50);
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertEquals(50, breakers.get("m1").getSlowCallRate());
+    breakers.record("m1", false, 200); // replaces the oldest, also slow
+    Assert.assertTrue(breakers.allow("m1"));
+    breakers.record("m1", false, 200);
+    Assert.assertFalse(breakers.allow("m1"));
+    now.addAndGet(1000);
+    Assert.assertTrue(breakers.allow("m1"));
+    breakers.record("m1", false, 200);
+    Assert.assertFalse(breakers.allow("m1"));
+  }
+
+  @Test
+  public void testIsClosed() {
+    AtomicLong now = new AtomicLong(1000);
+    CircuitBreakers breakers = new CircuitBreakers(1, 100, 0, 100, 1000, 1, now::get);
+    Assert.assertEquals(1000, breakers.getOpenMs());
+    Assert.assertTrue(breakers.isClosed("m1"));
+    breakers.record("m1", true, 0);
+    Assert.assertFalse(breakers.isClosed("m1"));
+
+    // half-open: the check does not use the trial
+    now.addAndGet(1000);
+    Assert.assertFalse(breakers.isClosed("m1"));
+    Assert.assertTrue(breakers.allow("m1"));
+    Assert.assertFalse(breakers.isClosed("m1"));
+    Assert.assertFalse(breakers.allow("m1"));
+    breakers.record("m1", false, 0);
+    Assert.assertTrue(breakers.isClosed("m1"));
+  }
+}
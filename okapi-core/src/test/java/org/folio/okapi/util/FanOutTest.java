@@ -0,0 +1,113 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class FanOutTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testMode() {
+    Assert.assertEquals(FanOut.Mode.LOSSY, FanOut.mode("lossy"));
+    Assert.assertEquals(FanOut.Mode.BLOCKING, FanOut.mode("blocking"));
+    Assert.assertEquals(FanOut.Mode.LOSSY, FanOut.mode("Lossy"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadMode() {
+    FanOut.mode("other");
+  }
+
+  @Test
+  public void testCopy(TestContext context) {
+    Buffer content = Buffer.buffer();
+    for (int i = 0; i < 100000; i++) {
+      content.appendString("line " + i + "\n");
+    }
+    String src = vertx.fileSystem().createTempFileBlocking("fanout", ".src", (String) null);
+    String dst = vertx.fileSystem().createTempFileBlocking("fanout", ".dst", (String) null);
+    vertx.fileSystem().writeFileBlocking(src, content);
+    AsyncFile in = vertx.fileSystem().openBlocking(src, new OpenOptions().setRead(true));
+    AsyncFile out = vertx.fileSystem().openBlocking(dst, new OpenOptions().setWrite(true));
+    out.setWriteQueueMaxSize(1000);
+    in.pause();
+    Async async = context.async();
+    int[] chunks = new int[1];
+    new FanOut(in, out, Collections.emptyList(), FanOut.Mode.BLOCKING, 0)
+        .dataHandler(data -> chunks[0]++)
+        .endHandler(v -> vertx.setPeriodic(10, id -> {
+          if (vertx.fileSystem().propsBlocking(dst).size() < content.length()) {
+            return; // not flushed yet
+          }
+          vertx.cancelTimer(id);
+          context.assertTrue(chunks[0] > 0);
+          context.assertEquals(content, vertx.fileSystem().readFileBlocking(dst));
+          vertx.fileSystem().deleteBlocking(src);
+          vertx.fileSystem().deleteBlocking(dst);
+          async.complete();
+        }))
+        .start();
+  }
+
+  @Test
+  public void testDrop(TestContext context) {
+    Buffer content = Buffer.buffer();
+    for (int i = 0; i < 1000000; i++) {
+      content.appendString("line " + i + "\n");
+    }
+    String src = vertx.fileSystem().createTempFileBlocking("fanout", ".src", (String) null);
+    vertx.fileSystem().writeFileBlocking(src, content);
+    AsyncFile in = vertx.fileSystem().openBlocking(src, new OpenOptions().setRead(true));
+    String dst = vertx.fileSystem().createTempFileBlocking("fanout", ".dst", (String) null);
+    AsyncFile out = vertx.fileSystem().openBlocking(dst, new OpenOptions().setWrite(true));
+    in.pause();
+    Async async = context.async();
+    // a request-log filter that does not read
+    HttpServer server = vertx.createHttpServer().requestHandler(req -> req.pause());
+    server.listen(9241, context.asyncAssertSuccess(s -> {
+      HttpClient client = vertx.createHttpClient();
+      HttpClientRequest sink = client.request(HttpMethod.POST, 9241, "localhost", "/",
+          res -> { });
+      sink.setChunked(true);
+      HttpClientRequest[] dropped = new HttpClientRequest[1];
+      // the source is not held back by the sink
+      new FanOut(in, out, Collections.singletonList(sink), FanOut.Mode.LOSSY, 1000)
+          .dropHandler(r -> dropped[0] = r)
+          .endHandler(v -> {
+            context.assertEquals(sink, dropped[0]);
+            vertx.fileSystem().deleteBlocking(src);
+            vertx.fileSystem().deleteBlocking(dst);
+            client.close();
+            server.close(y -> async.complete());
+          })
+          .start();
+    }));
+  }
+}
@@ -0,0 +1,94 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HedgedCallTest {
+
+  private final List<String> won = new ArrayList<>();
+  private final List<String> cancelled = new ArrayList<>();
+
+  private HedgedCall<String> hedgedCall() {
+    HedgedCall<String> hc = new HedgedCall<>(
+        res -> won.add("primary " + outcome(res)), res -> won.add("hedge " + outcome(res)));
+    hc.setPrimaryCancel(() -> cancelled.add("primary"));
+    return hc;
+  }
+
+  private boolean startHedge(HedgedCall<String> hc) {
+    if (!hc.startHedge()) {
+      return false;
+    }
+    hc.setHedgeCancel(() -> cancelled.add("hedge"));
+    return true;
+  }
+
+  private static String outcome(AsyncResult<String> res) {
+    return res.succeeded() ? res.result() : "failed";
+  }
+
+  @Test
+  public void testPrimaryBeforeHedge() {
+    HedgedCall<String> hc = hedgedCall();
+    hc.primary(Future.succeededFuture("a"));
+    Assert.assertTrue(hc.isDecided());
+    Assert.assertFalse(startHedge(hc));
+    Assert.assertEquals("[primary a]", won.toString());
+    Assert.assertTrue(cancelled.isEmpty());
+  }
+
+  @Test
+  public void testPrimaryWins() {
+    HedgedCall<String> hc = hedgedCall();
+    Assert.assertTrue(startHedge(hc));
+    Assert.assertFalse(startHedge(hc));
+    hc.primary(Future.succeededFuture("a"));
+    Assert.assertEquals("[hedge]", cancelled.toString());
+    hc.hedge(Future.failedFuture("reset"));
+    Assert.assertEquals("[primary a]", won.toString());
+  }
+
+  @Test
+  public void testHedgeWins() {
+    HedgedCall<String> hc = hedgedCall();
+    Assert.assertTrue(startHedge(hc));
+    Assert.assertFalse(hc.isDecided());
+    hc.hedge(Future.succeededFuture("b"));
+    Assert.assertTrue(hc.isDecided());
+    Assert.assertEquals("[primary]", cancelled.toString());
+    hc.primary(Future.failedFuture("reset"));
+    Assert.assertEquals("[hedge b]", won.toString());
+  }
+
+  @Test
+  public void testFailureWaitsForOther() {
+    HedgedCall<String> hc = hedgedCall();
+    Assert.assertTrue(startHedge(hc));
+    hc.primary(Future.failedFuture("down"));
+    Assert.assertFalse(hc.isDecided());
+    hc.hedge(Future.succeededFuture("b"));
+    Assert.assertEquals("[hedge b]", won.toString());
+    Assert.assertTrue(cancelled.isEmpty());
+  }
+
+  @Test
+  public void testBothFail() {
+    HedgedCall<String> hc = hedgedCall();
+    Assert.assertTrue(startHedge(hc));
+    hc.hedge(Future.failedFuture("down"));
+    hc.primary(Future.failedFuture("down"));
+    Assert.assertEquals("[primary failed]", won.toString());
+  }
+
+  @Test
+  public void testPrimaryFailsWithoutHedge() {
+    HedgedCall<String> hc = hedgedCall();
+    hc.primary(Future.failedFuture("down"));
+    Assert.assertEquals("[primary failed]", won.toString());
+    Assert.assertFalse(startHedge(hc));
+  }
+}
@@ -0,0 +1,63 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientPoolsTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void testOptions() {
+    JsonObject modules = new JsonObject()
+        .put("mod-users", new JsonObject()
+            .put("maxPoolSize", 5)
+            .put("protocolVersion", "HTTP_2")
+            .put("http2ClearTextUpgrade", false));
+    HttpClientPools pools = new HttpClientPools(vertx,
+        new JsonObject().put("keepAliveTimeout", 30), modules);
+
+    HttpClientOptions opt = HttpClientPools.createOptions(pools.getOptions("mod-users"));
+    Assert.assertEquals(5, opt.getMaxPoolSize());
+    Assert.assertEquals(30, opt.getKeepAliveTimeout());
+    Assert.assertEquals(HttpVersion.HTTP_2, opt.getProtocolVersion());
+    Assert.assertFalse(opt.isHttp2ClearTextUpgrade());
+
+    opt = HttpClientPools.createOptions(pools.getOptions("mod-other"));
+    Assert.assertEquals(1000, opt.getMaxPoolSize());
+    Assert.assertEquals(30, opt.getKeepAliveTimeout());
+    Assert.assertEquals(HttpVersion.HTTP_1_1, opt.getProtocolVersion());
+  }
+
+  @Test
+  public void testPoolPerProduct() {
+    HttpClientPools pools = new HttpClientPools(vertx, null, null);
+    HttpClientPools.Pool p1 = pools.get("mod-users-1.0.0");
+    Assert.assertEquals("mod-users", p1.getName());
+    Assert.assertSame(p1, pools.get("mod-users-1.1.0"));
+    Assert.assertSame(p1, pools.get("mod-users-1.0.0")); // cached by module ID
+    Assert.assertNotSame(p1, pools.get("mod-login-1.0.0"));
+    Assert.assertEquals(0, p1.getPending());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadModuleOptions() {
+    new HttpClientPools(vertx, null, new JsonObject().put("mod-users", "x"));
+  }
+}
@@ -0,0 +1,42 @@
+package org.folio.okapi.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyPercentilesTest {
+
+  @Test
+  public void testMinSamples() {
+    LatencyPercentiles p = new LatencyPercentiles(50, 10, 3);
+    Assert.assertEquals(-1, p.get("m"));
+    p.record("m", 30);
+    p.record("m", 10);
+    Assert.assertEquals(-1, p.get("m"));
+    p.record("m", 20);
+    Assert.assertEquals(20, p.get("m"));
+    Assert.assertEquals(-1, p.get("other"));
+  }
+
+  @Test
+  public void testPercentile() {
+    LatencyPercentiles p = new LatencyPercentiles(90, 100, 10);
+    for (int i = 1; i <= 100; i++) {
+      p.record("m", i);
+    }
+    Assert.assertEquals(90, p.get("m"));
+  }
+
+  @Test
+  public void testWindow() {
+    LatencyPercentiles p = new LatencyPercentiles(100, 10, 1);
+    for (int i = 0; i < 10; i++) {
+      p.record("m", 1000);
+    }
+    Assert.assertEquals(1000, p.get("m"));
+    // old samples leave the window
+    for (int i = 0; i < 10; i++) {
+      p.record("m", 5);
+    }
+    Assert.assertEquals(5, p.get("m"));
+  }
+}
@@ -0,0 +1,69 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LimitedReadStreamTest {
+
+  private Vertx vertx;
+  private String src;
+  private final Buffer content = Buffer.buffer();
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+    for (int i = 0; i < 10000; i++) {
+      content.appendString("line " + i + "\n");
+    }
+    src = vertx.fileSystem().createTempFileBlocking("limited", ".txt", (String) null);
+    vertx.fileSystem().writeFileBlocking(src, content);
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.fileSystem().deleteBlocking(src);
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testWithinLimit(TestContext context) {
+    AsyncFile f = vertx.fileSystem().openBlocking(src, new OpenOptions().setRead(true));
+    Async async = context.async();
+    LimitedReadStream stream = new LimitedReadStream(f, content.length(),
+        v -> context.fail("overflow"));
+    Buffer got = Buffer.buffer();
+    stream.handler(got::appendBuffer);
+    stream.exceptionHandler(context::fail);
+    stream.endHandler(v -> {
+      context.assertEquals(content, got);
+      context.assertFalse(stream.isOverflow());
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testOverflow(TestContext context) {
+    AsyncFile f = vertx.fileSystem().openBlocking(src, new OpenOptions().setRead(true));
+    Async async = context.async(2);
+    Buffer got = Buffer.buffer();
+    LimitedReadStream stream = new LimitedReadStream(f, 1000, v -> async.countDown());
+    stream.handler(got::appendBuffer);
+    stream.exceptionHandler(e -> {
+      context.assertTrue(e instanceof LimitedReadStream.BodyTooLargeException);
+      context.assertTrue(stream.isOverflow());
+      context.assertTrue(got.length() <= 1000);
+      async.countDown();
+    });
+    stream.endHandler(v -> context.fail("end"));
+  }
+}
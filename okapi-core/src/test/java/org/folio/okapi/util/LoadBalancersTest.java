@@ -0,0 +1,85 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadBalancersTest {
+
+  private static final DeploymentDescriptor dd1
+      = new DeploymentDescriptor("i1", "mod-1", "http://localhost:9231", null, null);
+  private static final DeploymentDescriptor dd2
+      = new DeploymentDescriptor("i2", "mod-1", "http://localhost:9232", null, null);
+  private static final List<DeploymentDescriptor> instances = Arrays.asList(dd1, dd2);
+
+  @Test
+  public void testEmpty() {
+    InstanceStats stats = new InstanceStats();
+    for (String strategy : Arrays.asList(LoadBalancers.RANDOM, LoadBalancers.ROUND_ROBIN,
+        LoadBalancers.LEAST_OUTSTANDING, LoadBalancers.EWMA)) {
+      Assert.assertNull(LoadBalancers.create(strategy, stats).pick(Collections.emptyList()));
+      Assert.assertNotNull(LoadBalancers.create(strategy, stats).pick(instances));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknown() {
+    LoadBalancers.create("foo", new InstanceStats());
+  }
+
+  @Test
+  public void testRoundRobin() {
+    LoadBalancer lb = LoadBalancers.create(LoadBalancers.ROUND_ROBIN, new InstanceStats());
+    Set<DeploymentDescriptor> picked = new HashSet<>();
+    picked.add(lb.pick(instances));
+    picked.add(lb.pick(instances));
+    Assert.assertEquals(2, picked.size());
+  }
+
+  @Test
+  public void testLeastOutstanding() {
+    InstanceStats stats = new InstanceStats();
+    LoadBalancer lb = LoadBalancers.create(LoadBalancers.LEAST_OUTSTANDING, stats);
+    InstanceStats.Call call = stats.start(dd1.getUrl());
+    Assert.assertEquals(1, stats.getInFlight(dd1.getUrl()));
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(dd2, lb.pick(instances));
+    }
+    call.end(true);
+    call.end(true); // ignored
+    Assert.assertEquals(0, stats.getInFlight(dd1.getUrl()));
+  }
+
+  @Test
+  public void testEwma() {
+    InstanceStats stats = new InstanceStats(50);
+    LoadBalancer lb = LoadBalancers.create(LoadBalancers.EWMA, stats);
+    // no samples: fewest requests in flight
+    InstanceStats.Call call = stats.start(dd1.getUrl());
+    Assert.assertEquals(dd2, lb.pick(instances));
+    call.end(true);
+    Assert.assertTrue(stats.getEwmaNanos(dd1.getUrl()) > 0.0);
+    Assert.assertEquals(0.0, stats.getEwmaNanos(dd2.getUrl()), 0.0);
+    // dd2 counts as the mean of the others, so dd1 is not picked while busy
+    call = stats.start(dd1.getUrl());
+    Assert.assertEquals(dd2, lb.pick(instances));
+    call.end(true);
+
+    // cancelled: no sample
+    stats.start(dd2.getUrl()).cancel();
+    Assert.assertEquals(0.0, stats.getEwmaNanos(dd2.getUrl()), 0.0);
+    Assert.assertEquals(0, stats.getInFlight(dd2.getUrl()));
+
+    // failure: sampled as the penalty, so a failing instance is avoided
+    stats.start(dd2.getUrl()).end(false);
+    Assert.assertTrue(stats.getEwmaNanos(dd2.getUrl()) >= 50000000.0);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(dd1, lb.pick(instances));
+    }
+  }
+}
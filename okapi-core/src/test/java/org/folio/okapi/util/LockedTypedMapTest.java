@@ -0,0 +1,114 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.List;
+import org.folio.okapi.bean.EnvEntry;
+import org.folio.okapi.common.ErrorType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LockedTypedMapTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  private static EnvEntry entry(String name, String value) {
+    EnvEntry e = new EnvEntry();
+    e.setName(name);
+    e.setValue(value);
+    return e;
+  }
+
+  @Test
+  public void testNearCache1(TestContext context) {
+    LockedTypedMap1<EnvEntry> map = new LockedTypedMap1<>(EnvEntry.class);
+    map.enableNearCache();
+    Async async = context.async();
+    map.init(vertx, "map1", res1 -> {
+      context.assertTrue(res1.succeeded());
+      map.add("k1", entry("k1", "v1"), res2 -> {
+        context.assertTrue(res2.succeeded());
+        map.get("k1", res3 -> {
+          context.assertTrue(res3.succeeded());
+          context.assertEquals("v1", res3.result().getValue());
+          map.get("k1", res4 -> {
+            context.assertTrue(res4.succeeded());
+            context.assertTrue(res3.result() == res4.result()); // decoded once
+            map.put("k1", entry("k1", "v2"), res5 -> {
+              context.assertTrue(res5.succeeded());
+              map.getAll(res6 -> {
+                context.assertTrue(res6.succeeded());
+                context.assertEquals("v2", res6.result().get("k1").getValue());
+                map.remove("k1", res7 -> {
+                  context.assertTrue(res7.succeeded());
+                  map.get("k1", res8 -> {
+                    context.assertTrue(res8.failed());
+                    context.assertEquals(ErrorType.NOT_FOUND, res8.getType());
+                    async.complete();
+                  });
+                });
+              });
+            });
+          });
+        });
+      });
+    });
+  }
+
+  @Test
+  public void testNearCache2(TestContext context) {
+    LockedTypedMap2<EnvEntry> map = new LockedTypedMap2<>(EnvEntry.class);
+    map.enableNearCache();
+    Async async = context.async();
+    map.init(vertx, "map2", res1 -> {
+      context.assertTrue(res1.succeeded());
+      map.add("k1", "a", entry("a", "v1"), res2 -> {
+        context.assertTrue(res2.succeeded());
+        map.get("k1", res3 -> {
+          context.assertTrue(res3.succeeded());
+          List<EnvEntry> l = res3.result();
+          context.assertEquals(1, l.size());
+          l.clear(); // callers may modify the list
+          map.add("k1", "b", entry("b", "v2"), res4 -> {
+            context.assertTrue(res4.succeeded());
+            map.get("k1", "b", res5 -> {
+              context.assertTrue(res5.succeeded());
+              context.assertEquals("v2", res5.result().getValue());
+              map.get("k1", res6 -> {
+                context.assertTrue(res6.succeeded());
+                context.assertEquals(2, res6.result().size());
+                map.get("k1", "c", res7 -> {
+                  context.assertTrue(res7.failed());
+                  context.assertEquals("k1/c", res7.cause().getMessage());
+                  map.remove("k1", "a", res8 -> {
+                    context.assertTrue(res8.succeeded());
+                    map.get("k1", "a", res9 -> {
+                      context.assertTrue(res9.failed());
+                      context.assertEquals(ErrorType.NOT_FOUND, res9.getType());
+                      async.complete();
+                    });
+                  });
+                });
+              });
+            });
+          });
+        });
+      });
+    });
+  }
+}
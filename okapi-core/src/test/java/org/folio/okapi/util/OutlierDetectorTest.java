@@ -0,0 +1,67 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutlierDetectorTest {
+
+  private long now = 1000;
+
+  private static final String URL1 = "http://localhost:9231";
+  private static final String URL2 = "http://localhost:9232";
+
+  @Test
+  public void testEjection() {
+    OutlierDetector od = new OutlierDetector(3, 100, 350, () -> now);
+    od.failure(URL1);
+    od.failure(URL1);
+    od.success(URL1); // resets count
+    od.failure(URL1);
+    od.failure(URL1);
+    Assert.assertFalse(od.isEjected(URL1));
+    od.failure(URL1);
+    Assert.assertTrue(od.isEjected(URL1));
+
+    now += 100;
+    Assert.assertFalse(od.isEjected(URL1));
+    od.failure(URL1); // on probation: ejected at once, for twice as long
+    Assert.assertTrue(od.isEjected(URL1));
+    now += 199;
+    Assert.assertTrue(od.isEjected(URL1));
+    now += 1;
+    Assert.assertFalse(od.isEjected(URL1));
+    od.failure(URL1); // 400 ms is capped at max
+    now += 350;
+    Assert.assertFalse(od.isEjected(URL1));
+    od.success(URL1); // probation over
+    od.failure(URL1);
+    Assert.assertFalse(od.isEjected(URL1));
+  }
+
+  @Test
+  public void testDisabled() {
+    OutlierDetector od = new OutlierDetector(0, 100, 350, () -> now);
+    for (int i = 0; i < 10; i++) {
+      od.failure(URL1);
+    }
+    Assert.assertFalse(od.isEjected(URL1));
+  }
+
+  @Test
+  public void testAvailable() {
+    DeploymentDescriptor dd1 = new DeploymentDescriptor("i1", "mod-1", URL1, null, null);
+    DeploymentDescriptor dd2 = new DeploymentDescriptor("i2", "mod-1", URL2, null, null);
+    List<DeploymentDescriptor> instances = Arrays.asList(dd1, dd2);
+    OutlierDetector od = new OutlierDetector(1, 100, 350, () -> now);
+    Assert.assertEquals(instances, od.available(instances));
+    od.failure(URL1);
+    Assert.assertEquals(Collections.singletonList(dd2), od.available(instances));
+    od.failure(URL2);
+    // all ejected: use all
+    Assert.assertEquals(instances, od.available(instances));
+  }
+}
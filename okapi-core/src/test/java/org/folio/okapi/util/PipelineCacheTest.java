@@ -0,0 +1,107 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.http.HttpMethod;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineCacheTest {
+
+  private static String key(RoutingTable table, String tenantId, String uri, String moduleId) {
+    return PipelineCache.key(tenantId, "GET", table.lookup(uri, "GET", moduleId), moduleId);
+  }
+
+  @Test
+  public void testKey() {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId("mod-1.0.0");
+    RoutingEntry byId = new RoutingEntry();
+    byId.setMethods(new String[] {"GET"});
+    byId.setPathPattern("/instances/{id}");
+    RoutingEntry list = new RoutingEntry();
+    list.setMethods(new String[] {"GET"});
+    list.setPathPattern("/instances");
+    InterfaceDescriptor intf = new InterfaceDescriptor("instances", "1.0");
+    intf.setHandlers(new RoutingEntry[] {byId, list});
+    md.setProvides(new InterfaceDescriptor[] {intf});
+    RoutingTable table = new RoutingTable(Collections.singletonList(md));
+
+    // requests for different ids share the key of the matching entry
+    String k1 = key(table, "t1", "/instances/6a9e1f4c-0d2e-4a51-9d3f-2b2c1e0e9b11", null);
+    Assert.assertEquals(k1, key(table, "t1", "/instances/0b1c2d3e?query=x", null));
+    Assert.assertNotEquals(k1, key(table, "t1", "/instances", null));
+    Assert.assertNotEquals(k1, key(table, "t2", "/instances/1", null));
+    Assert.assertNotEquals(k1, key(table, "t1", "/instances/1", "mod-1.0.0"));
+    Assert.assertNotEquals(k1, key(table, "t1", "/other", null));
+
+    PipelineCache cache = new PipelineCache(10);
+    List<PipelineCache.Step> steps = Arrays.asList(
+        new PipelineCache.Step(md, byId, true, Collections.emptyList()));
+    cache.put(k1, table, steps);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertNotNull(cache.get(key(table, "t1", "/instances/" + i, null), table));
+    }
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testGetPut() {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId("mod-1.0.0");
+    RoutingEntry re = new RoutingEntry();
+    re.setPathPattern("/users");
+    List<PipelineCache.Step> steps = Arrays.asList(
+        new PipelineCache.Step(md, re, true, Collections.emptyList()));
+
+    RoutingTable table1 = new RoutingTable(Collections.singletonList(md));
+    RoutingTable table2 = new RoutingTable(Collections.singletonList(md));
+    PipelineCache cache = new PipelineCache(2);
+    String key = "t1 GET 0,";
+    Assert.assertNull(cache.get(key, table1));
+    cache.put(key, table1, steps);
+    PipelineCache.Pipeline p = cache.get(key, table1);
+    Assert.assertEquals(steps, p.getSteps());
+    Assert.assertSame(p.getAuthHeaders(), p.getAuthHeaders());
+    Assert.assertEquals("{}", p.getAuthHeaders().getModulePermissions());
+    Assert.assertNull(cache.get(key, table2)); // stale
+
+    cache.put("t2 GET 0,", table1, steps);
+    Assert.assertEquals(2, cache.size());
+    cache.removeTenant("t1");
+    Assert.assertEquals(1, cache.size());
+    cache.put("t1 GET 1,", table1, steps);
+    cache.put("t1 GET 2,", table1, steps);
+    Assert.assertEquals(2, cache.size()); // size bound
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testStepInstance() {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId("mod-1.0.0");
+    RoutingEntry redirect = new RoutingEntry();
+    redirect.setPathPattern("/old");
+    redirect.setRedirectPath("/new");
+    RoutingEntry re = new RoutingEntry();
+    re.setPathPattern("/new");
+
+    PipelineCache.Step direct = new PipelineCache.Step(md, re, true, Collections.emptyList());
+    Assert.assertFalse(direct.isRedirected());
+    ModuleInstance mi = direct.instance("/new?q=1", HttpMethod.GET);
+    Assert.assertEquals("/new?q=1", mi.getPath());
+
+    PipelineCache.Step redirected = new PipelineCache.Step(md, re, true,
+        Collections.singletonList(redirect));
+    Assert.assertTrue(redirected.isRedirected());
+    mi = redirected.instance("/old?q=2", HttpMethod.GET);
+    Assert.assertEquals("/new?q=2", mi.getPath());
+    Assert.assertTrue(mi.isHandler());
+  }
+}
@@ -0,0 +1,110 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ProxyBodyTest {
+
+  private Vertx vertx;
+  private String src;
+  private final Buffer content = Buffer.buffer();
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+    for (int i = 0; i < 10000; i++) {
+      content.appendString("line " + i + "\n");
+    }
+    src = vertx.fileSystem().createTempFileBlocking("proxybodytest", ".txt", (String) null);
+    vertx.fileSystem().writeFileBlocking(src, content);
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.fileSystem().deleteBlocking(src);
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  private void spool(TestContext context, long limit, boolean spooled) {
+    Async async = context.async();
+    vertx.fileSystem().open(src, new OpenOptions().setRead(true), context.asyncAssertSuccess(f ->
+        ProxyBody.spool(vertx, f, limit, context.asyncAssertSuccess(body -> {
+          context.assertEquals(spooled, body.isSpooled());
+          context.assertEquals((long) content.length(), body.length());
+          body.toBuffer(context.asyncAssertSuccess(buf -> {
+            context.assertEquals(content, buf);
+            body.delete();
+            async.complete();
+          }));
+        }))));
+  }
+
+  @Test
+  public void testMemory(TestContext context) {
+    spool(context, 0, false);
+    spool(context, content.length(), false);
+  }
+
+  @Test
+  public void testSpooled(TestContext context) {
+    spool(context, 1000, true);
+  }
+
+  @Test
+  public void testOf() {
+    ProxyBody body = ProxyBody.of(Buffer.buffer("abc"));
+    Assert.assertFalse(body.isSpooled());
+    Assert.assertEquals(3, body.length());
+    Assert.assertEquals("abc", body.toString());
+    body.delete();
+  }
+
+  private void awaitDeleted(TestContext context, ProxyBody body, Async async) {
+    body.toBuffer(res -> {
+      if (res.succeeded()) {
+        vertx.setTimer(10, id -> awaitDeleted(context, body, async));
+      } else {
+        async.complete();
+      }
+    });
+  }
+
+  @Test
+  public void testResetWhenFileGone(TestContext context) {
+    Async async1 = context.async();
+    ProxyBody[] body = new ProxyBody[1];
+    vertx.fileSystem().open(src, new OpenOptions().setRead(true), context.asyncAssertSuccess(f ->
+        ProxyBody.spool(vertx, f, 1000, context.asyncAssertSuccess(b -> {
+          body[0] = b;
+          b.delete();
+          awaitDeleted(context, b, async1);
+        }))));
+    async1.await();
+
+    Async async2 = context.async();
+    HttpServer server = vertx.createHttpServer()
+        .requestHandler(req -> body[0].end(req.response()));
+    server.listen(9240, context.asyncAssertSuccess(s -> {
+      HttpClient client = vertx.createHttpClient();
+      client.request(HttpMethod.GET, 9240, "localhost", "/", res -> {
+        // no response with a Content-Length that is never fulfilled
+        context.assertTrue(res.failed());
+        client.close();
+        server.close(x -> async2.complete());
+      }).end();
+    }));
+  }
+}
@@ -0,0 +1,25 @@
+package org.folio.okapi.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProxyContextTest {
+
+  @Test
+  public void testPathPrefix() {
+    String[] paths = {"", "/", "/users", "/users/1", "/users?q=1", "/_/proxy/modules",
+        "/_/", "/_", "/_/?x", "/_foo/bar", "/?x", "//x", "a/b", "/_/discovery"};
+    for (String path : paths) {
+      Assert.assertEquals(path, path.replaceFirst("^(/_)?(/[^/?]+).*$", "$2"),
+          ProxyContext.pathPrefix(path));
+    }
+  }
+
+  @Test
+  public void testNewReqId() {
+    for (int i = 0; i < 100; i++) {
+      String id = ProxyContext.newReqId("/_/proxy/tenants");
+      Assert.assertTrue(id, id.matches("^[0-9]{6}/proxy$"));
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package org.folio.okapi.util;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import io.vertx.core.http.HttpMethod;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProxyMetricsTest {
+
+  private static RoutingEntry entry(String pathPattern) {
+    RoutingEntry re = new RoutingEntry();
+    re.setPathPattern(pathPattern);
+    re.setMethods(new String[]{"*"});
+    return re;
+  }
+
+  @Test
+  public void testHandles() {
+    ProxyMetrics metrics = new ProxyMetrics(0);
+    RoutingEntry re = entry("/users/{id}");
+    Meter m1 = metrics.requestMeter("testlib", HttpMethod.GET, re);
+    Assert.assertSame(m1, metrics.requestMeter("testlib", HttpMethod.GET, re));
+    Assert.assertSame(m1, DropwizardHelper.getMeter("proxy.testlib.GET./users/{id}"));
+    Assert.assertNotSame(m1, metrics.requestMeter("testlib", HttpMethod.POST, re));
+    Assert.assertNotSame(m1, metrics.requestMeter("other", HttpMethod.GET, re));
+
+    Timer t1 = metrics.moduleTimer("testlib", "mod-users-1.0.0");
+    Assert.assertSame(t1, metrics.moduleTimer("testlib", "mod-users-1.0.0"));
+    Assert.assertSame(t1, DropwizardHelper.getTimer("proxy.testlib.module.mod-users-1.0.0"));
+    Assert.assertEquals(4, metrics.size());
+  }
+
+  @Test
+  public void testLimit() {
+    ProxyMetrics metrics = new ProxyMetrics(2);
+    Meter m1 = metrics.requestMeter("testlib", HttpMethod.GET, entry("/a"));
+    Timer t1 = metrics.moduleTimer("testlib", "mod-a-1.0.0");
+    Meter m2 = metrics.requestMeter("testlib", HttpMethod.GET, entry("/b"));
+    Timer t2 = metrics.moduleTimer("testlib", "mod-b-1.0.0");
+    Assert.assertEquals(2, metrics.size());
+    Assert.assertNotSame(m1, m2);
+    Assert.assertSame(DropwizardHelper.getMeter(ProxyMetrics.OTHER), m2);
+    Assert.assertNotSame(t1, t2);
+    Assert.assertSame(DropwizardHelper.getTimer(ProxyMetrics.OTHER + ".module"), t2);
+    Assert.assertSame(m2, metrics.requestMeter("testlib", HttpMethod.PUT, entry("/c")));
+  }
+
+  @Test
+  public void testClearRoutingEntries() {
+    ProxyMetrics metrics = new ProxyMetrics(1);
+    Meter m1 = metrics.requestMeter("testlib", HttpMethod.GET, entry("/items/{id}"));
+    metrics.clearRoutingEntries();
+    Assert.assertSame(m1, metrics.requestMeter("testlib", HttpMethod.GET, entry("/items/{id}")));
+    Assert.assertEquals(1, metrics.size());
+    Assert.assertSame(DropwizardHelper.getMeter(ProxyMetrics.OTHER), metrics.otherMeter());
+  }
+}
@@ -0,0 +1,123 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+  private static MultiMap headers(String... nameValues) {
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    for (int i = 0; i < nameValues.length; i += 2) {
+      headers.add(nameValues[i], nameValues[i + 1]);
+    }
+    return headers;
+  }
+
+  private static void store(ResponseCache cache, String key, MultiMap res, MultiMap req,
+                            String body) {
+    ResponseCache.Store store = cache.store(key, 200, res, req);
+    Assert.assertNotNull(store);
+    store.append(Buffer.buffer(body));
+    store.end();
+  }
+
+  @Test
+  public void testKey() {
+    String k1 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a?q=1", "/a");
+    Assert.assertTrue(k1, k1.startsWith("t1 "));
+    Assert.assertTrue(k1, k1.endsWith(" /a"));
+    Assert.assertEquals(k1, ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a?q=1", "/a"));
+    Assert.assertNotEquals(k1, ResponseCache.key("t1", "tok2", "mod-a-1.0.0", "/a?q=1", "/a"));
+    Assert.assertNotEquals(k1, ResponseCache.key("t1", null, "mod-a-1.0.0", "/a?q=1", "/a"));
+    Assert.assertNotEquals(k1, ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a?q=2", "/a"));
+  }
+
+  @Test
+  public void testMaxAge() {
+    Assert.assertEquals(-1, ResponseCache.maxAge(headers()));
+    Assert.assertEquals(5000, ResponseCache.maxAge(headers("Cache-Control", "max-age=5")));
+    Assert.assertEquals(-1, ResponseCache.maxAge(headers("Cache-Control", "no-cache")));
+    Assert.assertEquals(0, ResponseCache.maxAge(headers("Cache-Control", "no-cache",
+        "ETag", "\"1\"")));
+    Assert.assertEquals(0, ResponseCache.maxAge(headers("ETag", "\"1\"")));
+    Assert.assertEquals(-1, ResponseCache.maxAge(headers("Cache-Control", "max-age=5, no-store",
+        "ETag", "\"1\"")));
+    Assert.assertEquals(-1, ResponseCache.maxAge(headers("Cache-Control", "max-age=5",
+        "Vary", "Accept, *")));
+  }
+
+  @Test
+  public void testStoreGet() {
+    ResponseCache cache = new ResponseCache(10, 10);
+    Assert.assertTrue(cache.isEnabled());
+    String k1 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a", "/a");
+    MultiMap req = headers("Accept", "application/json");
+    Assert.assertNull(cache.store(k1, 200, headers(), req));
+    Assert.assertNull(cache.store(k1, 404, headers("Cache-Control", "max-age=5"), req));
+    store(cache, k1, headers("Cache-Control", "max-age=5", "Content-Length", "2",
+        "Vary", "Accept", "ETag", "W/\"1\""), req, "{}");
+
+    ResponseCache.Entry e = cache.get(k1, req);
+    Assert.assertTrue(e.isFresh());
+    Assert.assertEquals(200, e.getStatus());
+    Assert.assertEquals("{}", e.getBody().toString());
+    Assert.assertNull(e.getHeaders().get("Content-Length"));
+    Assert.assertTrue(e.isNotModified("\"1\""));
+    Assert.assertTrue(e.isNotModified("\"0\", W/\"1\""));
+    Assert.assertTrue(e.isNotModified("*"));
+    Assert.assertFalse(e.isNotModified("\"2\""));
+    Assert.assertFalse(e.isNotModified(null));
+    Assert.assertNull(cache.get(k1, headers("Accept", "text/plain")));
+    Assert.assertNull(cache.get(k1, headers()));
+
+    // too large
+    String k2 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/b", "/b");
+    store(cache, k2, headers("Cache-Control", "max-age=5"), req, "01234567890");
+    Assert.assertNull(cache.get(k2, req));
+  }
+
+  @Test
+  public void testRevalidate() {
+    ResponseCache cache = new ResponseCache(10, 100);
+    String k1 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a", "/a");
+    MultiMap req = headers();
+    store(cache, k1, headers("ETag", "\"1\"", "X-Foo", "bar"), req, "{}");
+    ResponseCache.Entry e = cache.get(k1, req);
+    Assert.assertFalse(e.isFresh());
+    Assert.assertEquals("\"1\"", e.getEtag());
+
+    e = cache.revalidated(k1, e, headers("Cache-Control", "max-age=60"), req);
+    Assert.assertTrue(e.isFresh());
+    Assert.assertEquals("bar", e.getHeaders().get("X-Foo"));
+    Assert.assertEquals("{}", e.getBody().toString());
+    Assert.assertTrue(cache.get(k1, req).isFresh());
+
+    e = cache.revalidated(k1, e, headers("Cache-Control", "no-store"), req);
+    Assert.assertEquals("{}", e.getBody().toString());
+    Assert.assertNull(cache.get(k1, req));
+  }
+
+  @Test
+  public void testInvalidate() {
+    ResponseCache cache = new ResponseCache(10, 100);
+    MultiMap res = headers("Cache-Control", "max-age=60");
+    MultiMap req = headers();
+    String k1 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a?q=1", "/a");
+    String k2 = ResponseCache.key("t1", "tok2", "mod-a-1.0.0", "/a", "/a");
+    String k3 = ResponseCache.key("t1", "tok", "mod-a-1.0.0", "/a/1", "/a/1");
+    String k4 = ResponseCache.key("t2", "tok", "mod-a-1.0.0", "/a", "/a");
+    store(cache, k1, res, req, "1");
+    store(cache, k2, res, req, "2");
+    store(cache, k3, res, req, "3");
+    store(cache, k4, res, req, "4");
+    cache.invalidate("t1", "/a");
+    Assert.assertEquals(2, cache.size());
+    Assert.assertNotNull(cache.get(k3, req));
+    cache.removeTenant("t2");
+    Assert.assertNull(cache.get(k4, req));
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,52 @@
+package org.folio.okapi.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryBudgetTest {
+
+  @Test
+  public void testBudget() {
+    RetryBudget budget = new RetryBudget(20);
+    for (int i = 0; i < RetryBudget.INITIAL_BALANCE; i++) {
+      Assert.assertTrue(budget.tryRetry());
+    }
+    Assert.assertFalse(budget.tryRetry());
+    for (int i = 0; i < 4; i++) {
+      budget.request();
+    }
+    Assert.assertFalse(budget.tryRetry());
+    budget.request();
+    budget.request();
+    Assert.assertTrue(budget.tryRetry());
+    Assert.assertFalse(budget.tryRetry());
+    Assert.assertEquals(11, budget.getRetries());
+    Assert.assertEquals(3, budget.getExhausted());
+  }
+
+  @Test
+  public void testMaxBalance() {
+    RetryBudget budget = new RetryBudget(100);
+    for (int i = 0; i < 1000; i++) {
+      budget.request();
+    }
+    int n = 0;
+    while (budget.tryRetry()) {
+      n++;
+    }
+    Assert.assertEquals((int) RetryBudget.MAX_BALANCE, n);
+  }
+
+  @Test
+  public void testNone() {
+    RetryBudget budget = new RetryBudget(0);
+    for (int i = 0; i < 1000; i++) {
+      budget.request();
+    }
+    int n = 0;
+    while (budget.tryRetry()) {
+      n++;
+    }
+    Assert.assertEquals((int) RetryBudget.INITIAL_BALANCE, n);
+  }
+}
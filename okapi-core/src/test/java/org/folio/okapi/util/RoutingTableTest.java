@@ -0,0 +1,97 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.Json;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoutingTableTest {
+
+  private static ModuleDescriptor module(String id, String handlers, String filters) {
+    String doc = "{\"id\" : \"" + id + "\", \"provides\" : [ {"
+        + "\"id\" : \"" + id + "-int\", \"version\" : \"1.0\", \"handlers\" : [ "
+        + handlers + " ] } ]";
+    if (filters != null) {
+      doc += ", \"filters\" : [ " + filters + " ]";
+    }
+    doc += "}";
+    return Json.decodeValue(doc, ModuleDescriptor.class);
+  }
+
+  private static String handler(String methods, String pathPattern) {
+    return "{\"methods\" : [ " + methods + " ], \"pathPattern\" : \"" + pathPattern + "\"}";
+  }
+
+  private static List<String> lookup(RoutingTable table, String uri, String method) {
+    List<String> l = new LinkedList<>();
+    for (RoutingTable.Entry e : table.lookup(uri, method, null)) {
+      RoutingEntry re = e.getRoutingEntry();
+      l.add(e.getModuleDescriptor().getId() + " "
+          + (re.getPathPattern() != null ? re.getPathPattern() : re.getPath()));
+    }
+    return l;
+  }
+
+  @Test
+  public void testPrefixSegments() {
+    RoutingEntry re = new RoutingEntry();
+    re.setPathPattern("/a/b");
+    Assert.assertEquals(Arrays.asList("a", "b"), RoutingTable.prefixSegments(re));
+    re.setPathPattern("/a/b/");
+    Assert.assertEquals(Arrays.asList("a", "b", ""), RoutingTable.prefixSegments(re));
+    re.setPathPattern("/a/{id}/c");
+    Assert.assertEquals(Arrays.asList("a"), RoutingTable.prefixSegments(re));
+    re.setPathPattern("/a/b*");
+    Assert.assertEquals(Arrays.asList("a"), RoutingTable.prefixSegments(re));
+    re.setPathPattern("/*");
+    Assert.assertEquals(Arrays.asList(), RoutingTable.prefixSegments(re));
+    re.setPathPattern("/");
+    Assert.assertEquals(Arrays.asList(""), RoutingTable.prefixSegments(re));
+    re.setPath("/a/b");
+    Assert.assertEquals(Arrays.asList("a"), RoutingTable.prefixSegments(re));
+    re.setPath("/a");
+    Assert.assertEquals(Arrays.asList(), RoutingTable.prefixSegments(re));
+  }
+
+  @Test
+  public void testLookup() {
+    ModuleDescriptor auth = module("auth-1.0.0", handler("\"POST\"", "/authn/login"),
+        "{\"methods\" : [ \"*\" ], \"pathPattern\" : \"/*\", \"phase\" : \"auth\"}");
+    ModuleDescriptor users = module("users-1.0.0",
+        handler("\"GET\", \"POST\"", "/users") + ", "
+            + handler("\"GET\"", "/users/{id}") + ", "
+            + handler("\"GET\"", "/users*"), null);
+    ModuleDescriptor items = module("items-1.0.0",
+        handler("\"GET\"", "/items/{id}") + ", "
+            + "{\"methods\" : [ \"GET\" ], \"path\" : \"/old\"}", null);
+    RoutingTable table = new RoutingTable(Arrays.asList(auth, users, items));
+
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*", "users-1.0.0 /users", "users-1.0.0 /users*"),
+        lookup(table, "/users?query=x", "GET"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*", "users-1.0.0 /users/{id}", "users-1.0.0 /users*"),
+        lookup(table, "/users/1", "GET"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*", "users-1.0.0 /users"),
+        lookup(table, "/users", "POST"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*"),
+        lookup(table, "/users/1", "DELETE"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*", "items-1.0.0 /items/{id}"),
+        lookup(table, "/items/1", "GET"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*"),
+        lookup(table, "/items/1/2", "GET"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /*", "items-1.0.0 /old"),
+        lookup(table, "/older/x", "GET"));
+    Assert.assertEquals(Arrays.asList("auth-1.0.0 /authn/login", "auth-1.0.0 /*"),
+        lookup(table, "/authn/login", "POST"));
+
+    // X-Okapi-Module-Id: no proxy handlers, only filters
+    Assert.assertEquals(1, table.lookup("/users", "GET", "users-1.0.0").size());
+
+    Assert.assertTrue(table.isFor(Arrays.asList(auth, users, items)));
+    Assert.assertFalse(table.isFor(Arrays.asList(auth, users)));
+    Assert.assertFalse(table.isFor(Arrays.asList(auth, items, users)));
+  }
+}
@@ -0,0 +1,83 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testKey() {
+    String k1 = SingleFlight.key("t1", "tok", "mod-a-1.0.0", "/a", null);
+    Assert.assertEquals(k1, SingleFlight.key("t1", "tok", "mod-a-1.0.0", "/a", null));
+    Assert.assertNotEquals(k1, SingleFlight.key("t2", "tok", "mod-a-1.0.0", "/a", null));
+    Assert.assertNotEquals(k1, SingleFlight.key("t1", "tok2", "mod-a-1.0.0", "/a", null));
+    Assert.assertNotEquals(k1, SingleFlight.key("t1", "tok", "mod-a-1.0.0", "/a", "text/plain"));
+  }
+
+  @Test
+  public void testShared() {
+    SingleFlight sf = new SingleFlight(2, 100);
+    List<SingleFlight.Response> responses = new ArrayList<>();
+    SingleFlight.Flight leader = sf.start("k", r -> Assert.fail());
+    Assert.assertNotNull(leader);
+    Assert.assertNull(sf.start("k", responses::add));
+    Assert.assertNull(sf.start("k", responses::add));
+    // too many waiters: own call, not shared
+    SingleFlight.Flight other = sf.start("k", r -> Assert.fail());
+    Assert.assertNotNull(other);
+    other.fail();
+    Assert.assertEquals(1, sf.size());
+
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+        .set("Content-Type", "text/plain").set("Content-Length", "5");
+    leader.response(200, headers);
+    leader.append(Buffer.buffer("ab"));
+    leader.append(Buffer.buffer("cde"));
+    Assert.assertTrue(responses.isEmpty());
+    leader.end();
+    Assert.assertEquals(0, sf.size());
+    Assert.assertEquals(2, responses.size());
+    for (SingleFlight.Response r : responses) {
+      Assert.assertEquals(200, r.getStatus());
+      Assert.assertEquals("text/plain", r.getHeaders().get("Content-Type"));
+      Assert.assertNull(r.getHeaders().get("Content-Length"));
+      Assert.assertEquals("abcde", r.getBody().toString());
+    }
+    leader.fail(); // no effect after end
+    Assert.assertEquals(2, responses.size());
+
+    // new flight after the first one ended
+    Assert.assertNotNull(sf.start("k", r -> Assert.fail()));
+  }
+
+  @Test
+  public void testTooLarge() {
+    SingleFlight sf = new SingleFlight(10, 4);
+    List<SingleFlight.Response> responses = new ArrayList<>();
+    SingleFlight.Flight leader = sf.start("k", r -> Assert.fail());
+    Assert.assertNull(sf.start("k", responses::add));
+    leader.response(200, MultiMap.caseInsensitiveMultiMap());
+    leader.append(Buffer.buffer("abcde"));
+    Assert.assertEquals(1, responses.size());
+    Assert.assertNull(responses.get(0));
+    Assert.assertEquals(0, sf.size());
+    leader.end();
+    Assert.assertEquals(1, responses.size());
+  }
+
+  @Test
+  public void testFail() {
+    SingleFlight sf = new SingleFlight(10, 100);
+    List<SingleFlight.Response> responses = new ArrayList<>();
+    SingleFlight.Flight leader = sf.start("k", r -> Assert.fail());
+    Assert.assertNull(sf.start("k", responses::add));
+    leader.fail();
+    Assert.assertEquals(1, responses.size());
+    Assert.assertNull(responses.get(0));
+    Assert.assertEquals(0, sf.size());
+  }
+}
@@ -0,0 +1,82 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.folio.okapi.bean.TenantLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TenantLimiterTest {
+
+  private static TenantLimits limits(Double rate, Integer burst, Integer maxInFlight) {
+    TenantLimits limits = new TenantLimits();
+    limits.setRateLimit(rate);
+    limits.setRateBurst(burst);
+    limits.setMaxInFlight(maxInFlight);
+    return limits;
+  }
+
+  @Test
+  public void testKey() {
+    Assert.assertEquals("t1", TenantLimiter.key("t1", null));
+    Assert.assertEquals("t1 mod-a", TenantLimiter.key("t1", "mod-a"));
+  }
+
+  @Test
+  public void testNoLimits() {
+    TenantLimiter limiter = new TenantLimiter(1);
+    Assert.assertTrue(limiter.acquire("t1", null).isGranted());
+    TenantLimiter.Permit permit = limiter.acquire("t1", limits(null, null, 0));
+    Assert.assertTrue(permit.isGranted());
+    permit.release();
+    Assert.assertEquals(0, limiter.getInFlight("t1"));
+  }
+
+  @Test
+  public void testRate() {
+    AtomicLong now = new AtomicLong(1000);
+    TenantLimiter limiter = new TenantLimiter(1);
+    limiter.setClock(now::get);
+    TenantLimits limits = limits(0.5, 2, null);
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    TenantLimiter.Permit permit = limiter.acquire("t1", limits);
+    Assert.assertFalse(permit.isGranted());
+    Assert.assertEquals(2, permit.getRetryAfter());
+    // other key not affected
+    Assert.assertTrue(limiter.acquire("t2", limits).isGranted());
+
+    now.addAndGet(1000);
+    permit = limiter.acquire("t1", limits);
+    Assert.assertFalse(permit.isGranted());
+    Assert.assertEquals(1, permit.getRetryAfter());
+    now.addAndGet(1000);
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    Assert.assertFalse(limiter.acquire("t1", limits).isGranted());
+
+    // burst is capped
+    now.addAndGet(60000);
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    Assert.assertFalse(limiter.acquire("t1", limits).isGranted());
+  }
+
+  @Test
+  public void testInFlight() {
+    TenantLimiter limiter = new TenantLimiter(3);
+    TenantLimits limits = limits(null, null, 2);
+    TenantLimiter.Permit p1 = limiter.acquire("t1", limits);
+    TenantLimiter.Permit p2 = limiter.acquire("t1", limits);
+    Assert.assertTrue(p1.isGranted());
+    Assert.assertTrue(p2.isGranted());
+    TenantLimiter.Permit p3 = limiter.acquire("t1", limits);
+    Assert.assertFalse(p3.isGranted());
+    Assert.assertEquals(3, p3.getRetryAfter());
+    p3.release();
+    Assert.assertEquals(2, limiter.getInFlight("t1"));
+    p1.release();
+    p1.release();
+    Assert.assertEquals(1, limiter.getInFlight("t1"));
+    Assert.assertTrue(limiter.acquire("t1", limits).isGranted());
+    Assert.assertFalse(limiter.acquire("t1", limits).isGranted());
+  }
+}